@@ -0,0 +1,200 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+import com.hp.hpl.jena.vocabulary.XSD;
+
+/**
+ * Synthetic benchmark data in the formats of test_fixtures, scaled to a number of years.
+ *
+ * Data is generated from a fixed seed, so that benchmark results are comparable across commits.
+ */
+public class BenchmarkFixtures {
+
+	static final int FIRST_YEAR = 1979;
+	static final int TAXA = 40;			// Observed taxa per day, about the average of Halias data
+
+	private static final long SEED = 1979L;
+
+	private BenchmarkFixtures() {
+	}
+
+	/**
+	 * Day numbers of the first day and the day after the last day of the given number of years.
+	 */
+	static int firstDay() {
+		return EpochDay.of(FIRST_YEAR, 1, 1);
+	}
+
+	static int endDay(int years) {
+		return EpochDay.of(FIRST_YEAR + years, 1, 1);
+	}
+
+	/**
+	 * Write 3-hourly weather observations in FMI's format, as in test_fixtures/test_weather.csv.
+	 */
+	static void writeWeatherCSV(File file, int years) throws IOException {
+		Random random = new Random(SEED);
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+		try {
+			out.write("Synthetic weather data;;;;;;;;;;\n");
+			for (int i = 0; i < 14; i++)
+				out.write(";;;;;;;;;;\n");
+			out.write("Vuosi;Kuukausi;Päivä;Tunti;Lämpötila;Suhteellinen kosteus;Tuulen suunnan 10 min keskiarvo;"
+					+ "Tuulen nopeuden 10 min keskiarvo;Tuulen puuskanopeus;Ilman paine merenpinnan tasolla;Kokonaispilvisyys\n");
+
+			for (int day = firstDay(); day < endDay(years); day++) {
+				int ymd = EpochDay.toYearMonthDay(day);
+				String date = (ymd / 10000) + ";" + (ymd / 100 % 100) + ";" + (ymd % 100) + ";";
+				double seasonal = -10.0 * Math.cos(2 * Math.PI * (ymd / 100 % 100 - 1) / 12.0) + 5.0;
+
+				for (int hour = 0; hour < 24; hour += 3) {
+					StringBuilder row = new StringBuilder(date);
+					row.append(hour).append(';');
+					row.append(optional(random, Math.round((seasonal + random.nextGaussian() * 4) * 10) / 10.0)).append(';');
+					row.append(optional(random, 60 + random.nextInt(41))).append(';');
+					row.append(optional(random, random.nextInt(37) * 10)).append(';');
+					row.append(optional(random, random.nextInt(16))).append(";;");
+					row.append(optional(random, Math.round((1013 + random.nextGaussian() * 10) * 10) / 10.0)).append(';');
+					row.append(optional(random, random.nextInt(9))).append('\n');
+					out.write(row.toString());
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write daily rainfall in FMI's format, as in test_fixtures/test_rainfall.csv.
+	 */
+	static void writeRainfallCSV(File file, int years) throws IOException {
+		Random random = new Random(SEED);
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+		try {
+			for (int i = 0; i < 7; i++)
+				out.write(";;;\n");
+			out.write("Vuosi;Kuukausi;Päivä;Sadesumma\n");
+
+			for (int day = firstDay(); day < endDay(years); day++) {
+				int ymd = EpochDay.toYearMonthDay(day);
+				double rain = random.nextInt(3) == 0 ? Math.round(random.nextDouble() * 150) / 10.0 : 0;
+				out.write((ymd / 10000) + ";" + (ymd / 100 % 100) + ";" + (ymd % 100) + ";" + optional(random, rain) + "\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Missing value for about 3 % of the fields, as in the real data.
+	 */
+	private static String optional(Random random, Object value) {
+		return random.nextInt(32) == 0 ? "" : value.toString();
+	}
+
+	static String taxonURI(int taxon) {
+		return HaliasDataProcessor.NS_BIO + "FMNH_" + (370000 + taxon);
+	}
+
+	/**
+	 * Add taxa with vernacular names and abbreviations to a taxon ontology, as read by readTaxonOntologies.
+	 */
+	static void addTaxa(Model taxa) {
+		Property vernacularOf = taxa.createProperty(HaliasDataProcessor.NS_TAXMEON, "inverse_of_hasVernacularName");
+		Property abbreviation = taxa.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "abbreviation");
+		Resource checklistTaxon = taxa.createResource(HaliasDataProcessor.NS_TAXMEON + "TaxonInChecklist");
+
+		for (int t = 0; t < TAXA; t++) {
+			Resource taxon = taxa.createResource(taxonURI(t));
+			taxa.add(taxon, RDF.type, checklistTaxon);
+			taxa.add(taxon, RDFS.label, taxa.createLiteral("taxon " + t, "la"));
+			taxa.add(taxon, abbreviation, "tax" + t);
+
+			for (String lang : new String[] {"fi", "sv", "en"}) {
+				Resource vernacular = taxa.createResource(HaliasDataProcessor.NS_TAXMEON + "vernacular_" + t + "_" + lang);
+				taxa.add(vernacular, vernacularOf, taxon);
+				taxa.add(vernacular, RDFS.label, taxa.createLiteral("lintu " + t, lang));
+			}
+		}
+	}
+
+	/**
+	 * Add standardized observation counts (0-99) for every other taxon of every day.
+	 */
+	static void addStandardizedObservations(StandardizedObservationTable table, int years) {
+		Random random = new Random(SEED);
+		for (int day = firstDay(); day < endDay(years); day++) {
+			int ymd = EpochDay.toYearMonthDay(day);
+			for (int t = 0; t < TAXA; t += 2)
+				table.put(ymd / 10000, ymd / 100 % 100, ymd % 100, taxonURI(t), random.nextInt(100));
+		}
+	}
+
+	/**
+	 * Create observations as given by the Python conversion program, as in test_fixtures/test_observations.rdf.
+	 */
+	static Model createObservations(int years) {
+		Random random = new Random(SEED);
+		Model observations = ModelFactory.createDefaultModel();
+
+		Resource observationType = observations.createResource(HaliasDataProcessor.NS_QB + "Observation");
+		Resource dataSet = observations.createResource("http://ldf.fi/halias/observations/haliasDataSet");
+		Property dataSetProperty = observations.createProperty(HaliasDataProcessor.NS_QB, "dataSet");
+		Property refTime = observations.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "refTime");
+		Property observedSpecies = observations.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "observedSpecies");
+		Property countLocal = observations.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "countLocal");
+		Property countMigration = observations.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "countMigration");
+
+		for (int day = firstDay(); day < endDay(years); day++) {
+			String date = EpochDay.toIsoString(day);
+			for (int t = 0; t < TAXA; t++) {
+				Resource r = observations.createResource(HaliasDataProcessor.NS_HALIAS_OBSERVATIONS + "H" + date.replace("-", "") + "t" + t);
+				observations.add(r, RDF.type, observationType);
+				observations.add(r, dataSetProperty, dataSet);
+				observations.add(r, refTime, observations.createTypedLiteral(date, XSD.date.getURI()));
+				observations.add(r, observedSpecies, observations.createResource(taxonURI(t)));
+				observations.add(r, RDFS.label, "taxon " + t + ", " + date);
+				if (random.nextBoolean())
+					observations.add(r, countLocal, Integer.toString(random.nextInt(50)));
+				// Migration counts exceed standardized counts, so that the validator does not report the data
+				observations.add(r, countMigration, "+" + (100 + random.nextInt(400)));
+			}
+		}
+		return observations;
+	}
+}
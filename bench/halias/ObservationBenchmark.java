@@ -0,0 +1,135 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+/**
+ * Benchmarks of enriching observations and writing them to file.
+ *
+ * Enrichment modifies the observation graph, so each invocation gets a fresh copy of the generated observations.
+ * Invocations take from tens of milliseconds to seconds, so the copying does not disturb the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class ObservationBenchmark {
+
+	@Param({"1", "10", "30"})
+	public int years;
+
+	private File outputFile;
+
+	private HaliasDataProcessor processor;
+	private Model generatedObservations;
+	private Model observations;
+
+	@Setup
+	public void setUp() throws IOException {
+		outputFile = File.createTempFile("halias-bench", ".ttl");
+
+		processor = new HaliasDataProcessor();
+		BenchmarkFixtures.addTaxa(processor.taxonOntology);
+		BenchmarkFixtures.addStandardizedObservations(processor.standardizedObservations, years);
+		processor.labelTaxons();
+
+		generatedObservations = BenchmarkFixtures.createObservations(years);
+		HaliasDataProcessor.setObservationNsPrefixes(generatedObservations);
+	}
+
+	@Setup(Level.Invocation)
+	public void copyObservations() {
+		observations = ModelFactory.createDefaultModel();
+		observations.add(generatedObservations);
+	}
+
+	@TearDown
+	public void tearDown() {
+		outputFile.delete();
+	}
+
+	@Benchmark
+	public Model addLabelsToObservations() {
+		processor.addLabelsToObservations(observations);
+		return observations;
+	}
+
+	@Benchmark
+	public Model processBirdCounts() {
+		processor.processBirdCounts(observations);
+		return observations;
+	}
+
+	@Benchmark
+	public Model addDateInformation() {
+		processor.addDateInformation(observations);
+		return observations;
+	}
+
+	@Benchmark
+	public Model enrichObservations() {
+		processor.enrichObservations(observations, null);
+		return observations;
+	}
+
+	@Benchmark
+	public void writeFile() {
+		processor.writeFile(generatedObservations, outputFile.getPath(), "TTL");
+	}
+
+	@Benchmark
+	public void writeFileGzip() {
+		processor.setOutputSink(outputFile.getPath(), OutputSink.GZIP);
+		processor.writeFile(generatedObservations, outputFile.getPath(), "TTL");
+		processor.setOutputSink(outputFile.getPath(), OutputSink.PLAIN);
+	}
+
+	@Benchmark
+	public void writeFileParallelGzip() {
+		processor.setOutputSink(outputFile.getPath(), OutputSink.PARALLEL_GZIP);
+		processor.writeFile(generatedObservations, outputFile.getPath(), "TTL");
+		processor.setOutputSink(outputFile.getPath(), OutputSink.PLAIN);
+	}
+}
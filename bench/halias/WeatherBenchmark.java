@@ -0,0 +1,186 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import halias.DailyWeather.MorningWeather;
+import halias.WeatherData.DayLength;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of reading weather data and writing the weather cubes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WeatherBenchmark {
+
+	@Param({"1", "10", "30"})
+	public int years;
+
+	private File directory;
+	private File weatherFile, rainFile, cubeFile;
+
+	private HaliasDataProcessor processor;
+	private WeatherData weather;
+	private DailyWeather[] dailyWeathers;
+	private DayLength[] dayLengths;
+	private int[] months;
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = File.createTempFile("halias-bench", "");
+		directory.delete();
+		directory.mkdir();
+
+		weatherFile = new File(directory, "weather.csv");
+		rainFile = new File(directory, "rainfall.csv");
+		cubeFile = new File(directory, "cube");
+		BenchmarkFixtures.writeWeatherCSV(weatherFile, years);
+		BenchmarkFixtures.writeRainfallCSV(rainFile, years);
+
+		weather = new WeatherData();
+		weather.readWeatherCSV(weatherFile.getPath(), rainFile.getPath());
+
+		processor = new HaliasDataProcessor();
+		processor.weatherRussaro = weather;
+
+		WeatherStore store = weather.getWeatherStore();
+		int days = BenchmarkFixtures.endDay(years) - BenchmarkFixtures.firstDay();
+		dailyWeathers = new DailyWeather[ days ];
+		dayLengths = new DayLength[ days ];
+		months = new int[ days ];
+		for (int i = 0; i < days; i++) {
+			int day = BenchmarkFixtures.firstDay() + i;
+			dailyWeathers[ i ] = new DailyWeather(store, day);
+			dayLengths[ i ] = weather.getDayLength(EpochDay.year(day), EpochDay.month(day), EpochDay.dayOfMonth(day));
+			months[ i ] = EpochDay.month(day);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+	}
+
+	@Benchmark
+	public WeatherData readWeatherCSV() {
+		WeatherData data = new WeatherData();
+		data.readWeatherCSV(weatherFile.getPath(), rainFile.getPath());
+		return data;
+	}
+
+	/**
+	 * Day lengths of all days, from the memoized table.
+	 */
+	@Benchmark
+	public void getDayLength(Blackhole blackhole) {
+		for (int day = BenchmarkFixtures.firstDay(); day < BenchmarkFixtures.endDay(years); day++) {
+			int ymd = EpochDay.toYearMonthDay(day);
+			blackhole.consume(weather.getDayLength(ymd / 10000, ymd / 100 % 100, ymd % 100));
+		}
+	}
+
+	/**
+	 * Day lengths of all days, calculated from scratch.
+	 */
+	@Benchmark
+	public void calculateDayLengths(Blackhole blackhole) {
+		DayLengthTable table = new DayLengthTable(WeatherData.LATITUDE, WeatherData.LONGITUDE);
+		for (int day = BenchmarkFixtures.firstDay(); day < BenchmarkFixtures.endDay(years); day++)
+			blackhole.consume(table.get(day));
+	}
+
+	@Benchmark
+	public void calculateMorningWeather(Blackhole blackhole) {
+		for (int i = 0; i < dailyWeathers.length; i++) {
+			MorningWeather morning = dailyWeathers[ i ].calculateMorningWeather(dayLengths[ i ].sunriseH, dayLengths[ i ].sunriseMin, months[ i ]);
+			blackhole.consume(morning);
+		}
+	}
+
+	@Benchmark
+	public void calculateMorningWeatherFromStore(Blackhole blackhole) {
+		WeatherStore store = weather.getWeatherStore();
+		for (int i = 0; i < dailyWeathers.length; i++) {
+			MorningWeather morning = store.calculateMorningWeather(BenchmarkFixtures.firstDay() + i, dayLengths[ i ].sunriseH, dayLengths[ i ].sunriseMin, months[ i ]);
+			blackhole.consume(morning);
+		}
+	}
+
+	@Benchmark
+	public void calculateMorningWeatherBatch(Blackhole blackhole) {
+		int[] hours = new int[ dayLengths.length ], minutes = new int[ dayLengths.length ];
+		for (int i = 0; i < dayLengths.length; i++) {
+			hours[ i ] = dayLengths[ i ].sunriseH;
+			minutes[ i ] = dayLengths[ i ].sunriseMin;
+		}
+		blackhole.consume(weather.getWeatherStore().calculateMorningWeather(BenchmarkFixtures.firstDay(), hours, minutes, months));
+	}
+
+	@Benchmark
+	public void createHaliasWeatherCube() {
+		processor.createHaliasWeatherCube(cubeFile.getPath(), "TTL");
+	}
+
+	@Benchmark
+	public void createRussaroCube() {
+		processor.createRussaroCube(cubeFile.getPath(), "TTL");
+	}
+
+	@Benchmark
+	public void createRussaroCubeNTriples() {
+		processor.createRussaroCube(cubeFile.getPath(), "N-TRIPLES");
+	}
+
+	@Benchmark
+	public void createRussaroCubeParallel() {
+		processor.cubeWriter = new ParallelCubeWriter();
+		try {
+			processor.createRussaroCube(cubeFile.getPath(), "TTL");
+		} finally {
+			processor.cubeWriter = null;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+package halias;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Output stream writing to another stream on a separate thread, so that producing output, e.g. serializing triples,
+ * overlaps with compressing and writing it.
+ *
+ * Written bytes are collected to blocks, which are handed to the writer thread through a bounded queue.
+ * An error of the writer thread is thrown from the next write or from {@link #close()}. The underlying stream
+ * is always closed by {@link #close()}.
+ */
+public class AsyncOutputStream extends OutputStream {
+
+	private static final byte[] END = new byte[ 0 ];
+
+	private final OutputStream out;
+	private final BlockingQueue<byte[]> blocks;
+	private final Thread writer;
+	private final int blockSize;
+
+	private byte[] block;
+	private int count;
+	private volatile IOException error;
+	private boolean closed;
+
+	/**
+	 * @param	out			stream to write to on the writer thread
+	 * @param	blockSize	size of blocks handed to the writer thread
+	 * @param	queueLength	number of blocks that may wait for the writer thread
+	 */
+	public AsyncOutputStream(OutputStream out, int blockSize, int queueLength) {
+		this.out = out;
+		this.blockSize = blockSize;
+		this.blocks = new ArrayBlockingQueue<byte[]>(queueLength);
+		this.block = new byte[ blockSize ];
+
+		writer = new Thread(new Runnable() {
+			public void run() {
+				drain();
+			}
+		}, "output writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Write blocks until the end marker. After an error, blocks are only taken from the queue so that
+	 * the producing thread does not block.
+	 */
+	private void drain() {
+		try {
+			for (byte[] b = blocks.take(); b != END; b = blocks.take()) {
+				if (error != null)
+					continue;
+				try {
+					out.write(b);
+				} catch (IOException e) {
+					error = e;
+				}
+			}
+		} catch (InterruptedException e) {
+			error = new InterruptedIOException("Output writer interrupted");
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (count == block.length)
+			handOff();
+		block[ count++ ] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (count == block.length)
+				handOff();
+			int n = Math.min(len, block.length - count);
+			System.arraycopy(b, off, block, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Hand the current block to the writer thread. Flushing only hands off the written bytes, it does not wait
+	 * for them to be written.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (count > 0)
+			handOff();
+	}
+
+	private void handOff() throws IOException {
+		checkError();
+		byte[] full = count == block.length ? block : Arrays.copyOf(block, count);
+		put(full);
+		block = new byte[ blockSize ];
+		count = 0;
+	}
+
+	private void put(byte[] b) throws IOException {
+		try {
+			blocks.put(b);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing output");
+		}
+	}
+
+	private void checkError() throws IOException {
+		if (error != null)
+			throw new IOException("Writing output failed", error);
+	}
+
+	/**
+	 * Write remaining bytes, wait for the writer thread to finish and close the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+
+		try {
+			if (count > 0 && error == null)
+				put(Arrays.copyOf(block, count));
+			put(END);
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while closing output");
+			}
+			checkError();
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Properties;
+
+/**
+ * Manifest of input fingerprints of the outputs of a run, used for regenerating only outputs whose inputs have changed.
+ *
+ * Each output is recorded with a fingerprint of its inputs and the code version. File fingerprints are SHA-1 hashes
+ * of file contents, which are calculated again only if the size or modification time of the file changes.
+ */
+public class BuildManifest {
+
+	private static final String FILE_PREFIX = "file.";
+	private static final String OUTPUT_PREFIX = "output.";
+	private static final String DAYS_PREFIX = "days.";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final String file_name;
+	private final Properties entries = new Properties();
+	private String codeFingerprint;
+
+	/**
+	 * Load manifest from file, or start an empty manifest if the file does not exist.
+	 */
+	public BuildManifest(String file_name) {
+		this.file_name = file_name;
+
+		if (new File(file_name).exists()) {
+			try {
+				InputStream in = new FileInputStream(file_name);
+				try {
+					entries.load(in);
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				entries.clear();
+			}
+		}
+	}
+
+	/**
+	 * Fingerprint of files and the code version, for recording an output depending on the files.
+	 * Missing files get a fingerprint of their own, so that creating them later changes the fingerprint.
+	 */
+	public synchronized String fingerprint(String... inputs) {
+		return settingsFingerprint(null, inputs);
+	}
+
+	/**
+	 * Fingerprint of settings not kept in the input files, e.g. the location of a weather station, together with files
+	 * and the code version.
+	 *
+	 * @param	settings	settings as a string, or null for none
+	 */
+	public synchronized String settingsFingerprint(String settings, String... inputs) {
+		MessageDigest digest = sha1();
+		digest.update(codeFingerprint().getBytes(UTF8));
+		if (settings != null) {
+			digest.update((byte) 1);
+			digest.update(settings.getBytes(UTF8));
+		}
+		for (String input : inputs) {
+			digest.update((byte) 0);
+			digest.update(input.getBytes(UTF8));
+			digest.update((byte) 0);
+			digest.update(fileFingerprint(input).getBytes(UTF8));
+		}
+		return hex(digest.digest());
+	}
+
+	/**
+	 * Check if an output exists and was created from inputs with the given fingerprint.
+	 */
+	public synchronized boolean isUpToDate(String output, String fingerprint) {
+		return new File(output).exists() && fingerprint.equals(entries.getProperty(OUTPUT_PREFIX + output));
+	}
+
+	/**
+	 * Record an output as created from inputs with the given fingerprint.
+	 */
+	public synchronized void update(String output, String fingerprint) {
+		entries.setProperty(OUTPUT_PREFIX + output, fingerprint);
+	}
+
+	/**
+	 * Record Halias observation days found in an observation file. The first day of the bitset is recorded with
+	 * the days, so that days recorded from another first day are not taken as recorded.
+	 *
+	 * @param	days	observation days by EpochDay bit
+	 */
+	public synchronized void setObservationDays(String input, BitSet days) {
+		StringBuilder words = new StringBuilder();
+		words.append(EpochDay.BITSET_FIRST_DAY).append(':');
+		long[] longs = days.toLongArray();
+		for (int i = 0; i < longs.length; i++) {
+			if (i > 0)
+				words.append(',');
+			words.append(Long.toHexString(longs[ i ]));
+		}
+		entries.setProperty(DAYS_PREFIX + input, words.toString());
+	}
+
+	/**
+	 * Get recorded Halias observation days of an observation file.
+	 *
+	 * @return	observation days by EpochDay bit, or null if they have not been recorded
+	 */
+	public synchronized BitSet getObservationDays(String input) {
+		String value = entries.getProperty(DAYS_PREFIX + input);
+		String origin = EpochDay.BITSET_FIRST_DAY + ":";
+		if (value == null || !value.startsWith(origin))
+			return null;
+		value = value.substring(origin.length());
+		if (value.length() == 0)
+			return new BitSet();
+
+		String[] words = value.split(",");
+		long[] longs = new long[ words.length ];
+		for (int i = 0; i < words.length; i++)
+			longs[ i ] = new BigInteger(words[ i ], 16).longValue();
+		return BitSet.valueOf(longs);
+	}
+
+	/**
+	 * Write manifest to its file.
+	 */
+	public synchronized void save() throws IOException {
+		OutputStream out = new FileOutputStream(file_name);
+		try {
+			entries.store(out, "Input fingerprints of Halias conversion outputs");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Fingerprint of a file, using the stored hash if the file size and modification time are unchanged.
+	 */
+	String fileFingerprint(String input) {
+		File file = new File(input);
+		if (!file.isFile())
+			return "missing";
+
+		String stamp = file.length() + ":" + file.lastModified() + ":";
+		String stored = entries.getProperty(FILE_PREFIX + input);
+		if (stored != null && stored.startsWith(stamp))
+			return stored.substring(stamp.length());
+
+		String hash = hash(file);
+		entries.setProperty(FILE_PREFIX + input, stamp + hash);
+		return hash;
+	}
+
+	/**
+	 * Fingerprint of the code: hash of the jar, or of the class files of the package when running from a directory.
+	 */
+	String codeFingerprint() {
+		if (codeFingerprint != null)
+			return codeFingerprint;
+
+		try {
+			File location = new File(BuildManifest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			if (location.isDirectory())
+				codeFingerprint = filesFingerprint(new File(location, BuildManifest.class.getPackage().getName()).listFiles());
+			else
+				codeFingerprint = filesFingerprint(new File[] { location });
+		} catch (URISyntaxException e) {
+			throw new RuntimeException(e);
+		} catch (SecurityException e) {
+			// Without access to code, every run is a new version
+			MessageDigest digest = sha1();
+			digest.update(Long.toString(System.nanoTime()).getBytes(UTF8));
+			codeFingerprint = hex(digest.digest());
+		}
+		return codeFingerprint;
+	}
+
+	/**
+	 * Fingerprint of the names and contents of the regular files among the given files, in name order.
+	 *
+	 * @param	files	files, e.g. as listed from a directory, or null if the directory could not be listed
+	 */
+	static String filesFingerprint(File[] files) {
+		MessageDigest digest = sha1();
+		if (files != null) {
+			files = files.clone();
+			Arrays.sort(files);
+			for (File file : files) {
+				if (!file.isFile())
+					continue;
+				digest.update(file.getName().getBytes(UTF8));
+				digest.update(hash(file).getBytes(UTF8));
+			}
+		}
+		return hex(digest.digest());
+	}
+
+	/**
+	 * SHA-1 hash of file contents as a hex string.
+	 */
+	static String hash(File file) {
+		MessageDigest digest = sha1();
+		byte[] buffer = new byte[ 1 << 16 ];
+		try {
+			InputStream in = new BufferedInputStream(new FileInputStream(file));
+			try {
+				int n;
+				while ((n = in.read(buffer)) > 0)
+					digest.update(buffer, 0, n);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Could not read " + file, e);
+		}
+		return hex(digest.digest());
+	}
+
+	private static MessageDigest sha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			hex.append(String.format("%02x", b & 0xff));
+		return hex.toString();
+	}
+}
@@ -22,11 +22,14 @@
 
 package halias;
 
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Class for handling a single day's weather data of a single place of observation.
+ * 
+ * Weather data read from files is kept in {@link WeatherStore}, and instances of this class are views of one day of it.
  */
 public class DailyWeather {
 	
@@ -42,15 +45,71 @@ public class DailyWeather {
 	public ConcurrentObservations[] weatherObservation;		// 0 = 00:00, 1 = 03:00, 2 = 06:00, 3 = 09:00, 4 = 12:00, ...
 	public MorningWeather morningStandardWeather;
 
+	/**
+	 * Wind of a speed and direction. Instances are canonical: there is one instance per wind, identified by
+	 * its wind code (speed * 8 + direction index), so winds can be compared by identity and kept as codes.
+	 */
 	public static class WindInstance {
-		public Integer speed;		
-		public String dir;		
-		public WindInstance(Integer spd, String dir) {
-			this.speed = spd;
-			this.dir = dir;
+		public static final int DIRECTIONS = WeatherData.possibleWindDirections.length;
+		public static final int MAX_SPEED = 127;
+		public static final int CODES = (MAX_SPEED + 1) * DIRECTIONS;
+
+		private static final WindInstance[] INSTANCES = new WindInstance[ CODES ];
+		static {
+			for (int code = 0; code < CODES; code++)
+				INSTANCES[ code ] = new WindInstance(code);
+		}
+
+		public final Integer speed;
+		public final String dir;
+		public final int code;
+		public final String uri;		// URI in the wind ontology
+		private final String name;
+
+		private WindInstance(int code) {
+			this.code = code;
+			this.speed = code / DIRECTIONS;
+			this.dir = WeatherData.possibleWindDirections[ code % DIRECTIONS ];
+			this.name = "wind" + dir + speed;
+			this.uri = HaliasDataProcessor.NS_WINDS + name;
+		}
+
+		/**
+		 * Wind code of a wind speed and direction.
+		 *
+		 * @param	speed		wind speed, 0 to {@link #MAX_SPEED}
+		 * @param	direction	one of {@link WeatherData#possibleWindDirections}
+		 */
+		public static int code(int speed, String direction) {
+			if (speed < 0 || speed > MAX_SPEED)
+				throw new IllegalArgumentException("Wind speed out of range: " + speed);
+			for (int d = 0; d < DIRECTIONS; d++) {
+				if (WeatherData.possibleWindDirections[ d ].equals(direction))
+					return speed * DIRECTIONS + d;
+			}
+			throw new IllegalArgumentException("Unknown wind direction " + direction);
+		}
+
+		public static WindInstance of(int code) {
+			return INSTANCES[ code ];
+		}
+
+		public static WindInstance of(int speed, String direction) {
+			return INSTANCES[ code(speed, direction) ];
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof WindInstance && ((WindInstance) other).code == code;
 		}
+
+		@Override
+		public int hashCode() {
+			return code;
+		}
+
 		public String toString() {
-			return "wind" + this.dir + this.speed.toString();
+			return name;
 		}
 	}
 	
@@ -68,7 +127,7 @@ public class DailyWeather {
 			this.pressure = pres;
 			this.cloudCover = cloud;
 			this.humidity = humi;
-			this.wind = new WindInstance(wSpd, wDir);
+			this.wind = WindInstance.of(wSpd, wDir);
 		}
 
 		public ConcurrentObservations(Double temp, Double pres, Integer cloud, Integer humi) {
@@ -86,7 +145,7 @@ public class DailyWeather {
 	/**
 	 * Standardized observation time weather.
 	 */
-	public class MorningWeather {
+	public static class MorningWeather {
 		public Double temperature, pressure;
 		public Double cloudCover, humidity;
 //		public ArrayList<String> windDirections;
@@ -121,6 +180,48 @@ public class DailyWeather {
 		morningStandardWeather = new MorningWeather();
 	}
 
+	/**
+	 * Create view of one day of weather store.
+	 * 
+	 * @param	store		columnar weather data
+	 * @param	dayNumber	day number (days since 1970-01-01)
+	 */
+	public DailyWeather(WeatherStore store, int dayNumber) {
+		this();
+		
+		int day = store.dayIndex( dayNumber );
+		int base = store.slotIndex( dayNumber );
+		
+		tempDaySum = store.tempDaySum.get(day);
+		tempDayN = store.tempDayN.get(day);
+		pressureSum = store.pressureSum.get(day);
+		pressureN = (double) store.pressureN.get(day);
+		humiditySum = store.humiditySum.get(day);
+		humidityN = store.humidityN.get(day);
+		cloudCoverDaySum = store.cloudCoverDaySum.get(day);
+		cloudCoverDayN = store.cloudCoverDayN.get(day);
+		rainfall = Double.isNaN( store.rainfall.get(day) ) ? null : store.rainfall.get(day);
+		
+		for (int slot = 0; slot < WeatherStore.SLOTS; slot++) {
+			int i = base + slot;
+			ConcurrentObservations observations = weatherObservation[ slot ];
+			
+			observations.temperature = Double.isNaN( store.temperature.get(i) ) ? null : store.temperature.get(i);
+			observations.pressure = Double.isNaN( store.pressure.get(i) ) ? null : store.pressure.get(i);
+			observations.cloudCover = Double.isNaN( store.cloudCover.get(i) ) ? null : (int) store.cloudCover.get(i);
+			observations.humidity = Double.isNaN( store.humidity.get(i) ) ? null : (int) store.humidity.get(i);
+			observations.wind = store.windInstance( store.wind.get(i) );
+			
+			// Observation times are in order, so winds of each time of day are listed in observation order
+			if (store.timeOfDay.get(i) == WeatherStore.PRESUNRISE)
+				windsPreSunrise.add( observations.wind );
+			else if (store.timeOfDay.get(i) == WeatherStore.POSTSUNSET)
+				windsPostSunset.add( observations.wind );
+			else if (store.timeOfDay.get(i) == WeatherStore.DAY)
+				windsDay.add( observations.wind );
+		}
+	}
+
 	/**
 	 * 	 *	Calculate average of morning observations by integrating over minutes of the 4 (or 2) hour period.
 	 *	Values between measurement points are expected to follow linear interpolation of closest known measurements.
@@ -132,80 +233,22 @@ public class DailyWeather {
 	 * @return	average of values according to minutes offset from first measurement.
 	 */
 	public Double _calculateMeasurementAverage( Double[] measurements, Integer minutes0, Integer length ) {
-        Double tempIntegral = 0.0;
-        Double tempStart, tempEnd;
-
-        // Integrate from index0 onward.
-
-        tempStart = measurements[0] + (measurements[1] - measurements[0]) / 180.0 * minutes0;
-//		tempStart = tempEnd + ( measurements[0] - tempEnd ) / 180.0 * (180 - minutes0);
-
-        if (minutes0 + length > 180) {
-            tempEnd = measurements[1];
-            tempIntegral += ((tempStart + tempEnd) / 2) * (180 - minutes0);
-        } else {
-            tempEnd = measurements[0] + (measurements[1] - measurements[0]) / 180 * (minutes0 + length);
-            tempIntegral += ((tempStart + tempEnd) / 2) * length;
-        }
-
-		if ( minutes0 + length > 2 * 180 )
-		{
-			// 2 weather observations in standardized observation time. Expecting length == 240 here.
-			Integer minutes1 = minutes0 - 120;
-
-			tempIntegral += ( measurements[1] + measurements[2] ) / 2 * 180;
-
-			tempStart = measurements[2];
-			tempEnd = tempStart + (measurements[3] - tempStart ) / 180.0 * minutes1;
-			tempIntegral += ((tempStart + tempEnd) / 2) * minutes1;
-		}
-		else 
-		{
-			// 0-1 weather observations in standardized observation time
-			Integer minutes1 = minutes0 + length - 180;
-
-			if (minutes1 > 0) {
-                tempStart = measurements[1];
-                tempEnd = tempStart + (measurements[2] - tempStart) / 180.0 * minutes1;
-                tempIntegral += ((tempStart + tempEnd) / 2) * minutes1;
-            }
-		}
+		double[] values = new double[ measurements.length ];
+		for (int x = 0; x < measurements.length; x++)
+			values[ x ] = measurements[ x ];
 		
-		return tempIntegral / length;
+		return WeatherStore.measurementAverage( DoubleBuffer.wrap( values ), 0, minutes0, length );
 	}
 
 	
-	public Double[] _checkAndReindexMeasurements(Integer index0, Integer minutes0, Double[] measurements) {
-		int hour = index0 * 3 + minutes0 / 60;
-		
-		if (	(index0 > 0 || measurements[0] != null) &&
-				(index0 > 1 || measurements[1] != null) &&
-				measurements[2] != null &&
-				(hour < 2 || measurements[3] != null) &&
-				(hour < 5 || measurements[4] != null)) 
-		{
-			Integer numOfMeasurements;
-			if (index0 < 2)
-				numOfMeasurements = 4;
-			else
-				numOfMeasurements = 3;
-			
-			Double[] eligibleMeasurements = new Double[numOfMeasurements];
-			eligibleMeasurements[0] = measurements[index0];
-			eligibleMeasurements[1] = measurements[index0 + 1];
-			eligibleMeasurements[2] = measurements[index0 + 2];
-			
-			if (numOfMeasurements == 4) {
-				eligibleMeasurements[3] = measurements[index0 + 3];
-			}
-			return eligibleMeasurements;
-		}
-		else
-		{
-			return null;
-		}
+	private static double toDouble(Number value) {
+		return value == null ? Double.NaN : value.doubleValue();
 	}
-	
+
+	private static Double toDouble(double value) {
+		return Double.isNaN(value) ? null : value;
+	}
+
 
 	/**
 	 * Calculate average weather measurements of arbitrary 4 hour period beginning from 03:00 to 11:00.
@@ -224,37 +267,25 @@ public class DailyWeather {
 			(startTimeHour == 8 && startTimeMinute != 0))
 			return null;
 
-        Integer length;
-        if (month == 11 || month == 12 || month == 1 || month == 2 || month == 3) {
-            length = 120;
-        } else {
-            length = 240;
-        }
+        Integer length = WeatherStore.morningLength( month );
 
         MorningWeather averagedValues = new MorningWeather();
 		
 		Integer index0 = startTimeHour / 3;									// Starting observation index
 		Integer minutes0 = ( startTimeHour % 3 ) * 60 + startTimeMinute;	// Minutes from index0 to observation start
 		
-		Double[] measurements = new Double[this.weatherObservation.length];
-		Double[] eligibleMeasurements;
+		double[] measurements = new double[this.weatherObservation.length];
+		DoubleBuffer column = DoubleBuffer.wrap(measurements);
 		
 		// Temperature
-		for (Integer x = 0; x < this.weatherObservation.length; x++) {
-			measurements[x] = this.weatherObservation[x].temperature;
-		}
-
-		eligibleMeasurements = _checkAndReindexMeasurements(index0, minutes0, measurements);
-		if (eligibleMeasurements != null)
-			averagedValues.temperature = _calculateMeasurementAverage(eligibleMeasurements, minutes0, length);
+		for (Integer x = 0; x < this.weatherObservation.length; x++)
+			measurements[x] = toDouble( this.weatherObservation[x].temperature );
+		averagedValues.temperature = toDouble( WeatherStore.morningAverage(column, 0, index0, minutes0, length) );
 		
 		// Pressure
 		for (Integer x = 0; x < this.weatherObservation.length; x++)
-			measurements[x] = this.weatherObservation[x].pressure;
-		
-		eligibleMeasurements = _checkAndReindexMeasurements(index0, minutes0, measurements);
-		if (eligibleMeasurements != null)
-			averagedValues.pressure = _calculateMeasurementAverage(eligibleMeasurements, minutes0, length);
+			measurements[x] = toDouble( this.weatherObservation[x].pressure );
+		averagedValues.pressure = toDouble( WeatherStore.morningAverage(column, 0, index0, minutes0, length) );
 		
 		// Winds
 		if (minutes0 == 0 && this.weatherObservation[index0].wind != null) {
@@ -269,26 +300,14 @@ public class DailyWeather {
 		}
 
 		// Cloud cover
-		for (Integer x = 0; x < this.weatherObservation.length; x++) {
-			if (this.weatherObservation[x].cloudCover != null)
-				measurements[x] = (double) this.weatherObservation[x].cloudCover;
-			else
-				measurements[x] = null;
-		}
-		eligibleMeasurements = _checkAndReindexMeasurements(index0, minutes0, measurements);
-		if (eligibleMeasurements != null)
-			averagedValues.cloudCover = _calculateMeasurementAverage(eligibleMeasurements, minutes0, length);
+		for (Integer x = 0; x < this.weatherObservation.length; x++)
+			measurements[x] = toDouble( this.weatherObservation[x].cloudCover );
+		averagedValues.cloudCover = toDouble( WeatherStore.morningAverage(column, 0, index0, minutes0, length) );
 		
 		// Humidity
-		for (Integer x = 0; x < this.weatherObservation.length; x++) {
-			if (this.weatherObservation[x].humidity != null)
-				measurements[x] = (double) this.weatherObservation[x].humidity;
-			else
-				measurements[x] = null;
-		}
-		eligibleMeasurements = _checkAndReindexMeasurements(index0, minutes0, measurements);
-		if (eligibleMeasurements != null)
-			averagedValues.humidity = _calculateMeasurementAverage(eligibleMeasurements, minutes0, length);
+		for (Integer x = 0; x < this.weatherObservation.length; x++)
+			measurements[x] = toDouble( this.weatherObservation[x].humidity );
+		averagedValues.humidity = toDouble( WeatherStore.morningAverage(column, 0, index0, minutes0, length) );
 		
 		return averagedValues;
 	}
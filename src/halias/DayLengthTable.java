@@ -0,0 +1,185 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import com.luckycatlabs.sunrisesunset.SunriseSunsetCalculator;
+import com.luckycatlabs.sunrisesunset.dto.Location;
+
+/**
+ * Memoized sunrise and sunset times of one location, indexed by day number (days since 1970-01-01).
+ *
+ * Sunrise and sunset are calculated at most once per date, and packed into one int as minutes from midnight UTC.
+ * The table grows lazily to cover new dates, and can be saved to file so that later runs can skip the calculation.
+ */
+public class DayLengthTable implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int NOT_CALCULATED = -1;
+
+	private final double latitude, longitude;
+
+	private int firstDay;
+	private int[] packedTimes;		// sunrise minutes << 16 | sunset minutes
+
+	private transient SunriseSunsetCalculator calculator;
+
+	public DayLengthTable(double latitude, double longitude) {
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.firstDay = 0;
+		this.packedTimes = new int[0];
+	}
+
+	/**
+	 * Get packed sunrise and sunset minutes of a day, calculating them if needed.
+	 *
+	 * @param	dayNumber	days since 1970-01-01
+	 * @return	sunrise minutes << 16 | sunset minutes, both in UTC
+	 */
+	public synchronized int get(int dayNumber) {
+		ensureRange(dayNumber);
+
+		int i = dayNumber - firstDay;
+		if (packedTimes[i] == NOT_CALCULATED) {
+			packedTimes[i] = calculate(dayNumber);
+		}
+		return packedTimes[i];
+	}
+
+	public static int sunriseMinutes(int packed) {
+		return packed >>> 16;
+	}
+
+	public static int sunsetMinutes(int packed) {
+		return packed & 0xffff;
+	}
+
+	/**
+	 * Number of days having calculated times.
+	 */
+	public synchronized int size() {
+		int n = 0;
+		for (int packed : packedTimes) {
+			if (packed != NOT_CALCULATED)
+				n++;
+		}
+		return n;
+	}
+
+	public boolean isForLocation(double latitude, double longitude) {
+		return this.latitude == latitude && this.longitude == longitude;
+	}
+
+	/**
+	 * Grow table to contain the given day. Table is grown in steps of a year to avoid copying on every new date.
+	 */
+	private void ensureRange(int dayNumber) {
+		if (packedTimes.length == 0) {
+			firstDay = dayNumber;
+			packedTimes = new int[366];
+			Arrays.fill(packedTimes, NOT_CALCULATED);
+		} else if (dayNumber < firstDay) {
+			int newFirstDay = Math.min(dayNumber, firstDay - 366);
+			int[] times = new int[packedTimes.length + (firstDay - newFirstDay)];
+			Arrays.fill(times, NOT_CALCULATED);
+			System.arraycopy(packedTimes, 0, times, firstDay - newFirstDay, packedTimes.length);
+			packedTimes = times;
+			firstDay = newFirstDay;
+		} else if (dayNumber - firstDay >= packedTimes.length) {
+			int newLength = Math.max(dayNumber - firstDay + 1, packedTimes.length + 366);
+			int oldLength = packedTimes.length;
+			packedTimes = Arrays.copyOf(packedTimes, newLength);
+			Arrays.fill(packedTimes, oldLength, newLength, NOT_CALCULATED);
+		}
+	}
+
+	private int calculate(int dayNumber) {
+		if (calculator == null)
+			calculator = new SunriseSunsetCalculator(new Location(latitude, longitude), "UTC");
+
+		Calendar date = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		date.clear();
+		date.setTimeInMillis(dayNumber * 86400000L);
+
+		int sunrise = parseMinutes(calculator.getOfficialSunriseForDate(date));
+		int sunset = parseMinutes(calculator.getOfficialSunsetForDate(date));
+
+		return (sunrise << 16) | sunset;
+	}
+
+	/**
+	 * Parse "HH:mm" to minutes from midnight.
+	 */
+	private static int parseMinutes(String time) {
+		int hours = 0, minutes = 0;
+		boolean afterColon = false;
+
+		for (int i = 0; i < time.length(); i++) {
+			char c = time.charAt(i);
+			if (c == ':')
+				afterColon = true;
+			else if (afterColon)
+				minutes = minutes * 10 + (c - '0');
+			else
+				hours = hours * 10 + (c - '0');
+		}
+		return hours * 60 + minutes;
+	}
+
+	/**
+	 * Save table to file.
+	 */
+	public synchronized void save(String file_name) throws IOException {
+		ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file_name)));
+		try {
+			out.writeObject(this);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Load table from file.
+	 */
+	public static DayLengthTable load(String file_name) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file_name)));
+		try {
+			return (DayLengthTable) in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+}
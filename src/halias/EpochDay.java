@@ -0,0 +1,213 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Dates as day numbers (days since 1970-01-01) in proleptic Gregorian calendar.
+ *
+ * Calendar attributes of days of years 1900-2099 are looked up from tables built on first use. ISO strings of days
+ * are cached as they are asked for. Days outside the tables are calculated.
+ */
+public final class EpochDay {
+
+	public static final int WINTER = 0;
+	public static final int SPRING = 1;
+	public static final int SUMMER = 2;
+	public static final int AUTUMN = 3;
+
+	/** Names of seasons, which are also local names of season resources of Halias schema */
+	public static final String[] SEASON_NAMES = { "winter", "spring", "summer", "autumn" };
+
+	private static final int TABLE_FIRST_DAY = of(1900, 1, 1);
+	private static final int TABLE_END_DAY = of(2100, 1, 1);
+
+	/** First day of bitsets of days: bit i of a bitset of days is day BITSET_FIRST_DAY + i */
+	public static final int BITSET_FIRST_DAY = TABLE_FIRST_DAY;
+
+	/**
+	 * Tables of days from TABLE_FIRST_DAY to TABLE_END_DAY, built when first used.
+	 */
+	private static class Tables {
+		static final byte[] WEEK_OF_YEAR = new byte[ TABLE_END_DAY - TABLE_FIRST_DAY ];
+		static final byte[] MONTH = new byte[ TABLE_END_DAY - TABLE_FIRST_DAY ];
+		static final String[] ISO_STRING = new String[ TABLE_END_DAY - TABLE_FIRST_DAY ];
+
+		static {
+			Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+			for (int dayNumber = TABLE_FIRST_DAY; dayNumber < TABLE_END_DAY; dayNumber++) {
+				cal.setTimeInMillis(dayNumber * MILLIS_PER_DAY);
+				WEEK_OF_YEAR[ dayNumber - TABLE_FIRST_DAY ] = (byte) cal.get(Calendar.WEEK_OF_YEAR);
+				MONTH[ dayNumber - TABLE_FIRST_DAY ] = (byte) (cal.get(Calendar.MONTH) + 1);
+			}
+		}
+	}
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private EpochDay() {
+	}
+
+	private static boolean inTables(int dayNumber) {
+		return dayNumber >= TABLE_FIRST_DAY && dayNumber < TABLE_END_DAY;
+	}
+
+	/**
+	 * Day number of a date.
+	 *
+	 * @param	year	year
+	 * @param	month	month (1-12)
+	 * @param	day		day of month
+	 */
+	public static int of(int year, int month, int day) {
+		// Shift year to begin from March, so that leap day is the last day of year
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Bit of a day in bitsets of days.
+	 *
+	 * @throws	IllegalArgumentException	if the day is before BITSET_FIRST_DAY
+	 */
+	public static int toBit(int dayNumber) {
+		if (dayNumber < BITSET_FIRST_DAY)
+			throw new IllegalArgumentException("Date " + toIsoString(dayNumber) + " is before " + toIsoString(BITSET_FIRST_DAY)
+					+ ", the first day of observation day sets");
+		return dayNumber - BITSET_FIRST_DAY;
+	}
+
+	/**
+	 * Day of a bit in bitsets of days.
+	 */
+	public static int fromBit(int bit) {
+		return BITSET_FIRST_DAY + bit;
+	}
+
+	/**
+	 * Day number of a date string without allocating.
+	 *
+	 * @param	dateString	date as yyyy-MM-dd
+	 */
+	public static int parse(String dateString) {
+		int year = 0, month = 0, day = 0;
+		int field = 0;
+
+		for (int i = 0; i < dateString.length(); i++) {
+			char c = dateString.charAt(i);
+			if (c == '-') {
+				field++;
+			} else if (field == 0) {
+				year = year * 10 + (c - '0');
+			} else if (field == 1) {
+				month = month * 10 + (c - '0');
+			} else {
+				day = day * 10 + (c - '0');
+			}
+		}
+		return of(year, month, day);
+	}
+
+	/**
+	 * Date of a day number, packed as year * 10000 + month * 100 + day.
+	 */
+	public static int toYearMonthDay(int dayNumber) {
+		int z = dayNumber + 719468;
+		int era = (z >= 0 ? z : z - 146096) / 146097;
+		int dayOfEra = z - era * 146097;
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		return year * 10000 + month * 100 + day;
+	}
+
+	public static int year(int dayNumber) {
+		return toYearMonthDay(dayNumber) / 10000;
+	}
+
+	public static int month(int dayNumber) {
+		if (inTables(dayNumber))
+			return Tables.MONTH[ dayNumber - TABLE_FIRST_DAY ];
+		return toYearMonthDay(dayNumber) / 100 % 100;
+	}
+
+	public static int dayOfMonth(int dayNumber) {
+		return toYearMonthDay(dayNumber) % 100;
+	}
+
+	/**
+	 * Week of year of a day, as given by a UTC calendar of the default locale.
+	 */
+	public static byte weekOfYear(int dayNumber) {
+		if (inTables(dayNumber))
+			return Tables.WEEK_OF_YEAR[ dayNumber - TABLE_FIRST_DAY ];
+
+		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		cal.setTimeInMillis(dayNumber * MILLIS_PER_DAY);
+		return (byte) cal.get(Calendar.WEEK_OF_YEAR);
+	}
+
+	/**
+	 * Meteorological season of a day: {@link #WINTER} for December-February, {@link #SPRING} for March-May etc.
+	 */
+	public static int season(int dayNumber) {
+		return month(dayNumber) % 12 / 3;
+	}
+
+	/**
+	 * Date of a day number as yyyy-MM-dd.
+	 */
+	public static String toIsoString(int dayNumber) {
+		if (!inTables(dayNumber))
+			return isoString(dayNumber);
+
+		// Strings are immutable, so a racing thread at most builds the same string again
+		String iso = Tables.ISO_STRING[ dayNumber - TABLE_FIRST_DAY ];
+		if (iso == null) {
+			iso = isoString(dayNumber);
+			Tables.ISO_STRING[ dayNumber - TABLE_FIRST_DAY ] = iso;
+		}
+		return iso;
+	}
+
+	private static String isoString(int dayNumber) {
+		int ymd = toYearMonthDay(dayNumber);
+		return WeatherData.dayIndex(ymd / 10000, ymd / 100 % 100, ymd % 100);
+	}
+
+	/**
+	 * Date of a day number as yyyyMMdd, e.g. for local names of daily resources.
+	 */
+	public static String toCompactString(int dayNumber) {
+		return Integer.toString(toYearMonthDay(dayNumber));
+	}
+}
@@ -27,25 +27,42 @@ import halias.DailyWeather.WindInstance;
 import halias.WeatherData.DayLength;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
-import java.text.DateFormat;
 import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.lang.StreamRDFCounting;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.writer.WriterStreamRDFBlocks;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.NodeIterator;
-import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.rdf.model.ResIterator;
 import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.shared.PrefixMapping;
 import com.hp.hpl.jena.vocabulary.DC;
 import com.hp.hpl.jena.vocabulary.RDF;
 import com.hp.hpl.jena.vocabulary.RDFS;
@@ -62,6 +79,7 @@ public class HaliasDataProcessor {
 	final static String DATACUBE_ONTOLOGY_FILE = "/home/mkoho/HALIAS/InputFiles/halias.ttl";
 	final static String WEATHER_DATA_DIRECTORY = "/home/mkoho/HALIAS/RussaroWeather/";
 	final static String OUTPUT_DIRECTORY = "/home/mkoho/HALIAS/JavaOutput/";
+	final static String SNAPSHOT_DIRECTORY = "/home/mkoho/HALIAS/JavaOutput/snapshots/";
 	
 	final static String NS_QB = "http://purl.org/linked-data/cube#";
 	final static String NS_TAXMEON = "http://www.yso.fi/onto/taxmeon/";
@@ -72,6 +90,7 @@ public class HaliasDataProcessor {
 	final static String NS_HALIAS_OBSERVATIONS = "http://ldf.fi/halias/observations/birds/";
     final static String NS_HALIAS_WEATHER = "http://ldf.fi/halias/observations/weather/";
     final static String NS_RUSSAROCUBE = "http://ldf.fi/russaro/";
+    final static String RUSSARO = "russaro";
 	final static String NS_WINDS = "http://ldf.fi/halias/observations/winds/";
 	final static String NS_HALIAS_SCHEMA = "http://ldf.fi/schema/halias/";
 	final static String NS_DGU_INTERVALS = "http://reference.data.gov.uk/def/intervals/";
@@ -85,13 +104,13 @@ public class HaliasDataProcessor {
 	public Model taxonOntology;
 	public Model haliasSchema;
 	public Model windInstances;
-    public Model rWC;       // Russarö Original Weather Cube
-    public Model hWC;       // Halias Weather Cube
 
 //    HashMap<String, String> conservationStatuses;
 //	HashMap<String, String> directiveSpecies;
 	HashMap<String, String> speciesAbbreviations;
-	HashMap<String, Integer> standardizedObservations;
+	StandardizedObservationTable standardizedObservations;
+	BitSet haliasObservationDays;		// By EpochDay bit, added once per observation file, possibly by several threads
+	Map<String, BitSet> observationDaysByFile;
 	//Set<String> observationlessDays;
 
 	// These could be used for validating from vakio-file, but seems that the file has the same duplicates...
@@ -99,6 +118,15 @@ public class HaliasDataProcessor {
 	// Set newMigrationObservations;
 	
 	WeatherData weatherRussaro;
+	List<WeatherStation> weatherStations;		// Stations with weather cubes, Russarö first
+	ParallelCubeWriter cubeWriter;		// Writer of weather cubes in parallel, or null to write them in one thread
+	TaxonLabelIndex taxonLabels;
+	List<String> unmatchedConservationSpecies;		// Species names of the last read CSVs without a taxon
+	List<String> unmatchedDirectiveSpecies;
+	RunReport report;
+	ModelSnapshotCache snapshots;		// Parsed ontologies, see readTaxonOntologies and readCoreOntologies
+	OutputSink dumpSink;		// Sink of observation files and weather cubes
+	Map<String, OutputSink> outputSinks;		// Sinks chosen for single output files
 	
 	HaliasValidator validator;
 
@@ -109,15 +137,20 @@ public class HaliasDataProcessor {
 		taxonOntology = ModelFactory.createDefaultModel();
 		haliasSchema = ModelFactory.createDefaultModel();
 		windInstances = ModelFactory.createDefaultModel();
-        rWC = ModelFactory.createDefaultModel();
-        hWC = ModelFactory.createDefaultModel();
 //		conservationStatuses = new HashMap<String, String>( 90 );
 //		directiveSpecies = new HashMap<String, String>( 64 );
 		speciesAbbreviations = new HashMap<String, String>( 90 );
-		standardizedObservations = new HashMap<String, Integer>( 450000 );
+		standardizedObservations = new StandardizedObservationTable( 450000 );
+		haliasObservationDays = new BitSet( 16384 );
+		observationDaysByFile = new HashMap<String, BitSet>();
 
 		weatherRussaro = new WeatherData();
+		weatherStations = new ArrayList<WeatherStation>();
 		validator = new HaliasValidator();
+		report = new RunReport();
+		snapshots = new ModelSnapshotCache( SNAPSHOT_DIRECTORY );
+		dumpSink = OutputSink.PLAIN;
+		outputSinks = new ConcurrentHashMap<String, OutputSink>();
 		
 		// Create a set of all days and later pop observation days out		
 //		observationlessDays = new TreeSet();
@@ -132,26 +165,26 @@ public class HaliasDataProcessor {
 
 	
 	/** 
-	 * Read all taxonomy and related data to graphs 
+	 * Read all taxonomy and related data to graphs, from snapshots of earlier runs if the files are unchanged
 	 */
 	public void readTaxonOntologies() {
 		//taxonOntology.read("file:" + DEFAULT_INPUT_DIRECTORY + "lintuset_HALIAS.ttl", "TTL");
-		taxonOntology.read("file:" + PYTHON_OUPUT_DIRECTORY + "halias_taxa_v2.ttl", "TTL");
+		snapshots.read(taxonOntology, PYTHON_OUPUT_DIRECTORY + "halias_taxa_v2.ttl", "TTL");
 		
 		//taxonOntology.read("file:" + DEFAULT_INPUT_DIRECTORY + "lisataksonit.ttl", "TTL");
 	}
 	
 	
 	/** 
-	 * Read all core ontology data 
+	 * Read all core ontology data, from snapshots of earlier runs if the files are unchanged
 	 */
 	public void readCoreOntologies() {
-		speciesCharacteristicsOntology.read("file:" + DEFAULT_INPUT_DIRECTORY + "tuntomerkit.ttl", "TTL");
-		characteristicsOntology.read("file:" + DEFAULT_INPUT_DIRECTORY + "tuntomerkki_facet_halias.ttl", "TTL");
+		snapshots.read(speciesCharacteristicsOntology, DEFAULT_INPUT_DIRECTORY + "tuntomerkit.ttl", "TTL");
+		snapshots.read(characteristicsOntology, DEFAULT_INPUT_DIRECTORY + "tuntomerkki_facet_halias.ttl", "TTL");
 		
 		//haliasSchema.read("file:" + DEFAULT_INPUT_DIRECTORY + "skeema_halias.ttl", "TTL");
-		haliasSchema.read("file:" + DEFAULT_INPUT_DIRECTORY + "skeema_saa.ttl", "TTL");
-		haliasSchema.read("file:" + DATACUBE_ONTOLOGY_FILE, "TTL");
+		snapshots.read(haliasSchema, DEFAULT_INPUT_DIRECTORY + "skeema_saa.ttl", "TTL");
+		snapshots.read(haliasSchema, DATACUBE_ONTOLOGY_FILE, "TTL");
 	}
 	
 	
@@ -202,7 +235,7 @@ public class HaliasDataProcessor {
 
 
 	/** 
-	 * Put vernacular name labels to taxa
+	 * Put vernacular name labels to taxa, and build taxon label index for labelling observations
 	 */
 	public void labelTaxons() {
 		
@@ -221,6 +254,8 @@ public class HaliasDataProcessor {
 			    taxonOntology.add( id, RDFS.label, taxonOntology.createLiteral( vernStr.asLiteral().getString(), vernStr.asLiteral().getLanguage()));
 			}
         }
+
+		taxonLabels = new TaxonLabelIndex(taxonOntology);
 	}
 
 	
@@ -228,42 +263,41 @@ public class HaliasDataProcessor {
 	 * Put vernacular name labels to observations 
 	 */
 	public void addLabelsToObservations() {
-		ResIterator iter = observationOntology.listResourcesWithProperty( RDF.type, observationOntology.createResource(NS_QB + "Observation" ));
+		addLabelsToObservations(observationOntology);
+	}
+
+
+	/** 
+	 * Put vernacular name labels to observations of the given graph
+	 * 
+	 * @param	observations	graph containing qb:Observations
+	 */
+	public void addLabelsToObservations(Model observations) {
+		ResIterator iter = observations.listResourcesWithProperty( RDF.type, Terms.Observation);
 		
 		RDFNode date;
 		String dateStr;
-		ResIterator verns;
-		NodeIterator verns2;
+		TaxonLabelIndex.Label[] labels;
+		
+		if (taxonLabels == null)
+			taxonLabels = new TaxonLabelIndex(taxonOntology);
 		
 		while (iter.hasNext()) {
 		    Resource r = iter.nextResource();
 
-		    Resource id = (Resource) observationOntology.listObjectsOfProperty(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "observedSpecies")).next();
-			verns = taxonOntology.listResourcesWithProperty( taxonOntology.createProperty(NS_TAXMEON, "inverse_of_hasVernacularName"), id );
+		    Resource id = (Resource) observations.listObjectsOfProperty(r, Terms.observedSpecies).next();
+		    labels = taxonLabels.get( id.getURI() );
 
-		    date = observationOntology.listObjectsOfProperty(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "refTime")).next();
+		    date = observations.listObjectsOfProperty(r, Terms.refTime).next();
 		    dateStr = date.asLiteral().getString();		    
 
-			if ( verns.hasNext() ) {
-				
-				if (observationOntology.getProperty(r, RDFS.label) != null)
-                    observationOntology.remove( observationOntology.getProperty(r, RDFS.label));
-				
-			    while ( verns.hasNext()) {
-				    Resource vern = verns.nextResource();
-				    RDFNode vernStr = taxonOntology.listObjectsOfProperty( vern, RDFS.label ).next();
-				    observationOntology.add( r, RDFS.label, taxonOntology.createLiteral( vernStr.asLiteral().getString() + ", " + dateStr, vernStr.asLiteral().getLanguage()));
-				}
-			} else {
+			if ( labels != null && labels.length > 0 ) {
 				
-				verns2 = taxonOntology.listObjectsOfProperty( id, RDFS.label );
-
-				if ( verns2.hasNext() && observationOntology.getProperty(r, RDFS.label) != null)
-                    observationOntology.remove( observationOntology.getProperty(r, RDFS.label) );
+				if (observations.getProperty(r, RDFS.label) != null)
+                    observations.remove( observations.getProperty(r, RDFS.label));
 				
-			    while ( verns2.hasNext()) {
-			    	RDFNode vernStr = verns2.nextNode();
-				    observationOntology.add( r, RDFS.label, taxonOntology.createLiteral( vernStr.asLiteral().getString() + ", " + dateStr, vernStr.asLiteral().getLanguage()));
+				for (TaxonLabelIndex.Label label : labels) {
+				    observations.add( r, RDFS.label, observations.createLiteral( label.label + ", " + dateStr, label.lang ));
 				}
 			}
 		}
@@ -295,30 +329,168 @@ public class HaliasDataProcessor {
 	 * Write observation ontology to file 
 	 */
 	public void writeFile( Model model, String file_name, String format ) {
-		FileOutputStream fos;
+		OutputStream out = null;
 		try {
-			//fos = new FileOutputStream("HALIAS_FULL.ttl"); // write the file in any format e.g. TTL
-			fos = new FileOutputStream( file_name ); // write the file in any format e.g. TTL
-			model.write( fos, format ); // *TTL = TURTLE
+			out = openOutput( file_name );
+			model.write( out, format ); // *TTL = TURTLE
 		} catch ( Exception e ) {
 			e.printStackTrace();
-		} 
-		
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Choose the sink of an output file, e.g. to compress it.
+	 */
+	public void setOutputSink( String file_name, OutputSink sink ) {
+		outputSinks.put( file_name, sink );
+	}
+
+
+	/**
+	 * Open an output file with its sink. Files without a chosen sink are written by their name,
+	 * compressing files ending with .gz with the sink of observation files and weather cubes if it compresses.
+	 * 
+	 * @return	buffered stream, to be closed by the caller
+	 */
+	OutputStream openOutput( String file_name ) throws IOException {
+		OutputSink sink = outputSinks.get( file_name );
+		if (sink == null) {
+			sink = OutputSink.forFile( file_name );
+			if (sink != OutputSink.PLAIN && dumpSink != OutputSink.PLAIN)
+				sink = dumpSink;
+		}
+		return sink.open( file_name );
+	}
+
+
+	/**
+	 * Observation file provided by Python conversion program.
+	 * 
+	 * @param	i	number of the observation file
+	 */
+	public String observationInputFile( Integer i ) {
+		return PYTHON_OUPUT_DIRECTORY + "HALIAS" + i + ".rdf";
+	}
+
+
+	/**
+	 * Output file of an observation file, compressed according to the sink of observation files.
+	 * 
+	 * @param	i	number of the observation file
+	 */
+	public String observationOutputFile( Integer i ) {
+		return OUTPUT_DIRECTORY + "HALIAS" + i + "_full.ttl" + dumpSink.suffix();
 	}
 
 	
+	/** 
+	 * Process an observation file as a stream, writing enriched observations to file as they are read.
+	 * Only one observation is kept in memory at a time, see {@link ObservationStreamProcessor}.
+	 * 
+	 * @param	input_file_name		RDF/XML observation file provided by Python conversion program
+	 * @param	output_file_name	file to write to
+	 * @param	format				"TTL" for streaming Turtle, otherwise N-Triples
+	 */
+	public void processObservationStream( String input_file_name, String output_file_name, String format ) {
+		OutputStream out = null;
+		RunReport.Stage stage = report.start( new File( input_file_name ).getName() + " stream" );
+		try {
+			out = openOutput( output_file_name );
+
+			StreamRDFCounting writer = StreamRDFLib.count( createStreamWriter( out, format ) );
+
+			ObservationStreamProcessor sink = new ObservationStreamProcessor(this, writer);
+			RDFDataMgr.parse(sink, "file:" + input_file_name, Lang.RDFXML);
+
+			System.out.println( "------ " + sink.observationCount + " observations" );
+			stage.addTriples( writer.countTriples() );
+			stage.addObservations( sink.observationCount );
+			setObservationDays( input_file_name, sink.observationDays );
+		} catch ( Exception e ) {
+			e.printStackTrace();
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			stage.finish();
+		}
+	}
+
+
+	/**
+	 * Create a writer for streaming triples to output.
+	 * 
+	 * @param	out		output stream, closed by the caller
+	 * @param	format	"TTL" for streaming Turtle, otherwise N-Triples
+	 */
+	static StreamRDF createStreamWriter( OutputStream out, String format ) {
+		if (format.equals("TTL"))
+			return new WriterStreamRDFBlocks( out );
+		return StreamRDFLib.writer( out );
+	}
+
+
+	/**
+	 * Set namespace prefixes used in observation output files.
+	 * 
+	 * @param	prefixes	prefix mapping (e.g. observation graph) to modify
+	 */
+	public static void setObservationNsPrefixes( PrefixMapping prefixes ) {
+		prefixes.setNsPrefix("xsd", XSD.getURI());
+		prefixes.setNsPrefix("dgui", NS_DGU_INTERVALS);
+		prefixes.setNsPrefix("halias", NS_HALIAS_OBSERVATIONS);
+		prefixes.removeNsPrefix( "halias-schema" );
+		prefixes.setNsPrefix("hs", NS_HALIAS_SCHEMA);
+		prefixes.setNsPrefix("winds", NS_WINDS);
+		prefixes.setNsPrefix("bio", NS_BIO);
+		prefixes.setNsPrefix("rdfs", RDFS.getURI());
+		prefixes.setNsPrefix("sdmx-a", NS_SDMX_A);
+	}
+
+
 	/** 
 	 * Read conservation statuses and directive species and add them to taxon ontology.
 	 */
 	public void readConservationStatuses() {
+		readConservationStatuses( DEFAULT_INPUT_DIRECTORY + "suomen_uhanalaiset_HALIAS.csv", DEFAULT_INPUT_DIRECTORY + "lintudirektiivin_KAIKKI_lajit.csv" );
+	}
+
+
+	/** 
+	 * Read conservation statuses and directive species and add them to taxon ontology. Species are joined to taxa
+	 * by vernacular name and label, see {@link TaxonNameIndex}. Species without a taxon are listed in
+	 * {@link #unmatchedConservationSpecies} and {@link #unmatchedDirectiveSpecies}.
+	 * 
+	 * @param	status_file_name		CSV of Finnish vernacular names and conservation statuses
+	 * @param	directive_file_name		list of scientific names of the species of EU birds directive
+	 */
+	public void readConservationStatuses( String status_file_name, String directive_file_name ) {
 		
 		InputStream		fis;
 		BufferedReader	br;
 		String			line;
 		String[]		strArr;
 
+		TaxonNameIndex names = new TaxonNameIndex( taxonOntology );
+
+		unmatchedConservationSpecies = new ArrayList<String>();
+		unmatchedDirectiveSpecies = new ArrayList<String>();
+
 		try {
-			fis = new FileInputStream(DEFAULT_INPUT_DIRECTORY + "suomen_uhanalaiset_HALIAS.csv");
+			fis = new FileInputStream(status_file_name);
 			br = new BufferedReader(new InputStreamReader(fis, Charset.forName("UTF-8")));
 			try {
 				while ((line = br.readLine()) != null) {
@@ -328,41 +500,51 @@ public class HaliasDataProcessor {
 					
 					// ASSOSIOI URI JA UHANALAISUUS 
 
-					ResIterator vernacularNames = taxonOntology.listResourcesWithProperty( taxonOntology.createProperty(NS_TAXMEON, "vernacularName"), taxonOntology.createLiteral( species ));					
-
-					if (vernacularNames.hasNext()) {
-						Resource vernacular = vernacularNames.next();					
-						Resource taxon = taxonOntology.listResourcesWithProperty( taxonOntology.createProperty(NS_TAXMEON, "hasVernacularName"), vernacular ).next();
-						taxonOntology.add(taxon, taxonOntology.createProperty(NS_HALIAS_SCHEMA, "hasConservationStatus2010"), taxonOntology.createResource(NS_HALIAS_SCHEMA + "conservationStatus" + status ));
-					}
+					Resource taxon = names.getByVernacularName( species );
+					if (taxon != null)
+						taxonOntology.add(taxon, Terms.hasConservationStatus2010, taxonOntology.createResource(NS_HALIAS_SCHEMA + "conservationStatus" + status ));
+					else
+						unmatchedConservationSpecies.add( species );
 				}
 			} catch (IOException e) {
 				e.printStackTrace();
+			} finally {
+				br.close();
 			}
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
 		
 		try {
-			fis = new FileInputStream(DEFAULT_INPUT_DIRECTORY + "lintudirektiivin_KAIKKI_lajit.csv");
+			fis = new FileInputStream(directive_file_name);
 			br = new BufferedReader(new InputStreamReader(fis, Charset.forName("UTF-8")));
 			try {
 				while ((line = br.readLine()) != null) {
 					String species = line.trim();
+					if ( species.isEmpty() )
+						continue;
 
 					// ASSOSIOI URI JA LINTUDIREKTIIVI 
 
-					ResIterator taxon = taxonOntology.listResourcesWithProperty( RDFS.label, species );
-					if ( taxon.hasNext() ) {
-						taxonOntology.add(taxon.next(), taxonOntology.createProperty(NS_HALIAS_SCHEMA, "isDirectiveSpecies"), taxonOntology.createTypedLiteral( true ));
-					}
+					Resource taxon = names.getByLabel( species );
+					if ( taxon != null )
+						taxonOntology.add(taxon, Terms.isDirectiveSpecies, taxonOntology.asRDFNode( Terms.booleanLiteral( true )));
+					else
+						unmatchedDirectiveSpecies.add( species );
 				}
 			} catch (IOException e) {
 				e.printStackTrace();
+			} finally {
+				br.close();
 			}
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
+
+		if (!unmatchedConservationSpecies.isEmpty())
+			System.out.println( "- NO TAXON FOR CONSERVATION STATUSES OF " + unmatchedConservationSpecies.size() + " SPECIES: " + unmatchedConservationSpecies + " -" );
+		if (!unmatchedDirectiveSpecies.isEmpty())
+			System.out.println( "- NO TAXON FOR " + unmatchedDirectiveSpecies.size() + " DIRECTIVE SPECIES: " + unmatchedDirectiveSpecies + " -" );
 	}
 	
 
@@ -376,7 +558,6 @@ public class HaliasDataProcessor {
 		BufferedReader	br;
 		String			line;
 		String[]		strArr;
-		String 			indx;
 
 		try {
 			fis = new FileInputStream(DEFAULT_INPUT_DIRECTORY + "HALIAS_Kokodata_VAKIOT_2008asti.csv");
@@ -398,14 +579,12 @@ public class HaliasDataProcessor {
 
 					//System.out.println( line );
 					if ( (strArr.length > 4) && (strArr[ 4 ].length() > 0 )) {
+						// Date is month/day/year
 						String[] temp = strArr[ 1 ].split("/");
 						
-						if (( temp[1].length() )== 1 )
-							temp[1] = "0" + temp[1];
-						if (( temp[0].length() )== 1 )
-							temp[0] = "0" + temp[0];
-						
-						indx = temp[ 2 ] + "-" + temp[ 0 ] + "-" + temp[ 1 ];
+						Integer year = Integer.parseInt( temp[ 2 ] );
+						Integer month = Integer.parseInt( temp[ 0 ] );
+						Integer day = Integer.parseInt( temp[ 1 ] );
 						
 						String taxon = strArr[ 0 ].trim().toLowerCase();
 						Integer vakio = Integer.parseInt( strArr[ 4 ] );
@@ -417,8 +596,7 @@ public class HaliasDataProcessor {
 							//observationOntology.remove( observationOntology.getProperty(r,  observationOntology.createProperty(NS_HALIAS_SCHEMA, "countLocal")) );
 							//observationOntology.add(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countLocal"), observationOntology.createTypedLiteral( Integer.parseInt( loc )));
 							
-							standardizedObservations.put( indx + ";" + taxonNode.toString(), vakio);
-							//System.out.println( indx + ";" + taxonNode.toString() );
+							standardizedObservations.put( year, month, day, taxonNode.toString(), vakio );
 							
 							if (iter.hasNext()) {
 								throw new RuntimeException("We should not have duplicate abbreviations.");
@@ -440,8 +618,19 @@ public class HaliasDataProcessor {
 	 * Add standardized bird observation counts to graph and add literal types to bird counts.
 	 */
 	public void processBirdCounts() {
+		processBirdCounts(observationOntology);
+	}
+
+
+	/**
+	 * Add standardized bird observation counts and literal types to bird counts of the given graph.
+	 * 
+	 * @param	observations	graph containing qb:Observations
+	 */
+	public void processBirdCounts(Model observations) {
 		
-		ResIterator iter = observationOntology.listResourcesWithProperty(RDF.type, observationOntology.createResource(NS_QB + "Observation"));
+		Map<String, String> validationNames = new HashMap<String, String>();
+		ResIterator iter = observations.listResourcesWithProperty(RDF.type, Terms.Observation);
 		String dateString;
 		
 		String loc, mig, add;
@@ -452,14 +641,14 @@ public class HaliasDataProcessor {
 		while (iter.hasNext()) {
 		    
 			Resource r = iter.nextResource();
-		    RDFNode date = observationOntology.listObjectsOfProperty(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "refTime")).next();
+		    RDFNode date = observations.listObjectsOfProperty(r, Terms.refTime).next();
 			
 		    dateString = date.asLiteral().getString();
 		    
 		    /** Add XSD type to bird counts */
-		    NodeIterator local = observationOntology.listObjectsOfProperty(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countLocal"));
-		    NodeIterator migra = observationOntology.listObjectsOfProperty(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countMigration"));
-		    NodeIterator addit = observationOntology.listObjectsOfProperty(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countAdditionalArea"));
+		    NodeIterator local = observations.listObjectsOfProperty(r, Terms.countLocal);
+		    NodeIterator migra = observations.listObjectsOfProperty(r, Terms.countMigration);
+		    NodeIterator addit = observations.listObjectsOfProperty(r, Terms.countAdditionalArea);
 		    
 		    loc = "";
 		    mig = "";
@@ -471,60 +660,53 @@ public class HaliasDataProcessor {
 				loc = local.next().toString();
 				if ( loc.charAt( 0 ) == '+' )
 					loc = loc.substring(1);
-				observationOntology.remove( observationOntology.getProperty(r,  observationOntology.createProperty(NS_HALIAS_SCHEMA, "countLocal")) );
-				observationOntology.add(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countLocal"), observationOntology.createTypedLiteral( Integer.parseInt( loc )));
+				observations.remove( observations.getProperty(r, Terms.countLocal) );
+				observations.add(r, Terms.countLocal, observations.asRDFNode( Terms.intLiteral( Integer.parseInt( loc ))));
 				total += Integer.parseInt( loc );
 			} else {
-                observationOntology.add(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countLocal"), observationOntology.createTypedLiteral( new Integer(0)));
+                observations.add(r, Terms.countLocal, observations.asRDFNode( Terms.intLiteral( 0 )));
             }
 			if ( migra.hasNext() ) {
 				mig = migra.next().toString();
 				if ( mig.charAt( 0 ) == '+' )
 					mig = mig.substring(1);
-				observationOntology.remove( observationOntology.getProperty(r,  observationOntology.createProperty(NS_HALIAS_SCHEMA, "countMigration")) );
-				observationOntology.add(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countMigration"), observationOntology.createTypedLiteral( Integer.parseInt( mig )));
+				observations.remove( observations.getProperty(r, Terms.countMigration) );
+				observations.add(r, Terms.countMigration, observations.asRDFNode( Terms.intLiteral( Integer.parseInt( mig ))));
 				total += Integer.parseInt( mig );
 			} else {
-                observationOntology.add(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countMigration"), observationOntology.createTypedLiteral( new Integer(0)));
+                observations.add(r, Terms.countMigration, observations.asRDFNode( Terms.intLiteral( 0 )));
             }
 			if ( addit.hasNext() ) {
 				add = addit.next().toString().split("\\^\\^")[0];
 				if ( add.charAt( 0 ) == '+' )
 					add = add.substring(1);
-				observationOntology.remove( observationOntology.getProperty(r,  observationOntology.createProperty(NS_HALIAS_SCHEMA, "countAdditionalArea")) );
-				observationOntology.add(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countAdditionalArea"), observationOntology.createTypedLiteral( Integer.parseInt( add )));
+				observations.remove( observations.getProperty(r, Terms.countAdditionalArea) );
+				observations.add(r, Terms.countAdditionalArea, observations.asRDFNode( Terms.intLiteral( Integer.parseInt( add ))));
 				total += Integer.parseInt( add );
 			} else {
-                observationOntology.add(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countAdditionalArea"), observationOntology.createTypedLiteral( new Integer(0)));
+                observations.add(r, Terms.countAdditionalArea, observations.asRDFNode( Terms.intLiteral( 0 )));
             }
-			observationOntology.add(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countTotal"), observationOntology.createTypedLiteral( total ));
+			observations.add(r, Terms.countTotal, observations.asRDFNode( Terms.intLiteral( total )));
 			
 			/** ADD OBSERVED COUNT FOR STANDARDIZED OBSERVATION */
 		    
-		    RDFNode taxon = observationOntology.listObjectsOfProperty(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "observedSpecies")).next();
+		    RDFNode taxon = observations.listObjectsOfProperty(r, Terms.observedSpecies).next();
 			
-			//System.out.println( dateString + ";" + taxon.toString() );			
-		    Integer vakio = standardizedObservations.get( dateString + ";" + taxon.toString() );
-
-		    if ( vakio != null && vakio >= 0 ) {
-		    	//String taxonString = keke.getPropertyResourceValue(RDFS.label).toString();
-		    	String taxonString = "";
-		    	
-		    	for (NodeIterator i = taxonOntology.listObjectsOfProperty(taxon.asResource(), RDFS.label); i.hasNext();) {
-					RDFNode item = i.next();
-					if (item.asLiteral().getLanguage().equals(""))
-						taxonString = item.asLiteral().toString();
-					else if (item.asLiteral().getLanguage().equals("fi") && taxonString.equals(""))
-						taxonString = item.asLiteral().toString();
+		    int vakio = standardizedObservations.get( dateString, taxon.toString() );
+
+		    if ( vakio != StandardizedObservationTable.NO_VALUE && vakio >= 0 ) {
+				String taxonString = validationNames.get( taxon.toString() );
+				if (taxonString == null) {
+					taxonString = validationName( taxon.asResource() );
+					validationNames.put( taxon.toString(), taxonString );
 				}
-		    	//String taxonString = taxonOntology.listObjectsOfProperty(keke, RDFS.label);
 				String v_error = validator.validateMigrationCounts(dateString, taxonString, mig, vakio);
                 if (v_error.length() > 0) {
-                    observationOntology.add(r, observationOntology.createProperty(NS_SDMX_A, "nonsamplingErr"), observationOntology.createLiteral(v_error));
+                    observations.add(r, Terms.nonsamplingErr, observations.createLiteral(v_error));
                 }
-		    	observationOntology.add(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countStandardizedMigration"), observationOntology.createTypedLiteral( vakio ));
+		    	observations.add(r, Terms.countStandardizedMigration, observations.asRDFNode( Terms.intLiteral( vakio )));
             } else {
-                observationOntology.add(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "countStandardizedMigration"), observationOntology.createTypedLiteral( new Integer( 0 )));
+                observations.add(r, Terms.countStandardizedMigration, observations.asRDFNode( Terms.intLiteral( 0 )));
             }
 		    
 		    /** Take date away from observationless days set */
@@ -535,72 +717,409 @@ public class HaliasDataProcessor {
 		
 		
 	/**
-	 * Add date and week and month numbers to observations. Also add information about Halias observation days to aggregated weather data graph.
+	 * Add date and week and month numbers to observations. Also collect Halias observation days for aggregated weather data graph.
 	 */
 	public void addDateInformation() {
+		addDateInformation(observationOntology);
+	}
+
+
+	/**
+	 * Add date and week and month numbers to observations of the given graph.
+	 * 
+	 * @param	observations	graph containing qb:Observations
+	 */
+	public void addDateInformation(Model observations) {
+		addDateInformation(observations, null);
+	}
+
+
+	/**
+	 * Add date and week and month numbers to observations of the given graph, collecting also the observation days of the graph.
+	 * The observation days are added to the Halias observation days once the graph is done.
+	 * 
+	 * @param	observations	graph containing qb:Observations
+	 * @param	days			set of days by EpochDay bit to add the observation days to, or null
+	 */
+	public void addDateInformation(Model observations, BitSet days) {
 		
-		ResIterator iter = observationOntology.listResourcesWithProperty(RDF.type, observationOntology.createResource(NS_QB + "Observation"));
-		Integer year, month, day;
+		BitSet graphDays = new BitSet();
+		ResIterator iter = observations.listResourcesWithProperty(RDF.type, Terms.Observation);
 		String indx;
-		DailyWeather weather;
-		
-		DecimalFormat df = new DecimalFormat("#.0");
 		
 		while (iter.hasNext()) {
 		    
 			Resource r = iter.nextResource();
-		    RDFNode date = observationOntology.listObjectsOfProperty(r, observationOntology.createProperty(NS_HALIAS_SCHEMA, "refTime")).next();
+		    RDFNode date = observations.listObjectsOfProperty(r, Terms.refTime).next();
 			
 		    indx = date.asLiteral().getString();
 		    /* Parse date */
-		    year = Integer.parseInt( indx.split("-")[ 0 ] );
-		    month = Integer.parseInt( indx.split("-")[ 1 ] );
-		    day = Integer.parseInt( indx.split("-")[ 2 ] );
-
-
-            Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            cal.set( year, month - 1, day );
+		    int dayNumber = EpochDay.parse( indx );
 
 //				DayLength dayLen = weatherRussaro.getDayLength(cal);
 //
             /* Add week and month as dgu-intervals */
-            //RDFNode week = observationOntology.listObjectsOfProperty(r, observationOntology.createProperty(NAMESPACE_DGU_INTERVALS, "ordinalWeekOfYear")).next();
-            //observationOntology.remove( observationOntology.getProperty(r,  observationOntology.createProperty(NAMESPACE_DGU_INTERVALS, "ordinalWeekOfYear")) );
+            //RDFNode week = observations.listObjectsOfProperty(r, observations.createProperty(NAMESPACE_DGU_INTERVALS, "ordinalWeekOfYear")).next();
+            //observations.remove( observations.getProperty(r,  observations.createProperty(NAMESPACE_DGU_INTERVALS, "ordinalWeekOfYear")) );
 
-            observationOntology.add(r, observationOntology.createProperty( NS_HALIAS_SCHEMA, "weekOfYear" ), observationOntology.createTypedLiteral( (byte) cal.get(java.util.Calendar.WEEK_OF_YEAR )));
-            observationOntology.add(r, observationOntology.createProperty( NS_HALIAS_SCHEMA, "monthOfYear" ), observationOntology.createTypedLiteral( month.byteValue() ));
+            observations.add(r, Terms.weekOfYear, observations.asRDFNode( Terms.intLiteral( EpochDay.weekOfYear( dayNumber ) )));
+            observations.add(r, Terms.monthOfYear, observations.asRDFNode( Terms.intLiteral( EpochDay.month( dayNumber ) )));
 
-            hWC.add(hWC.createResource(NS_HALIAS_WEATHER + indx.replaceAll("\\-", "")), hWC.createProperty(NS_HALIAS_SCHEMA, "haliasObservationDay"), hWC.createTypedLiteral(true));
+            graphDays.set( EpochDay.toBit( dayNumber ) );
 		}
+		if (days != null)
+			days.or( graphDays );
+		addHaliasObservationDays( graphDays );
+	}
+
+	/**
+	 * Source properties of an observation, read once by {@link HaliasDataProcessor#enrichObservations(Model, BitSet)}.
+	 */
+	private static class ObservationRecord {
+		Resource resource;
+		String date;
+		int dayNumber;
+		Resource species;
+		Statement label;
+		Statement countLocal, countMigration, countAdditionalArea;
 	}
 
+
 	/**
-	 * Create wind instances and save them to file.
+	 * Add labels, bird counts and date information to observations of the given graph in a single pass.
+	 * Gives the same graph as {@link #addLabelsToObservations(Model)}, {@link #processBirdCounts(Model)} and
+	 * {@link #addDateInformation(Model, BitSet)} called in this order. The triples of each observation are changed
+	 * one by one in the order of the original separate passes, which keeps the triple order of written files.
+	 * Observation days collected to the given set are left for the caller to add to the Halias observation days,
+	 * see {@link #setObservationDays(String, BitSet)}.
+	 * 
+	 * @param	observations	graph containing qb:Observations
+	 * @param	days			set of days by EpochDay bit to add the observation days to, or null to add them
+	 * 							to the Halias observation days
+	 */
+	public void enrichObservations(Model observations, BitSet days) {
+
+		if (taxonLabels == null)
+			taxonLabels = new TaxonLabelIndex(taxonOntology);
+
+		// Read source properties of all observations
+		List<ObservationRecord> records = new ArrayList<ObservationRecord>();
+		for (ResIterator iter = observations.listResourcesWithProperty(RDF.type, Terms.Observation); iter.hasNext();) {
+			ObservationRecord record = new ObservationRecord();
+			record.resource = iter.nextResource();
+			record.date = observations.listObjectsOfProperty(record.resource, Terms.refTime).next().asLiteral().getString();
+			record.dayNumber = EpochDay.parse(record.date);
+			record.species = observations.listObjectsOfProperty(record.resource, Terms.observedSpecies).next().asResource();
+			record.label = observations.getProperty(record.resource, RDFS.label);
+			record.countLocal = observations.getProperty(record.resource, Terms.countLocal);
+			record.countMigration = observations.getProperty(record.resource, Terms.countMigration);
+			record.countAdditionalArea = observations.getProperty(record.resource, Terms.countAdditionalArea);
+			records.add(record);
+		}
+
+		// Apply changes of each observation
+		Map<String, String> validationNames = new HashMap<String, String>();
+		for (ObservationRecord record : records) {
+			Resource r = record.resource;
+
+			/* Labels */
+			TaxonLabelIndex.Label[] labels = taxonLabels.get(record.species.getURI());
+			if (labels != null && labels.length > 0) {
+				if (record.label != null)
+					observations.remove(record.label);
+				for (TaxonLabelIndex.Label label : labels)
+					observations.add(r, RDFS.label, observations.createLiteral(label.label + ", " + record.date, label.lang));
+			}
+
+			/* Bird counts */
+			String loc = countValue(record.countLocal, false);
+			String mig = countValue(record.countMigration, false);
+			String add = countValue(record.countAdditionalArea, true);
+			Integer total = 0;
+
+			if (record.countLocal != null) {
+				observations.remove(record.countLocal);
+				observations.add(r, Terms.countLocal, observations.asRDFNode(Terms.intLiteral(Integer.parseInt(loc))));
+				total += Integer.parseInt(loc);
+			} else {
+				observations.add(r, Terms.countLocal, observations.asRDFNode(Terms.intLiteral(0)));
+			}
+			if (record.countMigration != null) {
+				observations.remove(record.countMigration);
+				observations.add(r, Terms.countMigration, observations.asRDFNode(Terms.intLiteral(Integer.parseInt(mig))));
+				total += Integer.parseInt(mig);
+			} else {
+				observations.add(r, Terms.countMigration, observations.asRDFNode(Terms.intLiteral(0)));
+			}
+			if (record.countAdditionalArea != null) {
+				observations.remove(record.countAdditionalArea);
+				observations.add(r, Terms.countAdditionalArea, observations.asRDFNode(Terms.intLiteral(Integer.parseInt(add))));
+				total += Integer.parseInt(add);
+			} else {
+				observations.add(r, Terms.countAdditionalArea, observations.asRDFNode(Terms.intLiteral(0)));
+			}
+			observations.add(r, Terms.countTotal, observations.asRDFNode(Terms.intLiteral(total)));
+
+			int vakio = standardizedObservations.get(record.dayNumber, record.species.toString());
+			if (vakio != StandardizedObservationTable.NO_VALUE && vakio >= 0) {
+				String taxonString = validationNames.get(record.species.getURI());
+				if (taxonString == null) {
+					taxonString = validationName(record.species);
+					validationNames.put(record.species.getURI(), taxonString);
+				}
+				String v_error = validator.validateMigrationCounts(record.date, taxonString, mig, vakio);
+				if (v_error.length() > 0)
+					observations.add(r, Terms.nonsamplingErr, observations.createLiteral(v_error));
+				observations.add(r, Terms.countStandardizedMigration, observations.asRDFNode(Terms.intLiteral(vakio)));
+			} else {
+				observations.add(r, Terms.countStandardizedMigration, observations.asRDFNode(Terms.intLiteral(0)));
+			}
+
+			/* Date information */
+			observations.add(r, Terms.weekOfYear, observations.asRDFNode(Terms.intLiteral(EpochDay.weekOfYear(record.dayNumber))));
+			observations.add(r, Terms.monthOfYear, observations.asRDFNode(Terms.intLiteral(EpochDay.month(record.dayNumber))));
+
+			if (days != null)
+				days.set(EpochDay.toBit(record.dayNumber));
+		}
+		if (days == null) {
+			BitSet graphDays = new BitSet();
+			for (ObservationRecord record : records)
+				graphDays.set(EpochDay.toBit(record.dayNumber));
+			addHaliasObservationDays(graphDays);
+		}
+	}
+
+
+	/**
+	 * Bird count of a count statement as read by {@link #processBirdCounts(Model)}, without plus sign.
+	 * 
+	 * @param	count		count statement, or null
+	 * @param	typed		strip datatype of a typed literal
+	 * @return	count as a string, or "" if there is no count
+	 */
+	private static String countValue(Statement count, boolean typed) {
+		if (count == null)
+			return "";
+		String value = count.getObject().toString();
+		if (typed)
+			value = value.split("\\^\\^")[0];
+		if (value.charAt( 0 ) == '+')
+			value = value.substring(1);
+		return value;
+	}
+
+
+	/**
+	 * Name of a taxon for validation messages: its label without language, or else its Finnish label.
+	 */
+	private String validationName(Resource taxon) {
+		String taxonString = "";
+		for (NodeIterator i = taxonOntology.listObjectsOfProperty(taxon, RDFS.label); i.hasNext();) {
+			RDFNode item = i.next();
+			if (item.asLiteral().getLanguage().equals(""))
+				taxonString = item.asLiteral().toString();
+			else if (item.asLiteral().getLanguage().equals("fi") && taxonString.equals(""))
+				taxonString = item.asLiteral().toString();
+		}
+		return taxonString;
+	}
+
+
+	/**
+	 * Convert one observation file provided by Python conversion program and write it to file.
+	 * 
+	 * @param	i				number of the observation file
+	 * @param	observations	graph to read the observations into
+	 */
+	public void processObservationFile( Integer i, Model observations ) {
+		long count = readObservationFile( i, observations );
+		BitSet days = enrichObservationFile( i, observations, count );
+		writeObservationFile( i, observations, count, days );
+	}
+
+
+	/**
+	 * Read one observation file provided by Python conversion program.
+	 * 
+	 * @param	i				number of the observation file
+	 * @param	observations	graph to read the observations into
+	 * @return	number of observations read
+	 */
+	long readObservationFile( Integer i, Model observations ) {
+		RunReport.Stage stage = report.start( "HALIAS" + i + " read", observations );
+		observations.read("file:" + observationInputFile( i ), "RDF/XML");
+		setObservationNsPrefixes(observations);
+		long count = countObservations(observations);
+		stage.finish( count );
+		return count;
+	}
+
+
+	/**
+	 * Add labels, counts and dates to observations of one observation file.
+	 * 
+	 * @return	observation days of the file
+	 */
+	BitSet enrichObservationFile( Integer i, Model observations, long count ) {
+		System.out.println( "------ #" + i + " add labels, counts and dates" );
+		RunReport.Stage stage = report.start( "HALIAS" + i + " enrich", observations );
+		BitSet days = new BitSet();
+		enrichObservations(observations, days);
+		stage.finish( count );
+		return days;
+	}
+
+
+	/**
+	 * Write enriched observations of one observation file to file, and record its observation days.
+	 */
+	void writeObservationFile( Integer i, Model observations, long count, BitSet days ) {
+		System.out.println( "------ #" + i + " write to file" );
+		RunReport.Stage stage = report.start( "HALIAS" + i + " write" );
+		writeFile( observations, observationOutputFile( i ), "TTL" );
+		stage.addTriples( observations.size() );
+		stage.finish( count );
+
+		setObservationDays( observationInputFile( i ), days );
+	}
+
+
+	/**
+	 * Count qb:Observations of a graph.
+	 */
+	static long countObservations( Model observations ) {
+		long count = 0;
+		for (ResIterator iter = observations.listResourcesWithProperty(RDF.type, Terms.Observation); iter.hasNext(); iter.next())
+			count++;
+		return count;
+	}
+
+
+	/**
+	 * Convert observation files in parallel, each with its own observation graph.
+	 * Shared taxon, standardized observation and weather data are only read by the workers.
+	 * 
+	 * @param	files		number of observation files
+	 * @param	threads		number of worker threads
+	 * @param	stream		process files as streams, see {@link #processObservationStream(String, String, String)}
+	 */
+	public void processObservationFilesParallel( Integer files, Integer threads, final boolean stream ) {
+		List<Integer> chunks = new ArrayList<Integer>( files );
+		for ( Integer i = 0; i < files; i++ )
+			chunks.add( i );
+		processObservationFilesParallel( chunks, threads, stream );
+	}
+
+
+	/**
+	 * Convert the given observation files in parallel, each with its own observation graph.
+	 * 
+	 * @param	chunks		numbers of the observation files
+	 * @param	threads		number of worker threads
+	 * @param	stream		process files as streams, see {@link #processObservationStream(String, String, String)}
+	 */
+	public void processObservationFilesParallel( List<Integer> chunks, Integer threads, final boolean stream ) {
+		ExecutorService executor = Executors.newFixedThreadPool( threads );
+		List<Future<?>> results = new ArrayList<Future<?>>( chunks.size() );
+
+		for ( final Integer chunk : chunks ) {
+			results.add(executor.submit(new Runnable() {
+				public void run() {
+					System.out.println( "- PROCESSING #" + chunk + "... -" );
+					if (stream)
+						processObservationStream( observationInputFile( chunk ), observationOutputFile( chunk ), "TTL" );
+					else
+						processObservationFile( chunk, ModelFactory.createDefaultModel() );
+					System.out.println( "- DONE #" + chunk + " -" );
+				}
+			}));
+		}
+		executor.shutdown();
+
+		try {
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			executor.shutdownNow();
+			throw new RuntimeException("Processing observation file failed", e.getCause());
+		}
+	}
+
+
+	/**
+	 * Record observation days of a processed observation file, and add them to the Halias observation days.
+	 */
+	private void setObservationDays( String input_file_name, BitSet days ) {
+		synchronized (observationDaysByFile) {
+			observationDaysByFile.put( input_file_name, days );
+		}
+		addHaliasObservationDays( days );
+	}
+
+
+	/**
+	 * Get Halias observation days of an observation file processed by this processor.
+	 * 
+	 * @param	input_file_name		observation file provided by Python conversion program
+	 * @return	set of days by EpochDay bit, or null if the file has not been processed
+	 */
+	public BitSet getObservationDays( String input_file_name ) {
+		synchronized (observationDaysByFile) {
+			return observationDaysByFile.get( input_file_name );
+		}
+	}
+
+
+	/**
+	 * Add Halias observation days, e.g. of an observation file processed in an earlier run.
+	 * 
+	 * @param	days	set of days by EpochDay bit
+	 */
+	public void addHaliasObservationDays( BitSet days ) {
+		synchronized (haliasObservationDays) {
+			haliasObservationDays.or( days );
+		}
+	}
+
+
+	/**
+	 * Check if there are Halias observations of a day.
+	 * 
+	 * @param	dayNumber	days since 1970-01-01
+	 */
+	public boolean isHaliasObservationDay( int dayNumber ) {
+		synchronized (haliasObservationDays) {
+			return dayNumber >= EpochDay.BITSET_FIRST_DAY && haliasObservationDays.get( EpochDay.toBit( dayNumber ) );
+		}
+	}
+
+
+	/**
+	 * Create wind instances of all weather stations and save them to file.
 	 */
 	public void createWinds() {
 		
-    	for (Iterator<WindInstance> i = weatherRussaro.windInstances.iterator(); i.hasNext();) {
+		Set<WindInstance> winds = new HashSet<WindInstance>( weatherRussaro.windInstances );
+		for (WeatherStation station : weatherStations)
+			winds.addAll( station.weather.windInstances );
+
+    	for (Iterator<WindInstance> i = winds.iterator(); i.hasNext();) {
     		WindInstance wind = i.next();
-    		Resource s = windInstances.createResource(NS_WINDS + wind);
-    		Property p = RDF.type;
-    		RDFNode o = windInstances.createResource(NS_HALIAS_SCHEMA + "WindObservation");
-    		windInstances.add(s, p, o);
-
-    		p = windInstances.createProperty(NS_HALIAS_SCHEMA, "windSpeed");
-    		o = windInstances.createTypedLiteral(wind.speed);
-    		windInstances.add(s, p, o);
-
-    		p = windInstances.createProperty(NS_HALIAS_SCHEMA, "windDirection");
-    		o = windInstances.createResource(NS_HALIAS_SCHEMA + "windDirection" + wind.dir);
-    		windInstances.add(s, p, o);
+    		Resource s = windInstances.createResource(wind.uri);
+    		windInstances.add(s, RDF.type, Terms.WindObservation);
+    		windInstances.add(s, Terms.windSpeed, windInstances.asRDFNode(Terms.intLiteral(wind.speed)));
+    		windInstances.add(s, Terms.windDirection, windInstances.createResource(NS_HALIAS_SCHEMA + "windDirection" + wind.dir));
     	}
 
         // Create instance for unknown wind
-        Resource s = windInstances.createResource(NS_WINDS + "windUnknown");
-        RDFNode o = windInstances.createResource(NS_HALIAS_SCHEMA + "WindObservation");
-        windInstances.add(s, RDF.type, o);
-
-        windInstances.add(s, RDFS.label, windInstances.createLiteral("Unknown wind", "en"));
+        windInstances.add(Terms.windUnknown, RDF.type, Terms.WindObservation);
+        windInstances.add(Terms.windUnknown, RDFS.label, windInstances.createLiteral("Unknown wind", "en"));
 
         windInstances.setNsPrefix("hs", NS_HALIAS_SCHEMA);
     	windInstances.setNsPrefix("winds", NS_WINDS);
@@ -610,202 +1129,284 @@ public class HaliasDataProcessor {
 
 
     /**
-     * Get season resource from month number
+     * Create instances of daily aggregated weather observations and save them to file.
      */
-    private Resource getSeason(Integer month) {
-
-        Resource season = null;
-        if (month == 12 || month == 1 || month == 2)
-            season = observationOntology.createResource(NS_HALIAS_SCHEMA + "winter");
-        else if (month == 3 || month == 4 || month == 5)
-            season = observationOntology.createResource(NS_HALIAS_SCHEMA + "spring");
-        else if (month == 6 || month == 7 || month == 8)
-            season = observationOntology.createResource(NS_HALIAS_SCHEMA + "summer");
-        else if (month == 9 || month == 10 || month == 11)
-            season = observationOntology.createResource(NS_HALIAS_SCHEMA + "autumn");
-
-        return season;
+    public void createHaliasWeatherCube() {
+        createHaliasWeatherCube(OUTPUT_DIRECTORY + "halias_weather_cube.ttl" + dumpSink.suffix(), "TTL");
     }
 
 
     /**
-     * Create instances of daily aggregated weather observations and save them to file.
+     * Create instances of daily aggregated weather observations, writing them to file day by day in date order.
+     * 
+     * @param	file_name	file to write to
+     * @param	format		"TTL" for streaming Turtle, otherwise N-Triples
      */
-    public void createHaliasWeatherCube() {
-        Integer year, month, day;
+    public void createHaliasWeatherCube(String file_name, String format) {
+        OutputStream out = null;
+        RunReport.Stage stage = report.start( "createHaliasWeatherCube" );
+        try {
+            out = openOutput( file_name );
+            Map<String, String> prefixes = new LinkedHashMap<String, String>();
+            prefixes.put("hs", NS_HALIAS_SCHEMA);
+            prefixes.put("hw", NS_HALIAS_WEATHER);
+            prefixes.put("winds", NS_WINDS);
+            prefixes.put("qb", NS_QB);
+            prefixes.put("xsd", XSD.getURI());
+            prefixes.put("rdfs", RDFS.getURI());
+
+            HaliasWeatherDays days = new HaliasWeatherDays();
+            stage.addTriples( writeCube( out, format, prefixes, days.firstDay, days.lastDay, days ) );
+        } catch ( Exception e ) {
+            e.printStackTrace();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            stage.finish();
+        }
+    }
 
-        for (Map.Entry<String, DailyWeather> entry : weatherRussaro.getDailyWeathers().entrySet()) {
-            DailyWeather weather = entry.getValue();
-            String index = entry.getKey();
 
-            year = Integer.parseInt( index.split("-")[ 0 ] );
-            month = Integer.parseInt( index.split("-")[ 1 ] );
-            day = Integer.parseInt( index.split("-")[ 2 ] );
+    /**
+     * Write daily aggregated weather observations to a stream, one day at a time in date order.
+     * Days with Halias observations but no weather data get only the Halias observation day flag.
+     * 
+     * @param	writer	stream of triples, started and finished by the caller
+     */
+    public void writeHaliasWeatherCube(StreamRDF writer) {
+        HaliasWeatherDays days = new HaliasWeatherDays();
+        days.write(writer, days.firstDay, days.lastDay + 1);
+    }
 
-            TimeZone tz = TimeZone.getTimeZone("UTC");
-            DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-            df.setTimeZone(tz);
 
-            Calendar cal = Calendar.getInstance(tz);
-            cal.set(year, month - 1, day);
+    /**
+     * Daily aggregated weather observations of days with weather data or Halias observations.
+     * Standard observation time weather of all days and Halias observation days are taken when created.
+     */
+    private class HaliasWeatherDays implements ParallelCubeWriter.DayRange {
+
+        private final WeatherStore store;
+        private final MorningWeatherTable morningWeather;
+        private final BitSet observationDays;
+        final int firstDay, lastDay;
+
+        HaliasWeatherDays() {
+            store = weatherRussaro.getWeatherStore();
+
+            // Weather of standard observation time of all days, starting from sunrise
+            int days = Math.max(store.lastDay() - store.firstDay() + 1, 0);
+            int[] sunriseH = new int[ days ], sunriseMin = new int[ days ], months = new int[ days ];
+            for (int i = 0; i < days; i++) {
+                int dayNumber = store.firstDay() + i;
+                if (!store.hasDay(dayNumber))
+                    continue;
+                DayLength dayLen = weatherRussaro.getDayLength(EpochDay.year(dayNumber), EpochDay.month(dayNumber), EpochDay.dayOfMonth(dayNumber));
+                sunriseH[ i ] = dayLen.sunriseH;
+                sunriseMin[ i ] = dayLen.sunriseMin;
+                months[ i ] = EpochDay.month(dayNumber);
+            }
+            morningWeather = store.calculateMorningWeather(store.firstDay(), sunriseH, sunriseMin, months);
 
-            String dateISO = df.format(cal.getTime());
+            synchronized (haliasObservationDays) {
+                observationDays = (BitSet) haliasObservationDays.clone();
+            }
 
-            DayLength dayLen = weatherRussaro.getDayLength(cal);
+            // Days of weather data and Halias observation days
+            int first = Integer.MAX_VALUE, last = Integer.MIN_VALUE;
+            if (store.lastDay() >= store.firstDay()) {
+                first = store.firstDay();
+                last = store.lastDay();
+            }
+            if (!observationDays.isEmpty()) {
+                first = Math.min(first, EpochDay.fromBit(observationDays.nextSetBit(0)));
+                last = Math.max(last, EpochDay.fromBit(observationDays.length() - 1));
+            }
+            firstDay = first <= last ? first : 0;
+            lastDay = first <= last ? last : -1;
+        }
 
-            // Pad with leading zeros
-            String riseH = dayLen.sunriseH.toString();
-            riseH = ("00" + riseH).substring(riseH.length());
-            String riseM = dayLen.sunriseMin.toString();
-            riseM = ("00" + riseM).substring(riseM.length());
+        /**
+         * Mark a wind as written, with null for winds/null.
+         *
+         * @return  true if the wind was already written
+         */
+        private boolean isWritten(BitSet written, WindInstance wind) {
+            int index = wind == null ? WindInstance.CODES : wind.code;
+            if (written.get(index))
+                return true;
+            written.set(index);
+            return false;
+        }
 
-            String setH = dayLen.sunsetH.toString();
-            setH = ("00" + setH).substring(setH.length());
-            String setM = dayLen.sunsetMin.toString();
-            setM = ("00" + setM).substring(setM.length());
+        private boolean hasHaliasObservations(int dayNumber) {
+            return dayNumber >= EpochDay.BITSET_FIRST_DAY && observationDays.get(EpochDay.toBit(dayNumber));
+        }
 
-            String sunriseString = riseH + ":" + riseM + ":00";
-            String sunsetString = setH + ":" + setM + ":00";
+        public void write(StreamRDF writer, int fromDay, int toDay) {
+            Integer year, month, day;
+
+            // Winds already written of the day, by property, so that a wind of several observations is written once
+            BitSet standardWinds = new BitSet(WindInstance.CODES + 1);
+            BitSet windsPreSunrise = new BitSet(WindInstance.CODES + 1);
+            BitSet windsPostSunset = new BitSet(WindInstance.CODES + 1);
+            BitSet windsDay = new BitSet(WindInstance.CODES + 1);
+
+            for (int dayNumber = fromDay; dayNumber < toDay; dayNumber++) {
+                if (!store.hasDay(dayNumber)) {
+                    // Halias observation day without weather data
+                    if (hasHaliasObservations(dayNumber)) {
+                        Node dayResource = NodeFactory.createURI(NS_HALIAS_WEATHER + EpochDay.toCompactString(dayNumber));
+                        writer.triple(Triple.create(dayResource, Terms.Nodes.haliasObservationDay, Terms.Nodes.TRUE));
+                    }
+                    continue;
+                }
 
-            Resource dayResource = hWC.createResource(NS_HALIAS_WEATHER + index.replaceAll("\\-", ""));
+                String index = EpochDay.toIsoString(dayNumber);
+                int d = store.dayIndex(dayNumber);
+                int base = store.slotIndex(dayNumber);
 
-            hWC.add(dayResource, RDF.type, hWC.createResource(NS_QB + "Observation"));
-            hWC.add(dayResource, hWC.createProperty(NS_QB, "dataSet"), hWC.createResource(NS_HALIAS_SCHEMA + "weatherDataset"));
+                year = EpochDay.year(dayNumber);
+                month = EpochDay.month(dayNumber);
+                day = EpochDay.dayOfMonth(dayNumber);
 
-            // ADD DATE AND CALENDAR INFORMATION
+                DayLength dayLen = weatherRussaro.getDayLength(year, month, day);
 
-            hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "weekOfYear"), hWC.createTypedLiteral( (byte) cal.get(java.util.Calendar.WEEK_OF_YEAR )));
-            hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "monthOfYear"), hWC.createTypedLiteral( month.byteValue() ));
+                // Pad with leading zeros
+                String riseH = dayLen.sunriseH.toString();
+                riseH = ("00" + riseH).substring(riseH.length());
+                String riseM = dayLen.sunriseMin.toString();
+                riseM = ("00" + riseM).substring(riseM.length());
 
-            hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "refTime"), hWC.createTypedLiteral(dateISO, XSD.date.getURI()));
+                String setH = dayLen.sunsetH.toString();
+                setH = ("00" + setH).substring(setH.length());
+                String setM = dayLen.sunsetMin.toString();
+                setM = ("00" + setM).substring(setM.length());
 
-            hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "sunriseTime"), hWC.createTypedLiteral(sunriseString, XSD.time.getURI()));
-            hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "sunsetTime"), hWC.createTypedLiteral(sunsetString, XSD.time.getURI()));
+                String sunriseString = riseH + ":" + riseM + ":00";
+                String sunsetString = setH + ":" + setM + ":00";
 
-            hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "season"), getSeason(month));
+                Node dayResource = NodeFactory.createURI(NS_HALIAS_WEATHER + EpochDay.toCompactString(dayNumber));
 
-            // ADD WEATHER DATA FOR STANDARD OBSERVATION TIME
+                writer.triple(Triple.create(dayResource, RDF.Nodes.type, Terms.Nodes.Observation));
+                writer.triple(Triple.create(dayResource, Terms.Nodes.dataSet, Terms.Nodes.weatherDataset));
 
-            MorningWeather morningAverages = weather.calculateMorningWeather(dayLen.sunriseH, dayLen.sunriseMin, month);
+                // ADD DATE AND CALENDAR INFORMATION
 
-            Property p;
-            RDFNode o;
+                writer.triple(Triple.create(dayResource, Terms.Nodes.weekOfYear, Terms.intLiteral(EpochDay.weekOfYear(dayNumber))));
+                writer.triple(Triple.create(dayResource, Terms.Nodes.monthOfYear, Terms.intLiteral(month)));
 
-            if (morningAverages != null) {
+                writer.triple(Triple.create(dayResource, Terms.Nodes.refTime, NodeFactory.createLiteral(index, null, XSDDatatype.XSDdate)));
 
-                p = hWC.createProperty(NS_HALIAS_SCHEMA, "standardTemperature");
-                if (morningAverages.temperature != null) {
-                    Double standardTemperature = (double) Math.round( morningAverages.temperature );
-                    o = hWC.createTypedLiteral( standardTemperature );
-                } else {
-                    o = hWC.createTypedLiteral( Double.NaN );
-                }
-                hWC.add(dayResource, p, o);
+                writer.triple(Triple.create(dayResource, Terms.Nodes.sunriseTime, NodeFactory.createLiteral(sunriseString, null, XSDDatatype.XSDtime)));
+                writer.triple(Triple.create(dayResource, Terms.Nodes.sunsetTime, NodeFactory.createLiteral(sunsetString, null, XSDDatatype.XSDtime)));
 
-                if (morningAverages.winds != null) {
-                    for (Iterator<WindInstance> i = morningAverages.winds.iterator(); i.hasNext(); ) {
-                        WindInstance wind = i.next();
-                        hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "standardWind"), hWC.createProperty(NS_WINDS + wind));
-                    }
-                } else {
-                    hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "standardWind"), hWC.createProperty(NS_WINDS + "windUnknown"));
-                }
+                writer.triple(Triple.create(dayResource, Terms.Nodes.season, Terms.seasonNode(EpochDay.season(dayNumber))));
 
-                p = hWC.createProperty(NS_HALIAS_SCHEMA, "standardCloudCover");
-                if (morningAverages.cloudCover != null) {
-                    Double standardCloudCover = (double) Math.round( morningAverages.cloudCover );
-                    o = hWC.createTypedLiteral( standardCloudCover );
-                } else {
-                    o = hWC.createTypedLiteral(Double.NaN);
-                }
-                hWC.add(dayResource, p, o);
-            }
+                // ADD WEATHER DATA FOR STANDARD OBSERVATION TIME
 
-            // ADD DAY'S WEATHER DATA
+                MorningWeather morningAverages = morningWeather.get(dayNumber);
 
-            p = hWC.createProperty(NS_HALIAS_SCHEMA, "temperatureDay");
-            if ( weather.tempDayN > 0 ) {
-                Double tempDay = (double) Math.round(((double) weather.tempDaySum ) / weather.tempDayN );
-                o = hWC.createTypedLiteral( tempDay );
-            } else {
-                o = hWC.createTypedLiteral(Double.NaN);
-            }
-            hWC.add(dayResource, p, o);
+                if (morningAverages != null) {
 
-            if ( weather.humidityN > 0 ) {
-                Double humidity = (double) Math.round(((double) weather.humiditySum ) / weather.humidityN );
-                hWC.addLiteral(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "humidity"), hWC.createTypedLiteral( humidity ));
-            } else {
-                hWC.addLiteral(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "humidity"), hWC.createTypedLiteral(Double.NaN));
-            }
+                    if (morningAverages.temperature != null) {
+                        writer.triple(Triple.create(dayResource, Terms.Nodes.standardTemperature, Terms.doubleLiteral(Math.round( morningAverages.temperature ))));
+                    } else {
+                        writer.triple(Triple.create(dayResource, Terms.Nodes.standardTemperature, Terms.doubleLiteral(Double.NaN)));
+                    }
 
-            if ( weather.pressureN > 0 ) {
-                Double pressure = (double) Math.round(((double) weather.pressureSum ) / weather.pressureN );
-                hWC.addLiteral(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "airPressure"), hWC.createTypedLiteral( pressure ));
-            } else {
-                hWC.addLiteral(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "airPressure"), hWC.createTypedLiteral(Double.NaN));
-            }
+                    if (morningAverages.winds != null) {
+                        standardWinds.clear();
+                        for (Iterator<WindInstance> i = morningAverages.winds.iterator(); i.hasNext(); ) {
+                            WindInstance wind = i.next();
+                            if (isWritten(standardWinds, wind))
+                                continue;
+                            writer.triple(Triple.create(dayResource, Terms.Nodes.standardWind, Terms.windNode(wind)));
+                        }
+                    } else {
+                        writer.triple(Triple.create(dayResource, Terms.Nodes.standardWind, Terms.Nodes.windUnknown));
+                    }
 
-            if ( weather.cloudCoverDayN > 0 ) {
-                Double clouds = (double) Math.round(((double) weather.cloudCoverDaySum ) / weather.cloudCoverDayN );
-                hWC.addLiteral(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "cloudCover"), hWC.createTypedLiteral( clouds ));
-            } else {
-                hWC.addLiteral(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "cloudCover"), hWC.createTypedLiteral( Double.NaN ));
-            }
+                    if (morningAverages.cloudCover != null) {
+                        writer.triple(Triple.create(dayResource, Terms.Nodes.standardCloudCover, Terms.doubleLiteral(Math.round( morningAverages.cloudCover ))));
+                    } else {
+                        writer.triple(Triple.create(dayResource, Terms.Nodes.standardCloudCover, Terms.doubleLiteral(Double.NaN)));
+                    }
+                }
 
-            // WINDS
+                // ADD DAY'S WEATHER DATA
 
-            if ( weather.windsPreSunrise.size() > 0 ) {
-                for (Iterator<WindInstance> i = weather.windsPreSunrise.iterator(); i.hasNext(); ) {
-                    WindInstance item = i.next();
-                    hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "windPreSunrise"), hWC.createResource(NS_WINDS + item));
+                if ( store.tempDayN.get(d) > 0 ) {
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.temperatureDay, Terms.doubleLiteral(Math.round( store.tempDaySum.get(d) / store.tempDayN.get(d) ))));
+                } else {
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.temperatureDay, Terms.doubleLiteral(Double.NaN)));
                 }
-            } else {
-                hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "windPreSunrise"), hWC.createProperty(NS_WINDS + "windUnknown"));
-            }
-            if ( weather.windsPostSunset.size() > 0 ) {
-                for (Iterator<WindInstance> i = weather.windsPostSunset.iterator(); i.hasNext(); ) {
-                    WindInstance item = i.next();
-                    hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "windPostSunset"), hWC.createResource(NS_WINDS + item));
+
+                if ( store.humidityN.get(d) > 0 ) {
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.humidity, Terms.doubleLiteral(Math.round(((double) store.humiditySum.get(d) ) / store.humidityN.get(d) ))));
+                } else {
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.humidity, Terms.doubleLiteral(Double.NaN)));
                 }
-            } else {
-                hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "windPostSunset"), hWC.createProperty(NS_WINDS + "windUnknown"));
-            }
 
-            if ( weather.windsDay.size() > 0 ) {
-                for (Iterator<WindInstance> i = weather.windsDay.listIterator(); i.hasNext(); ) {
-                    WindInstance item = i.next();
-                    if (item != null) {
-                        String item_str = item.toString();
-                        hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "windDay"), hWC.createResource(NS_WINDS + item_str));
-                    }
+                if ( store.pressureN.get(d) > 0 ) {
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.airPressure, Terms.doubleLiteral(Math.round( store.pressureSum.get(d) / store.pressureN.get(d) ))));
+                } else {
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.airPressure, Terms.doubleLiteral(Double.NaN)));
                 }
-            } else {
-                hWC.add(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "windDay"), hWC.createProperty(NS_WINDS + "windUnknown"));
-            }
 
-            // RAIN
-            if ( weather.rainfall != null ) {
-                hWC.addLiteral(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "rainfall"), hWC.createTypedLiteral((double) Math.round(weather.rainfall)));
-            } else {
-                hWC.addLiteral(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "rainfall"), hWC.createTypedLiteral(Double.NaN));
-            }
+                if ( store.cloudCoverDayN.get(d) > 0 ) {
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.cloudCover, Terms.doubleLiteral(Math.round(((double) store.cloudCoverDaySum.get(d) ) / store.cloudCoverDayN.get(d) ))));
+                } else {
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.cloudCover, Terms.doubleLiteral(Double.NaN)));
+                }
+
+                // WINDS
+
+                // Missing winds of observations before sunrise and after sunset are written as winds/null, as before
+                boolean hasWindsDay = false;
+                windsPreSunrise.clear();
+                windsPostSunset.clear();
+                windsDay.clear();
+                for (int slot = 0; slot < WeatherStore.SLOTS; slot++) {
+                    byte timeOfDay = store.timeOfDay.get(base + slot);
+                    WindInstance item = store.windInstance(store.wind.get(base + slot));
+                    Node windNode = item == null ? Terms.Nodes.windNull : Terms.windNode(item);
+
+                    if (timeOfDay == WeatherStore.PRESUNRISE) {
+                        if (!isWritten(windsPreSunrise, item))
+                            writer.triple(Triple.create(dayResource, Terms.Nodes.windPreSunrise, windNode));
+                    } else if (timeOfDay == WeatherStore.POSTSUNSET) {
+                        if (!isWritten(windsPostSunset, item))
+                            writer.triple(Triple.create(dayResource, Terms.Nodes.windPostSunset, windNode));
+                    } else if (timeOfDay == WeatherStore.DAY) {
+                        if (item != null && !isWritten(windsDay, item))
+                            writer.triple(Triple.create(dayResource, Terms.Nodes.windDay, windNode));
+                        hasWindsDay = true;
+                    }
+                }
+                if (windsPreSunrise.isEmpty())
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.windPreSunrise, Terms.Nodes.windUnknown));
+                if (windsPostSunset.isEmpty())
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.windPostSunset, Terms.Nodes.windUnknown));
+                if (!hasWindsDay)
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.windDay, Terms.Nodes.windUnknown));
+
+                // RAIN
+                if ( !Double.isNaN(store.rainfall.get(d)) ) {
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.rainfall, Terms.doubleLiteral(Math.round(store.rainfall.get(d)))));
+                } else {
+                    writer.triple(Triple.create(dayResource, Terms.Nodes.rainfall, Terms.doubleLiteral(Double.NaN)));
+                }
 
-            // HALIAS OBSERVATION DAY
+                // HALIAS OBSERVATION DAY
 
-            if (!hWC.listObjectsOfProperty(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "haliasObservationDay")).hasNext()) {
-                hWC.addLiteral(dayResource, hWC.createProperty(NS_HALIAS_SCHEMA, "haliasObservationDay"), hWC.createTypedLiteral(false));
+                writer.triple(Triple.create(dayResource, Terms.Nodes.haliasObservationDay, Terms.booleanLiteral(hasHaliasObservations(dayNumber))));
             }
-
         }
-
-        hWC.setNsPrefix("hs", NS_HALIAS_SCHEMA);
-        hWC.setNsPrefix("hw", NS_HALIAS_WEATHER);
-        hWC.setNsPrefix("winds", NS_WINDS);
-        hWC.setNsPrefix("qb", NS_QB);
-        hWC.setNsPrefix("xsd", XSD.getURI());
-        hWC.setNsPrefix("rdfs", RDFS.getURI());
-        writeFile(hWC, OUTPUT_DIRECTORY + "halias_weather_cube.ttl", "TTL" );
     }
 
 
@@ -813,143 +1414,406 @@ public class HaliasDataProcessor {
      * Create instances of Russarö weather observations and save them to file.
      */
     public void createRussaroCube() {
+        createRussaroCube(OUTPUT_DIRECTORY + "russaro_weather_cube.ttl" + dumpSink.suffix(), "TTL");
+    }
 
-        for (Map.Entry<String, DailyWeather> entry : weatherRussaro.getDailyWeathers().entrySet()) {
-            DailyWeather weather = entry.getValue();
-            String index = entry.getKey();
 
-            // ADD ALL WEATHER OBSERVATIONS FOR THIS DAY
+    /**
+     * Create instances of Russarö weather observations, writing them to file day by day in date order.
+     * 
+     * @param	file_name	file to write to
+     * @param	format		"TTL" for streaming Turtle, otherwise N-Triples
+     */
+    public void createRussaroCube(String file_name, String format) {
+        createWeatherCube(new WeatherStation(RUSSARO, NS_RUSSAROCUBE, null, null, weatherRussaro), file_name, format);
+    }
 
-            for (Integer i=0; i < weather.weatherObservation.length; i++) {
-                DailyWeather.ConcurrentObservations observations = weather.weatherObservation[i];
 
-                String hour = Integer.toString(i * 3);
-                if (hour.length() == 1)
-                    hour = '0' + hour;
-                Resource s = rWC.createResource(NS_RUSSAROCUBE + index.replaceAll("\\-", "") + "_" + hour);
-                RDFNode o = rWC.createResource(NS_QB + "Observation");
-                rWC.add(s, RDF.type, o);
+    /**
+     * Create instances of weather observations of a weather station, writing them to file day by day in date order.
+     * 
+     * @param	station		weather station, with its weather data read
+     * @param	file_name	file to write to
+     * @param	format		"TTL" for streaming Turtle, otherwise N-Triples
+     */
+    public void createWeatherCube(WeatherStation station, String file_name, String format) {
+        OutputStream out = null;
+        RunReport.Stage stage = report.start( station.name.equals(RUSSARO) ? "createRussaroCube" : "createWeatherCube " + station.name );
+        try {
+            out = openOutput( file_name );
+            Map<String, String> prefixes = new LinkedHashMap<String, String>();
+            prefixes.put("hs", NS_HALIAS_SCHEMA);
+            prefixes.put(station.name.equals(RUSSARO) ? "r" : station.name, station.namespace);
+            prefixes.put("winds", NS_WINDS);
+            prefixes.put("qb", NS_QB);
+            prefixes.put("xsd", XSD.getURI());
+
+            WeatherStore store = station.weather.getWeatherStore();
+            stage.addTriples( writeCube( out, format, prefixes, store.firstDay(), store.lastDay(), new StationDays(station) ) );
+        } catch ( Exception e ) {
+            e.printStackTrace();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            stage.finish();
+        }
+    }
 
-                Property p = rWC.createProperty(NS_HALIAS_SCHEMA, "observationTime");
-                o = rWC.createTypedLiteral(index + "T" + hour + ":00:00" + "Z", XSD.dateTime.getURI());
-                rWC.add(s, p, o);
 
-                rWC.add(s, rWC.createProperty(NS_QB, "dataSet"), rWC.createResource(NS_HALIAS_SCHEMA + "russaroDataset"));
+    /**
+     * Write triples of a range of days to output, in blocks of days in parallel if {@link #cubeWriter} is set.
+     * 
+     * @param	out			output stream, closed by the caller
+     * @param	format		"TTL" for streaming Turtle, otherwise N-Triples
+     * @param	prefixes	namespace prefixes of output
+     * @return	number of triples written
+     */
+    long writeCube(OutputStream out, String format, Map<String, String> prefixes, int firstDay, int lastDay,
+            ParallelCubeWriter.DayRange days) throws IOException {
+        if (cubeWriter != null)
+            return cubeWriter.write(out, format, prefixes, firstDay, lastDay, days);
+
+        StreamRDFCounting writer = StreamRDFLib.count( createStreamWriter( out, format ) );
+        writer.start();
+        for (Map.Entry<String, String> prefix : prefixes.entrySet())
+            writer.prefix(prefix.getKey(), prefix.getValue());
+        days.write(writer, firstDay, lastDay + 1);
+        writer.finish();
+        return writer.countTriples();
+    }
 
-                p = rWC.createProperty(NS_HALIAS_SCHEMA, "temperature");
-                o = rWC.createTypedLiteral(observations.temperature == null ? Double.NaN : observations.temperature);
-                rWC.add(s, p, o);
 
-                p = rWC.createProperty(NS_HALIAS_SCHEMA, "airPressure");
-                o = rWC.createTypedLiteral(observations.pressure == null ? Double.NaN : observations.pressure);
-                rWC.add(s, p, o);
+    /**
+     * Weather observations of the days of a weather station.
+     */
+    private static class StationDays implements ParallelCubeWriter.DayRange {
 
-                p = rWC.createProperty(NS_HALIAS_SCHEMA, "cloudCover");
-                o = rWC.createTypedLiteral(observations.cloudCover == null ? Double.NaN : observations.cloudCover);
-                rWC.add(s, p, o);
+        private final WeatherStation station;
+        private final WeatherStore store;
+        private final Node stationDataset;
 
-                p = rWC.createProperty(NS_HALIAS_SCHEMA, "humidity");
-                o = rWC.createTypedLiteral(observations.humidity == null ? Double.NaN : observations.humidity);
-                rWC.add(s, p, o);
+        StationDays(WeatherStation station) {
+            this.station = station;
+            store = station.weather.getWeatherStore();
+            stationDataset = NodeFactory.createURI(NS_HALIAS_SCHEMA + station.name + "Dataset");
+        }
 
-                p = rWC.createProperty(NS_HALIAS_SCHEMA, "wind");
-                o = rWC.createProperty(observations.wind == null ? NS_WINDS + "windUnknown" : NS_WINDS + observations.wind);
-                rWC.add(s, p, o);
+        public void write(StreamRDF writer, int fromDay, int toDay) {
+            for (int dayNumber = fromDay; dayNumber < toDay; dayNumber++) {
+                if (!store.hasDay(dayNumber))
+                    continue;
+
+                String index = EpochDay.toIsoString(dayNumber);
+                String compactIndex = EpochDay.toCompactString(dayNumber);
+                int base = store.slotIndex(dayNumber);
+
+                // WRITE ALL WEATHER OBSERVATIONS FOR THIS DAY
+
+                for (int i = 0; i < WeatherStore.SLOTS; i++) {
+                    WindInstance wind = store.windInstance(store.wind.get(base + i));
+
+                    String hour = Integer.toString(i * 3);
+                    if (hour.length() == 1)
+                        hour = '0' + hour;
+                    Node s = NodeFactory.createURI(station.namespace + compactIndex + "_" + hour);
+
+                    writer.triple(Triple.create(s, RDF.Nodes.type, Terms.Nodes.Observation));
+                    writer.triple(Triple.create(s, Terms.Nodes.observationTime,
+                            NodeFactory.createLiteral(index + "T" + hour + ":00:00" + "Z", null, XSDDatatype.XSDdateTime)));
+                    writer.triple(Triple.create(s, Terms.Nodes.dataSet, stationDataset));
+                    writer.triple(Triple.create(s, Terms.Nodes.temperature, Terms.doubleLiteral(store.temperature.get(base + i))));
+                    writer.triple(Triple.create(s, Terms.Nodes.airPressure, Terms.doubleLiteral(store.pressure.get(base + i))));
+                    writer.triple(Triple.create(s, Terms.Nodes.cloudCover, Terms.doubleLiteral(store.cloudCover.get(base + i))));
+                    writer.triple(Triple.create(s, Terms.Nodes.humidity, Terms.doubleLiteral(store.humidity.get(base + i))));
+                    writer.triple(Triple.create(s, Terms.Nodes.wind, wind == null ? Terms.Nodes.windUnknown : Terms.windNode(wind)));
+                }
             }
         }
-
-        rWC.setNsPrefix("hs", NS_HALIAS_SCHEMA);
-        rWC.setNsPrefix("r", NS_RUSSAROCUBE);
-        rWC.setNsPrefix("winds", NS_WINDS);
-        rWC.setNsPrefix("qb", NS_QB);
-        rWC.setNsPrefix("xsd", XSD.getURI());
-        writeFile(rWC, OUTPUT_DIRECTORY + "russaro_weather_cube.ttl", "TTL" );
     }
 
+
     /**
 	 * Do all necessary processing.
 	 * 
+	 * Options: -skip to skip converting observation files, -stream to convert them as streams, -parallel to convert them
+	 * and to write weather cubes in parallel, and -incremental to regenerate only outputs whose inputs or code have
+	 * changed since the run recorded in the build manifest of the output directory. With -gzip observation files and
+	 * weather cubes are written gzip compressed, and with -pgzip compressed in parallel. With -pipeline observation files are read, enriched and
+	 * written in a pipeline of threads, with at most 3 files in memory, or the number given as -inflight=N. Weather
+	 * cubes of more weather stations than Russarö are written with -stations=FILE, see
+	 * {@link WeatherStation#readStations(String)}, reading the weather files of all stations in parallel.
+	 * 
 	 * @param args
 	 */
 	public static void main(String[] args) {
 		System.out.println( "- STARTING HALIAS PROCESSING -" );
 		HaliasDataProcessor hc = new HaliasDataProcessor();
+		RunReport.Stage stage;
+
+		boolean incremental = Arrays.asList(args).contains("-incremental");
+		boolean skip = Arrays.asList(args).contains("-skip");
+		if (Arrays.asList(args).contains("-pgzip"))
+			hc.dumpSink = OutputSink.PARALLEL_GZIP;
+		else if (Arrays.asList(args).contains("-gzip"))
+			hc.dumpSink = OutputSink.GZIP;
+		if (Arrays.asList(args).contains("-parallel"))
+			hc.cubeWriter = new ParallelCubeWriter();
+		BuildManifest manifest = new BuildManifest( OUTPUT_DIRECTORY + "build_manifest.properties" );
+
+		String taxa = PYTHON_OUPUT_DIRECTORY + "halias_taxa_v2.ttl";
+		String threatened = DEFAULT_INPUT_DIRECTORY + "suomen_uhanalaiset_HALIAS.csv";
+		String directive = DEFAULT_INPUT_DIRECTORY + "lintudirektiivin_KAIKKI_lajit.csv";
+		String vakiot = DEFAULT_INPUT_DIRECTORY + "HALIAS_Kokodata_VAKIOT_2008asti.csv";
+		String weather = WEATHER_DATA_DIRECTORY + "Russaro.csv";
+		String rain = WEATHER_DATA_DIRECTORY + "RussaroSademaara.csv";
+
+		hc.weatherStations.add( new WeatherStation( RUSSARO, NS_RUSSAROCUBE, weather, rain, hc.weatherRussaro ) );
+		for (String arg : args) {
+			if (arg.startsWith("-stations=")) {
+				try {
+					List<WeatherStation> stations = WeatherStation.readStations( arg.substring( "-stations=".length() ) );
+					List<WeatherStation> all = new ArrayList<WeatherStation>( hc.weatherStations );
+					all.addAll( stations );
+					WeatherStation.checkNames( all );
+					hc.weatherStations.addAll( stations );
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		// Fingerprint inputs of each output
+		String[] chunkInputs = new String[ 5 ];
+		String[] chunkFingerprints = new String[ 5 ];
+		List<Integer> chunks = new ArrayList<Integer>();
+		for ( Integer i = 0; i < 5; i++ ) {
+			chunkInputs[ i ] = hc.observationInputFile( i );
+			chunkFingerprints[ i ] = manifest.fingerprint( chunkInputs[ i ], taxa, threatened, directive, vakiot );
+			boolean upToDate = manifest.isUpToDate( hc.observationOutputFile( i ), chunkFingerprints[ i ] )
+					&& manifest.getObservationDays( chunkInputs[ i ] ) != null;
+			if (!skip && !(incremental && upToDate))
+				chunks.add( i );
+		}
 
-		hc.readTaxonOntologies();
-		hc.readCoreOntologies();
-		hc.readConservationStatuses();
-		hc.weatherRussaro.readWeatherCSV(WEATHER_DATA_DIRECTORY + "Russaro.csv", WEATHER_DATA_DIRECTORY + "RussaroSademaara.csv");
+		String windFile = OUTPUT_DIRECTORY + "halias_wind_ontology.ttl";
+		List<String> weatherFiles = new ArrayList<String>();
+		for (WeatherStation station : hc.weatherStations)
+			weatherFiles.add( station.weatherFile );
+		String windFingerprint = manifest.fingerprint( weatherFiles.toArray( new String[ weatherFiles.size() ] ) );
+		int stationCount = hc.weatherStations.size();
+		String[] stationFiles = new String[ stationCount ];
+		String[] stationFingerprints = new String[ stationCount ];
+		for (int i = 0; i < stationCount; i++) {
+			WeatherStation station = hc.weatherStations.get( i );
+			stationFiles[ i ] = OUTPUT_DIRECTORY + station.name + "_weather_cube.ttl" + hc.dumpSink.suffix();
+			stationFingerprints[ i ] = manifest.settingsFingerprint( station.definition(), station.weatherFile, station.rainFile );
+		}
+		String cubeFile = OUTPUT_DIRECTORY + "halias_weather_cube.ttl" + hc.dumpSink.suffix();
+		String[] cubeInputs = Arrays.copyOf( chunkInputs, chunkInputs.length + 2 );
+		cubeInputs[ chunkInputs.length ] = weather;
+		cubeInputs[ chunkInputs.length + 1 ] = rain;
+		String cubeFingerprint = manifest.fingerprint( cubeInputs );
+		String taxonFile = OUTPUT_DIRECTORY + "halias_taxon_ontology.ttl";
+		String taxonFingerprint = manifest.fingerprint( taxa, threatened, directive, DEFAULT_INPUT_DIRECTORY + "tuntomerkit.ttl" );
+		String characteristicsFile = OUTPUT_DIRECTORY + "halias_characteristics_ontology.ttl";
+		String characteristicsFingerprint = manifest.fingerprint( DEFAULT_INPUT_DIRECTORY + "tuntomerkki_facet_halias.ttl" );
+		String schemaFile = OUTPUT_DIRECTORY + "halias_schema.ttl";
+		String schemaFingerprint = manifest.fingerprint( DEFAULT_INPUT_DIRECTORY + "skeema_saa.ttl", DATACUBE_ONTOLOGY_FILE );
+
+		boolean windStale = !(incremental && manifest.isUpToDate( windFile, windFingerprint ));
+		boolean[] stationStale = new boolean[ stationCount ];
+		boolean anyStationStale = false;
+		for (int i = 0; i < stationCount; i++) {
+			stationStale[ i ] = !(incremental && manifest.isUpToDate( stationFiles[ i ], stationFingerprints[ i ] ));
+			anyStationStale |= stationStale[ i ];
+		}
+		boolean cubeStale = !(incremental && manifest.isUpToDate( cubeFile, cubeFingerprint ));
+		boolean taxonStale = !(incremental && manifest.isUpToDate( taxonFile, taxonFingerprint ));
+		boolean characteristicsStale = !(incremental && manifest.isUpToDate( characteristicsFile, characteristicsFingerprint ));
+		boolean schemaStale = !(incremental && manifest.isUpToDate( schemaFile, schemaFingerprint ));
+
+		// Read only the inputs needed by outputs to regenerate
+		if (!chunks.isEmpty() || taxonStale) {
+			stage = hc.report.start( "readTaxonOntologies", hc.taxonOntology );
+			hc.readTaxonOntologies();
+			stage.finish();
+		}
+		if (taxonStale || characteristicsStale || schemaStale) {
+			stage = hc.report.start( "readCoreOntologies" );
+			hc.readCoreOntologies();
+			stage.addTriples( hc.speciesCharacteristicsOntology.size() + hc.characteristicsOntology.size() + hc.haliasSchema.size() );
+			stage.finish();
+		}
+		if (!chunks.isEmpty() || taxonStale) {
+			stage = hc.report.start( "readConservationStatuses", hc.taxonOntology );
+			hc.readConservationStatuses();
+			stage.finish();
+		}
+		if (windStale || anyStationStale || cubeStale) {
+			stage = hc.report.start( "readWeatherCSV" );
+			hc.weatherRussaro.readDayLengthCache(WEATHER_DATA_DIRECTORY + "day_lengths.ser");
+			ForkJoinPool pool = new ForkJoinPool();
+			WeatherStation.readWeather( hc.weatherStations, WEATHER_DATA_DIRECTORY, manifest, pool );
+			pool.shutdown();
+			int days = 0;
+			for (WeatherStation station : hc.weatherStations)
+				days += station.weather.getWeatherStore().size();
+			stage.finish( days );
+		}
 		
-		hc.readStandardizedObservations();		
-		hc.labelTaxons();
+		if (!chunks.isEmpty()) {
+			stage = hc.report.start( "readStandardizedObservations" );
+			hc.readStandardizedObservations();		
+			stage.finish( hc.standardizedObservations.size() );
+		}
+		if (!chunks.isEmpty() || taxonStale) {
+			stage = hc.report.start( "labelTaxons", hc.taxonOntology );
+			hc.labelTaxons();
+			stage.finish();
+		}
 		
-		if (!Arrays.asList(args).contains("-skip"))
+		if (!skip)
 		{
+			boolean stream = Arrays.asList(args).contains("-stream");
+
 			// Convert observation files
-			for ( Integer i = 0; i < 5; i++ ) {
-				System.out.println( "- PROCESSING #" + i + "... -" );
-				hc.observationOntology.read("file:" + PYTHON_OUPUT_DIRECTORY + "HALIAS" + i + ".rdf", "RDF/XML");
-
-				hc.observationOntology.setNsPrefix("xsd", XSD.getURI());
-				hc.observationOntology.setNsPrefix("dgui", NS_DGU_INTERVALS);
-				hc.observationOntology.setNsPrefix("halias", NS_HALIAS_OBSERVATIONS);
-				hc.observationOntology.removeNsPrefix( "halias-schema" );
-				hc.observationOntology.setNsPrefix("hs", NS_HALIAS_SCHEMA);
-				hc.observationOntology.setNsPrefix("winds", NS_WINDS);
-                hc.observationOntology.setNsPrefix("bio", NS_BIO);
-                hc.observationOntology.setNsPrefix("rdfs", RDFS.getURI());
-                hc.observationOntology.setNsPrefix("sdmx-a", NS_SDMX_A);
-
-				System.out.println( "------ add labels" );
-				hc.addLabelsToObservations();
-				System.out.println( "------ process counts" );
-				hc.processBirdCounts();
-				System.out.println( "------ add weather data" );
-				hc.addDateInformation();
-
-				System.out.println( "------ write to file" );
-				hc.writeFile( hc.observationOntology, OUTPUT_DIRECTORY + "HALIAS" + i + "_full.ttl", "TTL" );
-				hc.observationOntology = ModelFactory.createDefaultModel();
-				System.out.println();
+			if (chunks.isEmpty()) {
+				System.out.println( "--- OBSERVATION FILES UP TO DATE ---" );
+			} else if (Arrays.asList(args).contains("-pipeline") && !stream) {
+				int maxInFlight = 3;
+				for (String arg : args) {
+					if (arg.startsWith("-inflight="))
+						maxInFlight = Integer.parseInt( arg.substring( "-inflight=".length() ) );
+				}
+				System.out.println( "- PROCESSING IN PIPELINE, " + maxInFlight + " FILES IN FLIGHT -" );
+				new ObservationPipeline( hc, maxInFlight ).run( chunks );
+			} else if (Arrays.asList(args).contains("-parallel")) {
+				Integer threads = Math.min( chunks.size(), Runtime.getRuntime().availableProcessors() );
+				System.out.println( "- PROCESSING WITH " + threads + " THREADS -" );
+				hc.processObservationFilesParallel( chunks, threads, stream );
+			} else {
+				for ( Integer i : chunks ) {
+					System.out.println( "- PROCESSING #" + i + "... -" );
+					if (stream) {
+						System.out.println( "------ stream observations" );
+						hc.processObservationStream( chunkInputs[ i ], hc.observationOutputFile( i ), "TTL" );
+					} else {
+						hc.processObservationFile( i, hc.observationOntology );
+						hc.observationOntology = ModelFactory.createDefaultModel();
+					}
+					System.out.println();
+				}
 			}
+			if (!chunks.isEmpty())
+				System.out.println( "- TAXON LABELS: " + hc.taxonLabels.getHits() + " hits, " + hc.taxonLabels.getMisses() + " misses -" );
 		} else {
             System.out.println( "--- SKIPPING DATA PROCESSING ---" );
         }
+
+		// Record converted observation files, and take observation days of the others from the manifest
+		boolean observationDaysComplete = true;
+		for ( Integer i = 0; i < 5; i++ ) {
+			BitSet days = hc.getObservationDays( chunkInputs[ i ] );
+			if (days != null) {
+				manifest.setObservationDays( chunkInputs[ i ], days );
+				manifest.update( hc.observationOutputFile( i ), chunkFingerprints[ i ] );
+			} else if (incremental && !skip) {
+				hc.addHaliasObservationDays( manifest.getObservationDays( chunkInputs[ i ] ) );
+			} else {
+				observationDaysComplete = false;
+			}
+		}
+		saveManifest( manifest );
 		
-		System.out.println( "- Add characteristics to taxa -" );
-		hc.addSpeciesCharacteristics();
+		if (taxonStale) {
+			System.out.println( "- Add characteristics to taxa -" );
+			stage = hc.report.start( "addSpeciesCharacteristics", hc.taxonOntology );
+			hc.addSpeciesCharacteristics();
+			stage.finish();
+		}
 		
-		System.out.println( "- WRITING WINDS... -" );
-		hc.createWinds();
+		if (windStale) {
+			System.out.println( "- WRITING WINDS... -" );
+			stage = hc.report.start( "createWinds", hc.windInstances );
+			hc.createWinds();
+			stage.finish();
+			manifest.update( windFile, windFingerprint );
+		}
 
         System.out.println( "- WRITING WEATHER CUBES... -" );
-        hc.createHaliasWeatherCube();
-        hc.createRussaroCube();
+        if (cubeStale) {
+            hc.createHaliasWeatherCube( cubeFile, "TTL" );
+            if (observationDaysComplete)
+                manifest.update( cubeFile, cubeFingerprint );
+        }
+        for (int i = 0; i < stationCount; i++) {
+            if (stationStale[ i ]) {
+                hc.createWeatherCube( hc.weatherStations.get( i ), stationFiles[ i ], "TTL" );
+                manifest.update( stationFiles[ i ], stationFingerprints[ i ] );
+            }
+        }
+        if (windStale || anyStationStale || cubeStale)
+            hc.weatherRussaro.writeDayLengthCache(WEATHER_DATA_DIRECTORY + "day_lengths.ser");
+        saveManifest( manifest );
 
         System.out.println( "- WRITING SCHEMA... -" );
+		stage = hc.report.start( "writeOntologies" );
 		
-		// Remove authors because of their malformed URIs. This is due to Jena bug fixed in 2.11.1.
-		hc.taxonOntology.removeAll(null, RDF.type, hc.taxonOntology.createResource(NS_TAXMEON + "Author"));
-		hc.taxonOntology.removeAll(null, hc.taxonOntology.createProperty(NS_TAXMEON + "abbreviation"), null);
-		hc.taxonOntology.removeAll(null, hc.taxonOntology.createProperty(NS_TAXMEON + "lastName"), null);
-		hc.taxonOntology.removeAll(null, DC.creator, null);
-		
-		hc.taxonOntology.removeNsPrefix( "halias-taxa" );
-		hc.taxonOntology.removeNsPrefix( "halias-schema" );
-		hc.taxonOntology.setNsPrefix("hs", NS_HALIAS_SCHEMA);
-		hc.taxonOntology.setNsPrefix("bc", NS_BIRD_CHARACTERISTICS);
-		hc.writeFile( hc.taxonOntology, OUTPUT_DIRECTORY + "halias_taxon_ontology.ttl", "TTL" );
+		if (taxonStale) {
+			// Remove authors because of their malformed URIs. This is due to Jena bug fixed in 2.11.1.
+			hc.taxonOntology.removeAll(null, RDF.type, hc.taxonOntology.createResource(NS_TAXMEON + "Author"));
+			hc.taxonOntology.removeAll(null, hc.taxonOntology.createProperty(NS_TAXMEON + "abbreviation"), null);
+			hc.taxonOntology.removeAll(null, hc.taxonOntology.createProperty(NS_TAXMEON + "lastName"), null);
+			hc.taxonOntology.removeAll(null, DC.creator, null);
+			
+			hc.taxonOntology.removeNsPrefix( "halias-taxa" );
+			hc.taxonOntology.removeNsPrefix( "halias-schema" );
+			hc.taxonOntology.setNsPrefix("hs", NS_HALIAS_SCHEMA);
+			hc.taxonOntology.setNsPrefix("bc", NS_BIRD_CHARACTERISTICS);
+			hc.writeFile( hc.taxonOntology, taxonFile, "TTL" );
+			manifest.update( taxonFile, taxonFingerprint );
+		}
 
-		hc.finalizeCharacteristicsOntology();		
-		hc.writeFile( hc.characteristicsOntology, OUTPUT_DIRECTORY + "halias_characteristics_ontology.ttl", "TTL" );
+		if (characteristicsStale) {
+			hc.finalizeCharacteristicsOntology();		
+			hc.writeFile( hc.characteristicsOntology, characteristicsFile, "TTL" );
+			manifest.update( characteristicsFile, characteristicsFingerprint );
+		}
 
-		hc.haliasSchema.removeNsPrefix( "" );
-		hc.haliasSchema.removeNsPrefix( "halias-schema" );
-		hc.haliasSchema.setNsPrefix("hs", NS_HALIAS_SCHEMA);
-		hc.haliasSchema.removeAll(hc.haliasSchema.createResource(NS_HALIAS_SCHEMA), hc.haliasSchema.createProperty(NS_OWL, "imports"), null);
-		hc.haliasSchema.removeAll(hc.haliasSchema.createResource(NS_HALIAS_SCHEMA), hc.haliasSchema.createProperty(NS_OWL, "versionInfo"), null);
-		hc.writeFile( hc.haliasSchema, OUTPUT_DIRECTORY + "halias_schema.ttl", "TTL" );
+		if (schemaStale) {
+			hc.haliasSchema.removeNsPrefix( "" );
+			hc.haliasSchema.removeNsPrefix( "halias-schema" );
+			hc.haliasSchema.setNsPrefix("hs", NS_HALIAS_SCHEMA);
+			hc.haliasSchema.removeAll(hc.haliasSchema.createResource(NS_HALIAS_SCHEMA), hc.haliasSchema.createProperty(NS_OWL, "imports"), null);
+			hc.haliasSchema.removeAll(hc.haliasSchema.createResource(NS_HALIAS_SCHEMA), hc.haliasSchema.createProperty(NS_OWL, "versionInfo"), null);
+			hc.writeFile( hc.haliasSchema, schemaFile, "TTL" );
+			manifest.update( schemaFile, schemaFingerprint );
+		}
+		stage.addTriples( hc.taxonOntology.size() + hc.characteristicsOntology.size() + hc.haliasSchema.size() );
+		stage.finish();
+		saveManifest( manifest );
+
+		hc.report.print();
+		try {
+			hc.report.write( OUTPUT_DIRECTORY + "run_report.json" );
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 
 		System.out.println( "- DONE -" );
 	}
+
+
+	private static void saveManifest( BuildManifest manifest ) {
+		try {
+			manifest.save();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
 }
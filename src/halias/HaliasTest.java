@@ -27,16 +27,46 @@ import halias.DailyWeather.MorningWeather;
 import halias.DailyWeather.WindInstance;
 import halias.WeatherData.DayLength;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotNotFoundException;
+import org.apache.jena.riot.system.StreamRDFLib;
 import org.junit.Test;
 
+import com.luckycatlabs.sunrisesunset.SunriseSunsetCalculator;
+import com.luckycatlabs.sunrisesunset.dto.Location;
+
 import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.NodeIterator;
+import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.rdf.model.ResIterator;
 import com.hp.hpl.jena.rdf.model.Resource;
@@ -348,8 +378,1195 @@ public class HaliasTest {
 	}
 
 	@Test
-	public void testHaliasDataProcessor() {
+	public void testTaxonLabelIndex() {
+		
+		Model taxa = ModelFactory.createDefaultModel();
+		Property inverseOfHasVernacularName = taxa.createProperty(HaliasDataProcessor.NS_TAXMEON, "inverse_of_hasVernacularName");
+		
+		Resource haahka = taxa.createResource("http://www.yso.fi/onto/bio/FMNH_372660");
+		Resource vernFi = taxa.createResource("http://ldf.fi/halias/taxa/vern1");
+		Resource vernSv = taxa.createResource("http://ldf.fi/halias/taxa/vern2");
+		taxa.add(vernFi, inverseOfHasVernacularName, haahka);
+		taxa.add(vernFi, RDFS.label, taxa.createLiteral("haahka", "fi"));
+		taxa.add(vernSv, inverseOfHasVernacularName, haahka);
+		taxa.add(vernSv, RDFS.label, taxa.createLiteral("ejder", "sv"));
+		taxa.add(haahka, RDFS.label, "Somateria mollissima");
+		
+		Resource tylli = taxa.createResource("http://www.yso.fi/onto/bio/FMNH_372637");
+		taxa.add(tylli, RDFS.label, taxa.createLiteral("tylli", "fi"));
+		
+		TaxonLabelIndex index = new TaxonLabelIndex(taxa);
+		
+		// Vernacular names are preferred over taxon's own labels
+		TaxonLabelIndex.Label[] labels = index.get(haahka.getURI());
+		assertEquals(2, labels.length);
+		for (TaxonLabelIndex.Label label : labels) {
+			assertTrue(label.label, (label.label.equals("haahka") && label.lang.equals("fi")) || (label.label.equals("ejder") && label.lang.equals("sv")));
+		}
+		
+		labels = index.get(tylli.getURI());
+		assertEquals(1, labels.length);
+		assertEquals("tylli", labels[0].label);
+		
+		assertNull(index.get("http://www.yso.fi/onto/bio/unknown"));
+		assertEquals(2, index.getHits());
+		assertEquals(1, index.getMisses());
+	}
+
+	@Test
+	public void testStandardizedObservationTable() {
+		
+		StandardizedObservationTable table = new StandardizedObservationTable( 4 );
+		String haahka = "http://www.yso.fi/onto/bio/FMNH_372660";
+		String tylli = "http://www.yso.fi/onto/bio/FMNH_372637";
+		
+		assertEquals(0, EpochDay.parse("1970-01-01"));
+		assertEquals(3407, EpochDay.parse("1979-05-01"));
+		assertEquals(11016, EpochDay.of(2000, 2, 29));
+		
+		// More entries than expected to force growing
+		for (int day = 1; day <= 31; day++) {
+			table.put(1979, 5, day, haahka, day * 10);
+		}
+		table.put(1979, 5, 1, tylli, 0);
+		
+		assertEquals(32, table.size());
+		assertEquals(10, table.get("1979-05-01", haahka));
+		assertEquals(310, table.get("1979-05-31", haahka));
+		assertEquals(0, table.get("1979-05-01", tylli));
+		assertEquals(StandardizedObservationTable.NO_VALUE, table.get("1979-05-02", tylli));
+		assertEquals(StandardizedObservationTable.NO_VALUE, table.get("1979-05-01", "http://www.yso.fi/onto/bio/unknown"));
+		assertEquals(310, table.get(EpochDay.of(1979, 5, 31), haahka));
+	}
+
+	@Test
+	public void testEpochDayTables() {
+
+		// Table lookups and the edges of the tables must agree with Calendar
+		int[] ranges = { EpochDay.of(1979, 1, 1), EpochDay.of(2010, 1, 1),
+				EpochDay.of(1899, 12, 25), EpochDay.of(1900, 1, 8),
+				EpochDay.of(2099, 12, 25), EpochDay.of(2100, 1, 8) };
+
+		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		for (int r = 0; r < ranges.length; r += 2) {
+			for (int day = ranges[ r ]; day < ranges[ r + 1 ]; day++) {
+				cal.clear();
+				cal.setTimeInMillis(day * 86400000L);
+				int year = cal.get(Calendar.YEAR);
+				int month = cal.get(Calendar.MONTH) + 1;
+				int dayOfMonth = cal.get(Calendar.DAY_OF_MONTH);
+				String iso = String.format("%04d-%02d-%02d", year, month, dayOfMonth);
+
+				assertEquals(iso, EpochDay.toIsoString(day));
+				assertEquals(iso.replaceAll("\\-", ""), EpochDay.toCompactString(day));
+				assertEquals(month, EpochDay.month(day));
+				assertEquals(cal.get(Calendar.WEEK_OF_YEAR), EpochDay.weekOfYear(day));
+				assertEquals(day, EpochDay.parse(iso));
+			}
+		}
+
+		assertEquals("winter", EpochDay.SEASON_NAMES[ EpochDay.season(EpochDay.of(2001, 12, 1)) ]);
+		assertEquals("winter", EpochDay.SEASON_NAMES[ EpochDay.season(EpochDay.of(2001, 2, 28)) ]);
+		assertEquals("spring", EpochDay.SEASON_NAMES[ EpochDay.season(EpochDay.of(2001, 3, 1)) ]);
+		assertEquals("summer", EpochDay.SEASON_NAMES[ EpochDay.season(EpochDay.of(2001, 8, 31)) ]);
+		assertEquals("autumn", EpochDay.SEASON_NAMES[ EpochDay.season(EpochDay.of(2001, 11, 30)) ]);
+	}
+
+	@Test
+	public void testDayLengthTable() throws Exception {
+		
+		DayLengthTable table = new DayLengthTable(WeatherData.LATITUDE, WeatherData.LONGITUDE);
+		
+		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		cal.set( 2014, 3-1, 24 );		// month is 0-based !!
+		SunriseSunsetCalculator calculator = new SunriseSunsetCalculator(new Location(WeatherData.LATITUDE, WeatherData.LONGITUDE), "UTC");
+		
+		int packed = table.get( EpochDay.of(2014, 3, 24) );
+		Integer sunrise = DayLengthTable.sunriseMinutes(packed);
+		Integer sunset = DayLengthTable.sunsetMinutes(packed);
+		assertEquals(calculator.getOfficialSunriseForDate(cal), String.format("%02d:%02d", sunrise / 60, sunrise % 60));
+		assertEquals(calculator.getOfficialSunsetForDate(cal), String.format("%02d:%02d", sunset / 60, sunset % 60));
+		
+		// Grow table to both directions
+		table.get( EpochDay.of(1979, 5, 1) );
+		table.get( EpochDay.of(2015, 5, 1) );
+		assertEquals(3, table.size());
+		assertEquals(packed, table.get( EpochDay.of(2014, 3, 24) ));
+		
+		File file = File.createTempFile("day_lengths", ".ser");
+		file.deleteOnExit();
+		table.save(file.getPath());
+		
+		DayLengthTable loaded = DayLengthTable.load(file.getPath());
+		assertTrue(loaded.isForLocation(WeatherData.LATITUDE, WeatherData.LONGITUDE));
+		assertEquals(3, loaded.size());
+		assertEquals(packed, loaded.get( EpochDay.of(2014, 3, 24) ));
+	}
+
+	@Test
+	public void testSemicolonTokenizer() throws Exception {
+		
+		SemicolonTokenizer csv = new SemicolonTokenizer(new StringReader("1979;5;1;0;-16.0;85;40;3;;1013.25;7\r\n\n2014;12;31;21;0.1\r1;+2;-0.0"));
+		
+		assertTrue(csv.nextLine());
+		assertEquals(11, csv.fieldCount());
+		assertEquals(1979, csv.parseInt(0));
+		assertEquals(5, csv.parseInt(1));
+		assertEquals(-16.0, csv.parseDouble(4), 0.0);
+		assertEquals(40, csv.parseInt(6));
+		assertTrue(csv.isEmpty(8));
+		assertTrue(csv.isEmpty(11));
+		assertEquals(Double.parseDouble("1013.25"), csv.parseDouble(9), 0.0);
+		
+		assertTrue(csv.nextLine());
+		assertEquals(1, csv.fieldCount());
+		assertTrue(csv.isEmpty(0));
 		
+		assertTrue(csv.nextLine());
+		assertEquals(5, csv.fieldCount());
+		assertEquals(Double.parseDouble("0.1"), csv.parseDouble(4), 0.0);
+		assertEquals("31", csv.getString(2));
+		
+		assertTrue(csv.nextLine());
+		assertEquals(1, csv.parseInt(0));
+		assertEquals(2, csv.parseInt(1));
+		assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(csv.parseDouble(2)));
+		
+		assertFalse(csv.nextLine());
+	}
+
+	@Test
+	public void testWeatherStore() {
+
+		WeatherStore store = new WeatherStore();
+		int day = EpochDay.of(1990, 6, 15);
+
+		store.addDay(day);
+		for (int slot = 0; slot < WeatherStore.SLOTS; slot++) {
+			double temp = slot == 4 ? Double.NaN : slot * 3.0;
+			store.setObservation(day, slot, slot < 2 ? WeatherStore.PRESUNRISE : WeatherStore.DAY, temp, 1000.0 + slot, slot, 80,
+					slot == 1 ? WeatherStore.NO_WIND : WeatherStore.windCode(slot, "SW"));
+		}
+		store.addDaytimeTemperature(day, 12.5);
+		store.setRainfall(day, 2.5);
+
+		// Grow store to both directions
+		store.addDay(day - 1000);
+		store.addDay(day + 1000);
+
+		assertEquals(3, store.size());
+		assertEquals(day - 1000, store.firstDay());
+		assertEquals(day + 1000, store.lastDay());
+		assertTrue(store.hasDay(day));
+		assertFalse(store.hasDay(day + 1));
+		assertSame(store.windInstance(WeatherStore.windCode(2, "SW")), store.windInstance(WeatherStore.windCode(2, "SW")));
+
+		DailyWeather daily = new DailyWeather(store, day);
+
+		assertEquals(12.5, daily.tempDaySum, EPSILON);
+		assertEquals(2.5, daily.rainfall, EPSILON);
+		assertNull(new DailyWeather(store, day - 1000).rainfall);
+		assertNull(daily.weatherObservation[4].temperature);
+		assertEquals(Integer.valueOf(80), daily.weatherObservation[3].humidity);
+		assertEquals(2, daily.windsPreSunrise.size());
+		assertNull(daily.windsPreSunrise.get(1));
+		assertEquals(6, daily.windsDay.size());
+		assertEquals("windSW4", daily.windsDay.get(2).toString());
+
+		MorningWeather fromStore = store.calculateMorningWeather(day, 4, 30, 6);
+		MorningWeather fromDaily = daily.calculateMorningWeather(4, 30, 6);
+
+		assertEquals(fromDaily.temperature, fromStore.temperature);
+		assertEquals(fromDaily.pressure, fromStore.pressure);
+		assertEquals(fromDaily.cloudCover, fromStore.cloudCover);
+		assertEquals(fromDaily.humidity, fromStore.humidity);
+		assertEquals(fromDaily.winds, fromStore.winds);
+		assertNull(store.calculateMorningWeather(day, 8, 0, 6).temperature);
+	}
+
+	@Test
+	public void testWindInstance() {
+
+		WindInstance wind = WindInstance.of(12, "SW");
+
+		assertSame(wind, WindInstance.of(WeatherStore.windCode(12, "SW")));
+		assertSame(wind, new DailyWeather().new ConcurrentObservations(0.0, 0.0, 12, 0, 0, "SW").wind);
+		assertEquals(Integer.valueOf(12), wind.speed);
+		assertEquals("SW", wind.dir);
+		assertEquals("windSW12", wind.toString());
+		assertEquals(HaliasDataProcessor.NS_WINDS + "windSW12", wind.uri);
+		assertEquals(wind.uri, Terms.windNode(wind).getURI());
+		assertFalse(wind.equals(WindInstance.of(12, "S")));
+		assertEquals(WindInstance.CODES - 1, WindInstance.code(WindInstance.MAX_SPEED, "NW"));
+
+		try {
+			WindInstance.code(WindInstance.MAX_SPEED + 1, "N");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			WindInstance.code(1, "X");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testWeatherRowsWindSpeedOutOfRange() throws Exception {
+
+		// Wind speed of the second row is out of range, and is read as a missing wind
+		SemicolonTokenizer csv = new SemicolonTokenizer(new StringReader(
+				"1979;5;1;0;-16.0;85;40;3;;1013.25;7\n1979;5;1;3;-15.0;85;40;200;;1013.25;7\n"));
+		WeatherStore store = new WeatherStore();
+		Set<WindInstance> winds = new HashSet<WindInstance>();
+		new WeatherData().readWeatherRows(csv, store, winds);
+
+		int day = EpochDay.of(1979, 5, 1);
+		assertEquals(Collections.singleton(WindInstance.of(3, "NE")), winds);
+		assertEquals(WindInstance.code(3, "NE"), store.wind.get(store.slotIndex(day)));
+		assertEquals(WeatherStore.NO_WIND, store.wind.get(store.slotIndex(day) + 1));
+		assertEquals(-15.0, store.temperature.get(store.slotIndex(day) + 1), 0.0);
+	}
+
+	@Test
+	public void testWeatherRowsHourly() throws Exception {
+
+		// Rows at 01:00 and 02:00 have no slot, and are left out of observations and daily aggregates
+		SemicolonTokenizer csv = new SemicolonTokenizer(new StringReader(
+				"1979;5;1;0;-16.0;80;40;3;;1010.0;7\n1979;5;1;1;20.0;10;40;5;;900.0;1\n1979;5;1;2;20.0;10;40;5;;900.0;1\n"
+				+ "1979;5;1;3;-15.0;90;40;3;;1012.0;5\n"));
+		WeatherStore store = new WeatherStore();
+		Set<WindInstance> winds = new HashSet<WindInstance>();
+		new WeatherData().readWeatherRows(csv, store, winds);
+
+		int day = EpochDay.of(1979, 5, 1);
+		assertEquals(Collections.singleton(WindInstance.of(3, "NE")), winds);
+		assertEquals(-16.0, store.temperature.get(store.slotIndex(day)), 0.0);
+		assertEquals(-15.0, store.temperature.get(store.slotIndex(day) + 1), 0.0);
+		assertEquals(2, store.pressureN.get(store.dayIndex(day)));
+		assertEquals(2022.0, store.pressureSum.get(store.dayIndex(day)), 0.0);
+		assertEquals(170, store.humiditySum.get(store.dayIndex(day)));
+		assertEquals(12, store.cloudCoverDaySum.get(store.dayIndex(day)));
+
+		assertTrue(WeatherData.isObservationHour(21));
+		assertFalse(WeatherData.isObservationHour(22));
+		assertFalse(WeatherData.isObservationHour(24));
+	}
+
+	@Test
+	public void testMorningWeatherTable() {
+
+		WeatherStore store = new WeatherStore();
+		Random random = new Random(1);
+		int firstDay = EpochDay.of(1990, 1, 1);
+		int days = 400;
+
+		for (int day = firstDay; day < firstDay + days; day++) {
+			if (day % 17 == 0)
+				continue;
+			store.addDay(day);
+			for (int slot = 0; slot < WeatherStore.SLOTS; slot++) {
+				store.setObservation(day, slot, WeatherStore.DAY,
+						random.nextInt(10) == 0 ? Double.NaN : random.nextGaussian() * 10,
+						random.nextInt(10) == 0 ? Double.NaN : 1000 + random.nextGaussian() * 10,
+						random.nextInt(10) == 0 ? Double.NaN : random.nextInt(9),
+						random.nextInt(10) == 0 ? Double.NaN : random.nextInt(100),
+						random.nextInt(10) == 0 ? WeatherStore.NO_WIND : WeatherStore.windCode(random.nextInt(20), "NE"));
+			}
+		}
+
+		// All start times, including invalid ones
+		int[] hours = new int[ days ], minutes = new int[ days ], months = new int[ days ];
+		for (int i = 0; i < days; i++) {
+			hours[ i ] = i % 10;
+			minutes[ i ] = i % 7 == 0 ? 0 : (i * 13) % 61;
+			months[ i ] = EpochDay.month(firstDay + i);
+		}
+
+		MorningWeatherTable table = store.calculateMorningWeather(firstDay, hours, minutes, months);
+
+		for (int i = 0; i < days; i++) {
+			int day = firstDay + i;
+			MorningWeather batch = table.get(day);
+			if (!store.hasDay(day)) {
+				assertNull(batch);
+				continue;
+			}
+			MorningWeather single = store.calculateMorningWeather(day, hours[ i ], minutes[ i ], months[ i ]);
+			if (single == null) {
+				assertNull(batch);
+				continue;
+			}
+			assertEquals(single.temperature, batch.temperature);
+			assertEquals(single.pressure, batch.pressure);
+			assertEquals(single.cloudCover, batch.cloudCover);
+			assertEquals(single.humidity, batch.humidity);
+			assertEquals(single.winds, batch.winds);
+		}
+		assertNull(table.get(firstDay - 1));
+		assertNull(table.get(firstDay + days));
+	}
+
+	@Test
+	public void testWeatherStoreMapping() throws Exception {
+
+		WeatherStore store = new WeatherStore();
+		Random random = new Random(2);
+		int firstDay = EpochDay.of(2000, 3, 1);
+		int days = 120;
+
+		for (int day = firstDay; day < firstDay + days; day++) {
+			if (day % 11 == 0)
+				continue;
+			store.addDay(day);
+			for (int slot = 0; slot < WeatherStore.SLOTS; slot++) {
+				store.setObservation(day, slot, slot < 2 ? WeatherStore.PRESUNRISE : WeatherStore.DAY,
+						random.nextInt(10) == 0 ? Double.NaN : random.nextGaussian() * 10,
+						1000 + random.nextGaussian() * 10, random.nextInt(9), random.nextInt(100),
+						random.nextInt(10) == 0 ? WeatherStore.NO_WIND : WeatherStore.windCode(random.nextInt(20), "SE"));
+			}
+			store.addDaytimeTemperature(day, random.nextGaussian() * 10);
+			if (day % 3 == 0)
+				store.setRainfall(day, random.nextInt(20));
+		}
+
+		File file = File.createTempFile("halias", ".store");
+		file.deleteOnExit();
+		store.save(file.getPath());
+		WeatherStore mapped = WeatherStore.map(file.getPath());
+
+		assertTrue(mapped.isMapped());
+		assertEquals(store.firstDay(), mapped.firstDay());
+		assertEquals(store.lastDay(), mapped.lastDay());
+		assertEquals(store.size(), mapped.size());
+
+		int[] hours = new int[ days ], minutes = new int[ days ], months = new int[ days ];
+		for (int i = 0; i < days; i++) {
+			int day = firstDay + i;
+			hours[ i ] = 3 + i % 4;
+			minutes[ i ] = (i * 7) % 60;
+			months[ i ] = EpochDay.month(day);
+
+			assertEquals(store.hasDay(day), mapped.hasDay(day));
+			if (!store.hasDay(day))
+				continue;
+
+			DailyWeather expected = new DailyWeather(store, day);
+			DailyWeather actual = new DailyWeather(mapped, day);
+			assertEquals(expected.tempDaySum, actual.tempDaySum);
+			assertEquals(expected.rainfall, actual.rainfall);
+			assertEquals(expected.windsDay, actual.windsDay);
+			for (int slot = 0; slot < WeatherStore.SLOTS; slot++) {
+				assertEquals(expected.weatherObservation[ slot ].temperature, actual.weatherObservation[ slot ].temperature);
+				assertEquals(expected.weatherObservation[ slot ].humidity, actual.weatherObservation[ slot ].humidity);
+			}
+
+			MorningWeather single = mapped.calculateMorningWeather(day, hours[ i ], minutes[ i ], months[ i ]);
+			assertEquals(store.calculateMorningWeather(day, hours[ i ], minutes[ i ], months[ i ]).temperature, single.temperature);
+		}
+
+		MorningWeatherTable expectedTable = store.calculateMorningWeather(firstDay, hours, minutes, months);
+		MorningWeatherTable actualTable = mapped.calculateMorningWeather(firstDay, hours, minutes, months);
+		for (int day = firstDay; day < firstDay + days; day++) {
+			MorningWeather expected = expectedTable.get(day);
+			MorningWeather actual = actualTable.get(day);
+			if (expected == null) {
+				assertNull(actual);
+				continue;
+			}
+			assertEquals(expected.temperature, actual.temperature);
+			assertEquals(expected.pressure, actual.pressure);
+			assertEquals(expected.winds, actual.winds);
+		}
+
+		try {
+			mapped.addDay(firstDay + days);
+			fail("Mapped store should be read-only");
+		} catch (UnsupportedOperationException e) {
+		}
+
+		// Truncated store file
+		File broken = File.createTempFile("halias", ".store");
+		broken.deleteOnExit();
+		OutputStream out = new FileOutputStream(broken);
+		out.write(new byte[] { 0x48, 0x57, 0x53, 0x54, 0, 0, 0, 1 });
+		out.close();
+		try {
+			WeatherStore.map(broken.getPath());
+			fail("Broken store should not be mapped");
+		} catch (IOException e) {
+		}
+	}
+
+	@Test
+	public void testWeatherCSVReader() throws Exception {
+
+		String weatherFile = "../test_fixtures/test_weather.csv";
+		String rainFile = "../test_fixtures/test_rainfall.csv";
+
+		WeatherData expected = new WeatherData();
+		expected.readWeatherCSV(weatherFile, rainFile);
+
+		// Parts of every size, down to single days
+		ByteBuffer bytes = WeatherCSVReader.map(weatherFile);
+		int start = WeatherCSVReader.skipLines(bytes, 0, WeatherData.WEATHER_HEADER_LINES);
+		for (int partSize : new int[] { 1, 40, 100, 1000, WeatherCSVReader.PART_SIZE }) {
+			int[] bounds = WeatherCSVReader.split(bytes, start, partSize);
+			assertEquals(start, bounds[ 0 ]);
+			assertEquals(bytes.limit(), bounds[ bounds.length - 1 ]);
+			for (int i = 1; i < bounds.length - 1; i++) {
+				int previous = bounds[ i - 1 ];
+				assertTrue(bounds[ i ] > previous);
+				assertTrue(bounds[ i ] == WeatherCSVReader.nextLine(bytes, bounds[ i ] - 1));
+			}
+
+			WeatherData actual = new WeatherData();
+			new WeatherCSVReader(new ForkJoinPool(), partSize).read(actual, weatherFile, rainFile);
+
+			WeatherStore a = expected.getWeatherStore(), b = actual.getWeatherStore();
+			assertEquals(a.firstDay(), b.firstDay());
+			assertEquals(a.lastDay(), b.lastDay());
+			assertEquals(expected.windInstances, actual.windInstances);
+			for (int day = a.firstDay(); day <= a.lastDay(); day++) {
+				assertEquals(a.hasDay(day), b.hasDay(day));
+				if (!a.hasDay(day))
+					continue;
+				DailyWeather x = new DailyWeather(a, day), y = new DailyWeather(b, day);
+				assertEquals(x.tempDaySum, y.tempDaySum);
+				assertEquals(x.pressureN, y.pressureN);
+				assertEquals(x.humiditySum, y.humiditySum);
+				assertEquals(x.rainfall, y.rainfall);
+				assertEquals(x.windsPreSunrise, y.windsPreSunrise);
+				assertEquals(x.windsDay, y.windsDay);
+				assertEquals(x.windsPostSunset, y.windsPostSunset);
+				for (int slot = 0; slot < WeatherStore.SLOTS; slot++)
+					assertEquals(x.weatherObservation[ slot ].temperature, y.weatherObservation[ slot ].temperature);
+			}
+		}
+
+		// Stations of a stations file, read in parallel
+		File stationsFile = File.createTempFile("halias", ".stations");
+		stationsFile.deleteOnExit();
+		OutputStream out = new FileOutputStream(stationsFile);
+		out.write(("# name;latitude;longitude;namespace;weather;rain\n"
+				+ "russaro;59.81021528;22.89485922;http://ldf.fi/russaro/;" + new File(weatherFile).getAbsolutePath() + ";" + new File(rainFile).getAbsolutePath() + "\n"
+				+ "\n"
+				+ "utsjoki;69.9;27.0;http://example.org/utsjoki/;" + new File(weatherFile).getAbsolutePath() + ";" + new File(rainFile).getAbsolutePath() + "\n").getBytes("UTF-8"));
+		out.close();
+
+		List<WeatherStation> stations = WeatherStation.readStations(stationsFile.getPath());
+		assertEquals(2, stations.size());
+		assertEquals("utsjoki", stations.get(1).name);
+		assertEquals("http://example.org/utsjoki/", stations.get(1).namespace);
+
+		new WeatherCSVReader(new ForkJoinPool(), 40).read(stations);
+		assertEquals(expected.getWeatherStore().size(), stations.get(0).weather.getWeatherStore().size());
+		assertEquals(expected.getWeatherStore().size(), stations.get(1).weather.getWeatherStore().size());
+		String day = EpochDay.toIsoString(expected.getWeatherStore().firstDay());
+		assertEquals(expected.getDailyWeatherData(day).tempDaySum, stations.get(0).weather.getDailyWeatherData(day).tempDaySum);
+		assertEquals(expected.getDailyWeatherData(day).rainfall, stations.get(1).weather.getDailyWeatherData(day).rainfall);
+
+		// Definitions differ by location and namespace, and names must be distinct
+		WeatherStation moved = new WeatherStation("utsjoki", 69.8, 27.0, "http://example.org/utsjoki/", weatherFile, rainFile);
+		assertFalse(moved.definition().equals(stations.get(1).definition()));
+		out = new FileOutputStream(stationsFile, true);
+		out.write(("utsjoki;69.8;27.0;http://example.org/utsjoki/;" + new File(weatherFile).getAbsolutePath() + ";" + new File(rainFile).getAbsolutePath() + "\n").getBytes("UTF-8"));
+		out.close();
+		try {
+			WeatherStation.readStations(stationsFile.getPath());
+			fail("Duplicate station names should be rejected");
+		} catch (IOException e) {
+		}
+	}
+
+	@Test
+	public void testWeatherStoreSource() throws Exception {
+
+		String weatherFile = "../test_fixtures/test_weather.csv";
+		String rainFile = "../test_fixtures/test_rainfall.csv";
+		File directory = Files.createTempDirectory("halias_stores").toFile();
+		File manifestFile = new File(directory, "build_manifest.properties");
+		String storeDirectory = directory.getPath() + File.separator;
+		try {
+			BuildManifest manifest = new BuildManifest(manifestFile.getPath());
+			ForkJoinPool pool = new ForkJoinPool();
+
+			// First read imports the weather files, and the second one maps the store
+			List<WeatherStation> stations = Arrays.asList(new WeatherStation("hanko", 59.8, 22.9, "http://example.org/hanko/", weatherFile, rainFile));
+			WeatherStation.readWeather(stations, storeDirectory, manifest, pool);
+			assertFalse(stations.get(0).weather.getWeatherStore().isMapped());
+			String source = stations.get(0).weather.storeFingerprint(manifest, weatherFile, rainFile);
+			assertEquals(source, WeatherStore.readSource(stations.get(0).storeFile(storeDirectory)));
+
+			stations = Arrays.asList(new WeatherStation("hanko", 59.8, 22.9, "http://example.org/hanko/", weatherFile, rainFile));
+			WeatherStation.readWeather(stations, storeDirectory, manifest, pool);
+			assertTrue(stations.get(0).weather.getWeatherStore().isMapped());
+			assertEquals(source, stations.get(0).weather.getWeatherStore().getSource());
+
+			// Moved station is imported again
+			stations = Arrays.asList(new WeatherStation("hanko", 69.9, 27.0, "http://example.org/hanko/", weatherFile, rainFile));
+			WeatherStation.readWeather(stations, storeDirectory, manifest, pool);
+			assertFalse(stations.get(0).weather.getWeatherStore().isMapped());
+			assertFalse(source.equals(WeatherStore.readSource(stations.get(0).storeFile(storeDirectory))));
+			pool.shutdown();
+
+			assertNull(WeatherStore.readSource(weatherFile));
+		} finally {
+			for (File file : directory.listFiles())
+				file.delete();
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void testParallelCubeWriter() throws Exception {
+
+		HaliasDataProcessor processor = new HaliasDataProcessor();
+		processor.weatherRussaro.readWeatherCSV("../test_fixtures/test_weather.csv", "../test_fixtures/test_rainfall.csv");
+
+		// Observation days before, within and after the weather days
+		BitSet days = new BitSet();
+		int firstDay = processor.weatherRussaro.getWeatherStore().firstDay();
+		days.set(EpochDay.toBit(firstDay - 3));
+		days.set(EpochDay.toBit(firstDay + 1));
+		days.set(EpochDay.toBit(firstDay + 40));
+		processor.addHaliasObservationDays(days);
+
+		File file = File.createTempFile("halias_cube", ".ttl");
+		file.deleteOnExit();
+		for (String format : new String[] { "TTL", "N-TRIPLES" }) {
+			processor.cubeWriter = null;
+			processor.createHaliasWeatherCube(file.getPath(), format);
+			byte[] haliasCube = Files.readAllBytes(file.toPath());
+			processor.createRussaroCube(file.getPath(), format);
+			byte[] russaroCube = Files.readAllBytes(file.toPath());
+
+			for (int blockDays : new int[] { 1, 2, 5, 1000 }) {
+				processor.cubeWriter = new ParallelCubeWriter(3, blockDays);
+				processor.createHaliasWeatherCube(file.getPath(), format);
+				assertTrue(format + " " + blockDays, Arrays.equals(haliasCube, Files.readAllBytes(file.toPath())));
+				processor.createRussaroCube(file.getPath(), format);
+				assertTrue(format + " " + blockDays, Arrays.equals(russaroCube, Files.readAllBytes(file.toPath())));
+			}
+		}
+
+		// Days without weather data are in date order with the other days
+		processor.createHaliasWeatherCube(file.getPath(), "N-TRIPLES");
+		String previous = "";
+		for (String line : new String(Files.readAllBytes(file.toPath()), "UTF-8").split("\n")) {
+			String subject = line.substring(0, line.indexOf(' '));
+			assertTrue(subject, subject.compareTo(previous) >= 0);
+			previous = subject;
+		}
+		assertTrue(previous.contains(EpochDay.toCompactString(firstDay + 40)));
+	}
+
+	@Test
+	public void testHaliasWeatherCubeStreamedAsModel() throws Exception {
+
+		HaliasDataProcessor processor = new HaliasDataProcessor();
+		processor.weatherRussaro.readWeatherCSV("../test_fixtures/test_weather.csv", "../test_fixtures/test_rainfall.csv");
+		BitSet days = new BitSet();
+		days.set(EpochDay.toBit(processor.weatherRussaro.getWeatherStore().firstDay() - 3));
+		processor.addHaliasObservationDays(days);
+
+		// Streamed cube
+		File file = File.createTempFile("halias_cube", ".nt");
+		file.deleteOnExit();
+		processor.createHaliasWeatherCube(file.getPath(), "N-TRIPLES");
+		List<String> streamed = Files.readAllLines(file.toPath(), Charset.forName("UTF-8"));
+
+		// Cube built in a model, which has no duplicate triples
+		Model model = ModelFactory.createDefaultModel();
+		processor.writeHaliasWeatherCube(StreamRDFLib.graph(model.getGraph()));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RDFDataMgr.write(out, model, Lang.NTRIPLES);
+		List<String> modelled = Arrays.asList(new String(out.toByteArray(), "UTF-8").split("\n"));
+
+		assertEquals(model.size(), streamed.size());
+		assertEquals(new HashSet<String>(modelled), new HashSet<String>(streamed));
+	}
+
+	@Test
+	public void testDoubleLiteral() {
+		
+		Model model = ModelFactory.createDefaultModel();
+		
+		for (double value : new double[] {-13.8, 1013.25, 1.0, 0.0, Double.NaN}) {
+			assertEquals(model.createTypedLiteral(value).asNode(), Terms.doubleLiteral(value));
+		}
+	}
+
+	@Test
+	public void testTerms() {
+
+		Model model = ModelFactory.createDefaultModel();
+
+		// Cached and uncached literals equal those of the model
+		for (int value : new int[] {0, 17, Terms.INT_MIN, Terms.INT_MAX, Terms.INT_MAX + 1, -100000}) {
+			assertEquals(model.createTypedLiteral(value).asNode(), Terms.intLiteral(value));
+		}
+		for (double value : new double[] {-0.0, 0.1, -99.9, 1100.0, 1100.1, 1e-7, 12.34, Double.NEGATIVE_INFINITY}) {
+			assertEquals(model.createTypedLiteral(value).asNode(), Terms.doubleLiteral(value));
+		}
+		assertEquals(model.createTypedLiteral(true).asNode(), Terms.booleanLiteral(true));
+		assertEquals(model.createTypedLiteral(false).asNode(), Terms.booleanLiteral(false));
+
+		// Repeated values share nodes, and -0.0 does not take the node of 0.0
+		assertSame(Terms.intLiteral(42), Terms.intLiteral(42));
+		assertSame(Terms.doubleLiteral(-13.8), Terms.doubleLiteral(-13.8));
+		assertEquals("-0.0", Terms.doubleLiteral(-0.0).getLiteralLexicalForm());
+		assertEquals("0.0", Terms.doubleLiteral(0.0).getLiteralLexicalForm());
+
+		assertEquals(model.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "refTime").asNode(), Terms.Nodes.refTime);
+		assertEquals(HaliasDataProcessor.NS_HALIAS_SCHEMA + "autumn", Terms.seasonNode(3).getURI());
+	}
+
+	@Test
+	public void testHaliasObservationDays() {
+		
+		HaliasDataProcessor processor = new HaliasDataProcessor();
+		Model observations = ModelFactory.createDefaultModel();
+		Resource observation = observations.createResource(HaliasDataProcessor.NS_HALIAS_OBSERVATIONS + "o1");
+		observations.add(observation, RDF.type, observations.createResource(HaliasDataProcessor.NS_QB + "Observation"));
+		observations.add(observation, observations.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "refTime"), observations.createTypedLiteral("2001-05-03", XSD.date.getURI()));
+		
+		processor.addDateInformation(observations);
+		
+		assertTrue(processor.isHaliasObservationDay(EpochDay.of(2001, 5, 3)));
+		assertFalse(processor.isHaliasObservationDay(EpochDay.of(2001, 5, 4)));
+
+		// Observation day without weather data is flagged in weather cube
+		Model weatherCube = ModelFactory.createDefaultModel();
+		processor.writeHaliasWeatherCube(StreamRDFLib.graph(weatherCube.getGraph()));
+		
+		assertEquals(1, weatherCube.size());
+		assertTrue(weatherCube.contains(weatherCube.createResource(HaliasDataProcessor.NS_HALIAS_WEATHER + "20010503"),
+				weatherCube.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "haliasObservationDay"), weatherCube.createTypedLiteral(true)));
+	}
+
+	@Test
+	public void testHaliasObservationDaysBefore1970() {
+
+		HaliasDataProcessor processor = new HaliasDataProcessor();
+		Model observations = ModelFactory.createDefaultModel();
+		Resource observation = observations.createResource(HaliasDataProcessor.NS_HALIAS_OBSERVATIONS + "o1");
+		observations.add(observation, RDF.type, observations.createResource(HaliasDataProcessor.NS_QB + "Observation"));
+		observations.add(observation, observations.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "refTime"), observations.createTypedLiteral("1969-12-30", XSD.date.getURI()));
+
+		BitSet days = new BitSet();
+		processor.addDateInformation(observations, days);
+
+		assertTrue(days.get(EpochDay.toBit(EpochDay.of(1969, 12, 30))));
+		assertTrue(processor.isHaliasObservationDay(EpochDay.of(1969, 12, 30)));
+		assertFalse(processor.isHaliasObservationDay(EpochDay.of(1969, 12, 31)));
+		assertFalse(processor.isHaliasObservationDay(EpochDay.of(1899, 12, 31)));
+
+		Model weatherCube = ModelFactory.createDefaultModel();
+		processor.writeHaliasWeatherCube(StreamRDFLib.graph(weatherCube.getGraph()));
+		assertTrue(weatherCube.contains(weatherCube.createResource(HaliasDataProcessor.NS_HALIAS_WEATHER + "19691230"),
+				weatherCube.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "haliasObservationDay"), weatherCube.createTypedLiteral(true)));
+
+		// Days before the first day of day sets are rejected by date
+		try {
+			EpochDay.toBit(EpochDay.of(1899, 12, 31));
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("1899-12-31"));
+		}
+	}
+
+	@Test
+	public void testRunReport() throws Exception {
+		
+		RunReport report = new RunReport();
+		Model model = ModelFactory.createDefaultModel();
+		Resource r = model.createResource("http://example.org/r");
+		
+		RunReport.Stage stage = report.start("add \"triples\"", model);
+		model.add(r, RDFS.label, "a");
+		model.add(r, RDFS.label, "b");
+		model.remove(r, RDFS.label, model.createLiteral("a"));
+		stage.finish(2);
+		
+		// Changes after the stage are not counted
+		model.add(r, RDFS.label, "c");
+		
+		assertEquals(2, stage.triplesAdded);
+		assertEquals(1, stage.triplesRemoved);
+		assertEquals(2, stage.observations);
+		assertTrue(stage.peakHeap > 0);
+		
+		File file = File.createTempFile("run_report", ".json");
+		try {
+			report.write(file.getPath());
+			String json = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+			assertTrue(json, json.contains("\"name\": \"add \\\"triples\\\"\""));
+			assertTrue(json, json.contains("\"triplesAdded\": 2, \"triplesRemoved\": 1, \"observations\": 2"));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testOutputSinks() throws Exception {
+
+		byte[] data = new byte[ 3 * 1000 * 1000 + 17 ];
+		Random random = new Random(1);
+		for (int i = 0; i < data.length; i++)
+			data[ i ] = (byte) ('a' + random.nextInt(4));
+
+		File file = File.createTempFile("output_sink", ".ttl.gz");
+		try {
+			for (OutputSink sink : OutputSink.values()) {
+				OutputStream out = sink.open(file.getPath());
+				out.write(data, 0, 10);
+				out.write(data[ 10 ]);
+				out.write(data, 11, data.length - 11);
+				out.close();
+				out.close();
+				assertTrue(sink.toString(), Arrays.equals(data, readOutput(file, sink)));
+
+				// Empty output
+				sink.open(file.getPath()).close();
+				assertEquals(sink.toString(), 0, readOutput(file, sink).length);
+			}
+
+			// Small blocks give several gzip members
+			OutputStream out = new ParallelGzipOutputStream(new FileOutputStream(file), 4096, 3);
+			out.write(data);
+			out.close();
+			assertTrue(Arrays.equals(data, readOutput(file, OutputSink.PARALLEL_GZIP)));
+
+			// Files ending with .gz are compressed
+			assertEquals(OutputSink.GZIP, OutputSink.forFile(file.getPath()));
+			assertEquals(OutputSink.PLAIN, OutputSink.forFile("halias_schema.ttl"));
+			HaliasDataProcessor processor = new HaliasDataProcessor();
+			Model model = ModelFactory.createDefaultModel();
+			model.add(model.createResource("http://example.org/r"), RDFS.label, "r");
+			processor.writeFile(model, file.getPath(), "TTL");
+			Model read = ModelFactory.createDefaultModel();
+			read.read(new GZIPInputStream(new FileInputStream(file)), null, "TTL");
+			assertTrue(model.isIsomorphicWith(read));
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static byte[] readOutput(File file, OutputSink sink) throws Exception {
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		if (sink == OutputSink.PLAIN)
+			return bytes;
+
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[ 1 << 16 ];
+		for (int n = in.read(buffer); n > 0; n = in.read(buffer))
+			out.write(buffer, 0, n);
+		in.close();
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testObservationPipeline() {
+
+		final HaliasDataProcessor processor = new HaliasDataProcessor();
+		final List<Integer> written = Collections.synchronizedList(new ArrayList<Integer>());
+
+		ObservationPipeline pipeline = new ObservationPipeline(processor, 2) {
+			long read(Chunk chunk) {
+				chunk.observations.add(chunk.observations.createResource("http://example.org/" + chunk.number), RDFS.label, "x");
+				return chunk.number;
+			}
+			BitSet enrich(Chunk chunk) {
+				sleep(5);
+				BitSet days = new BitSet();
+				days.set(chunk.number);
+				return days;
+			}
+			void write(Chunk chunk) {
+				// Slow writer fills the pipeline
+				sleep(20);
+				assertTrue(chunk.days.get(chunk.number));
+				written.add(chunk.number);
+			}
+		};
+		pipeline.run(Arrays.asList(0, 1, 2, 3, 4, 5));
+
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), written);
+		assertEquals(2, pipeline.getPeakInFlight());
+
+		// Stages are reported with stalls, the reader waiting for the slow writer
+		Map<String, RunReport.Stage> stages = new HashMap<String, RunReport.Stage>();
+		for (RunReport.Stage stage : processor.report.getStages())
+			stages.put(stage.name, stage);
+		assertEquals(15, stages.get("pipeline write").observations);
+		assertTrue(stages.get("pipeline read").stallSeconds() > 0.02);
+		assertEquals(7, stages.get("pipeline write").queueDepthSamples);
+
+		// Failure of a stage stops the pipeline
+		ObservationPipeline failing = new ObservationPipeline(processor, 1) {
+			long read(Chunk chunk) {
+				return 0;
+			}
+			BitSet enrich(Chunk chunk) {
+				if (chunk.number == 1)
+					throw new IllegalStateException("enrich failed");
+				return new BitSet();
+			}
+			void write(Chunk chunk) {
+			}
+		};
+		try {
+			failing.run(Arrays.asList(0, 1, 2, 3));
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("enrich failed", e.getCause().getMessage());
+		}
+		assertFalse(Thread.currentThread().isInterrupted());
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Test
+	public void testBuildManifest() throws Exception {
+
+		File input = File.createTempFile("manifest_input", ".csv");
+		File output = File.createTempFile("manifest_output", ".ttl");
+		File file = File.createTempFile("build_manifest", ".properties");
+		file.delete();
+		try {
+			Files.write(input.toPath(), "1979;1;1\n".getBytes("UTF-8"));
+
+			BuildManifest manifest = new BuildManifest(file.getPath());
+			String fingerprint = manifest.fingerprint(input.getPath());
+			assertFalse(manifest.isUpToDate(output.getPath(), fingerprint));
+
+			BitSet days = new BitSet();
+			days.set(EpochDay.of(1979, 1, 1));
+			days.set(EpochDay.of(2008, 12, 31));
+			manifest.update(output.getPath(), fingerprint);
+			manifest.setObservationDays(input.getPath(), days);
+			manifest.save();
+
+			// Reloaded manifest keeps outputs and observation days
+			manifest = new BuildManifest(file.getPath());
+			assertEquals(fingerprint, manifest.fingerprint(input.getPath()));
+			assertTrue(manifest.isUpToDate(output.getPath(), fingerprint));
+			assertEquals(days, manifest.getObservationDays(input.getPath()));
+			assertNull(manifest.getObservationDays(output.getPath()));
+
+			// Changed input changes the fingerprint
+			Files.write(input.toPath(), "1979;1;2;0.4\n".getBytes("UTF-8"));
+			assertFalse(fingerprint.equals(manifest.fingerprint(input.getPath())));
+
+			// Missing output is never up to date
+			output.delete();
+			assertFalse(manifest.isUpToDate(output.getPath(), fingerprint));
+		} finally {
+			input.delete();
+			output.delete();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testBuildManifestFilesFingerprint() throws Exception {
+
+		File directory = Files.createTempDirectory("manifest_code").toFile();
+		File classFile = new File(directory, "A.class");
+		File subdirectory = new File(directory, "sub");
+		try {
+			Files.write(classFile.toPath(), new byte[] { 1, 2, 3 });
+			String fingerprint = BuildManifest.filesFingerprint(directory.listFiles());
+
+			// Subdirectories are skipped, and a directory that could not be listed has a fingerprint
+			assertTrue(subdirectory.mkdir());
+			assertEquals(fingerprint, BuildManifest.filesFingerprint(directory.listFiles()));
+			assertNotNull(BuildManifest.filesFingerprint(new File(directory, "missing").listFiles()));
+
+			Files.write(classFile.toPath(), new byte[] { 1, 2, 4 });
+			assertFalse(fingerprint.equals(BuildManifest.filesFingerprint(directory.listFiles())));
+		} finally {
+			subdirectory.delete();
+			classFile.delete();
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void testModelSnapshotCache() throws Exception {
+
+		File input = File.createTempFile("snapshot_input", ".ttl");
+		File directory = Files.createTempDirectory("snapshots").toFile();
+		try {
+			StringBuilder longLabel = new StringBuilder();
+			for (int i = 0; i < 10000; i++)
+				longLabel.append("lintu ");
+			Files.write(input.toPath(), ("@prefix hs: <" + HaliasDataProcessor.NS_HALIAS_SCHEMA + "> .\n"
+					+ "@prefix xsd: <" + XSD.getURI() + "> .\n"
+					+ "hs:a hs:b \"tylli\"@fi , \"3\"^^xsd:byte , \"" + longLabel + "\" ;\n"
+					+ "     hs:c [ hs:d hs:e ] , [ hs:d \"ä\" ] .\n").getBytes("UTF-8"));
+
+			Model parsed = ModelFactory.createDefaultModel();
+			parsed.read("file:" + input.getPath(), "TTL");
+
+			ModelSnapshotCache cache = new ModelSnapshotCache(directory.getPath());
+			File snapshot = cache.snapshotFile(input);
+			assertFalse(snapshot.exists());
+
+			// First read parses the file and writes a snapshot, second one reads the snapshot
+			for (int i = 0; i < 2; i++) {
+				Model model = ModelFactory.createDefaultModel();
+				cache.read(model, input.getPath(), "TTL");
+				assertTrue(snapshot.exists());
+				assertTrue(model.isIsomorphicWith(parsed));
+				assertEquals(parsed.getNsPrefixMap(), model.getNsPrefixMap());
+			}
+
+			// Changed file gets a new snapshot
+			Files.write(input.toPath(), "<http://example.org/a> <http://example.org/b> <http://example.org/c> .\n".getBytes("UTF-8"));
+			assertFalse(snapshot.equals(cache.snapshotFile(input)));
+			Model model = ModelFactory.createDefaultModel();
+			cache.read(model, input.getPath(), "TTL");
+			assertEquals(1, model.size());
+		} finally {
+			input.delete();
+			for (File file : directory.listFiles())
+				file.delete();
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void testEnrichObservations() throws Exception {
+
+		HaliasDataProcessor processor = new HaliasDataProcessor();
+		Resource taxon = processor.taxonOntology.createResource(HaliasDataProcessor.NS_BIO + "FMNH_372765");
+		processor.taxonOntology.add(taxon, RDF.type, processor.taxonOntology.createResource(HaliasDataProcessor.NS_TAXMEON + "TaxonInChecklist"));
+		processor.taxonOntology.add(taxon, RDFS.label, processor.taxonOntology.createLiteral("punajalkaviklo", "fi"));
+		processor.taxonOntology.add(taxon, RDFS.label, "Tringa totanus");
+		// More standardized than migrating birds, to get a validation error
+		processor.standardizedObservations.put(1979, 5, 1, taxon.getURI(), 5);
+
+		Model separate = ModelFactory.createDefaultModel();
+		separate.read("file:" + "../test_fixtures/test_observations.rdf", "RDF/XML");
+		Model fused = ModelFactory.createDefaultModel();
+		fused.add(separate);
+		fused.setNsPrefixes(separate.getNsPrefixMap());
+
+		BitSet separateDays = new BitSet();
+		processor.addLabelsToObservations(separate);
+		processor.processBirdCounts(separate);
+		processor.addDateInformation(separate, separateDays);
+
+		BitSet fusedDays = new BitSet();
+		processor.enrichObservations(fused, fusedDays);
+
+		assertTrue(fused.contains(null, RDFS.label, fused.createLiteral("punajalkaviklo, 1979-05-01", "fi")));
+		assertTrue(fused.contains(null, fused.createProperty(HaliasDataProcessor.NS_SDMX_A, "nonsamplingErr")));
+		assertEquals(separateDays, fusedDays);
+		assertTrue(fused.isIsomorphicWith(separate));
+
+		// Same triple order gives the same output
+		ByteArrayOutputStream separateOut = new ByteArrayOutputStream();
+		ByteArrayOutputStream fusedOut = new ByteArrayOutputStream();
+		separate.write(separateOut, "TTL");
+		fused.write(fusedOut, "TTL");
+		assertArrayEquals(separateOut.toByteArray(), fusedOut.toByteArray());
+	}
+
+	/**
+	 * Processor with the taxon and standardized observation of the test observations.
+	 */
+	private static HaliasDataProcessor observationTestProcessor() {
+		return observationTestProcessor(new HaliasDataProcessor());
+	}
+
+	/**
+	 * Add the taxon and standardized observation of the test observations to a processor.
+	 */
+	private static HaliasDataProcessor observationTestProcessor(HaliasDataProcessor processor) {
+		Resource taxon = processor.taxonOntology.createResource(HaliasDataProcessor.NS_BIO + "FMNH_372765");
+		processor.taxonOntology.add(taxon, RDF.type, processor.taxonOntology.createResource(HaliasDataProcessor.NS_TAXMEON + "TaxonInChecklist"));
+		processor.taxonOntology.add(taxon, RDFS.label, processor.taxonOntology.createLiteral("punajalkaviklo", "fi"));
+		processor.taxonOntology.add(taxon, RDFS.label, "Tringa totanus");
+		processor.standardizedObservations.put(1979, 5, 1, taxon.getURI(), 5);
+		return processor;
+	}
+
+	@Test
+	public void testObservationStream() throws Exception {
+
+		String input = "../test_fixtures/test_observations.rdf";
+		HaliasDataProcessor processor = observationTestProcessor();
+
+		Model graph = ModelFactory.createDefaultModel();
+		graph.read("file:" + input, "RDF/XML");
+		BitSet graphDays = new BitSet();
+		processor.enrichObservations(graph, graphDays);
+
+		File output = File.createTempFile("halias_stream", ".nt");
+		output.deleteOnExit();
+		processor.processObservationStream(input, output.getPath(), "N-TRIPLES");
+		Model streamed = ModelFactory.createDefaultModel();
+		streamed.read("file:" + output.getPath(), "N-TRIPLES");
+
+		assertTrue(streamed.isIsomorphicWith(graph));
+		assertEquals(graphDays, processor.getObservationDays(input));
+	}
+
+	/**
+	 * Processor reading and writing observation files in the given directory.
+	 */
+	private static HaliasDataProcessor observationTestProcessor(final File directory) {
+		return observationTestProcessor(new HaliasDataProcessor() {
+			@Override
+			public String observationInputFile(Integer i) {
+				return new File(directory, "HALIAS" + i + ".rdf").getPath();
+			}
+			@Override
+			public String observationOutputFile(Integer i) {
+				return new File(directory, "HALIAS" + i + "_full.ttl").getPath();
+			}
+		});
+	}
+
+	@Test
+	public void testObservationFilesParallel() throws Exception {
+
+		// Two observation files, the second one with observations a year later
+		String observations = new String(Files.readAllBytes(new File("../test_fixtures/test_observations.rdf").toPath()), "UTF-8");
+		String[] inputs = { observations, observations.replace(">1979-05-0", ">1980-05-0") };
+		List<Integer> chunks = Arrays.asList(0, 1);
+
+		File sequentialDirectory = Files.createTempDirectory("halias_sequential").toFile();
+		HaliasDataProcessor sequential = observationTestProcessor(sequentialDirectory);
+		for (Integer i : chunks)
+			Files.write(new File(sequential.observationInputFile(i)).toPath(), inputs[i].getBytes("UTF-8"));
+		BitSet sequentialDays = new BitSet();
+		for (Integer i : chunks) {
+			sequential.processObservationFile(i, ModelFactory.createDefaultModel());
+			sequentialDays.or(sequential.getObservationDays(sequential.observationInputFile(i)));
+		}
+		assertFalse(sequential.getObservationDays(sequential.observationInputFile(0)).equals(sequential.getObservationDays(sequential.observationInputFile(1))));
+
+		for (boolean stream : new boolean[] { false, true }) {
+			File directory = Files.createTempDirectory("halias_parallel").toFile();
+			HaliasDataProcessor parallel = observationTestProcessor(directory);
+			for (Integer i : chunks)
+				Files.write(new File(parallel.observationInputFile(i)).toPath(), inputs[i].getBytes("UTF-8"));
+			parallel.processObservationFilesParallel(chunks, 2, stream);
+
+			BitSet parallelDays = new BitSet();
+			for (Integer i : chunks) {
+				Model expected = ModelFactory.createDefaultModel();
+				expected.read("file:" + sequential.observationOutputFile(i), "TTL");
+				Model actual = ModelFactory.createDefaultModel();
+				actual.read("file:" + parallel.observationOutputFile(i), "TTL");
+				assertTrue(actual.isIsomorphicWith(expected));
+				parallelDays.or(parallel.getObservationDays(parallel.observationInputFile(i)));
+			}
+			assertEquals(sequentialDays, parallelDays);
+			assertTrue(parallel.isHaliasObservationDay(EpochDay.of(1979, 5, 1)));
+			assertTrue(parallel.isHaliasObservationDay(EpochDay.of(1980, 5, 4)));
+			assertFalse(parallel.isHaliasObservationDay(EpochDay.of(1980, 5, 5)));
+		}
+
+		// A missing observation file fails its worker
+		HaliasDataProcessor failing = observationTestProcessor(sequentialDirectory);
+		try {
+			failing.processObservationFilesParallel(Arrays.asList(0, 2), 2, false);
+			fail("Failing worker not rethrown");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof RiotNotFoundException);
+		}
+	}
+
+	@Test
+	public void testObservationStreamSplitSubject() throws Exception {
+
+		// Count of the first observation comes after the second observation
+		String o1 = HaliasDataProcessor.NS_HALIAS_OBSERVATIONS + "H19790501tritot";
+		String o2 = HaliasDataProcessor.NS_HALIAS_OBSERVATIONS + "H19790502tritot";
+		String rdf = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+				+ "<rdf:RDF xmlns:hs=\"" + HaliasDataProcessor.NS_HALIAS_SCHEMA + "\" xmlns:rdf=\"" + RDF.getURI() + "\"\n"
+				+ "    xmlns:qb=\"" + HaliasDataProcessor.NS_QB + "\">\n";
+		for (String o : new String[] { o1, o2 }) {
+			rdf += "  <qb:Observation rdf:about=\"" + o + "\">\n"
+				+ "    <hs:refTime rdf:datatype=\"http://www.w3.org/2001/XMLSchema#date\">" + (o == o1 ? "1979-05-01" : "1979-05-02") + "</hs:refTime>\n"
+				+ "    <hs:observedSpecies rdf:resource=\"" + HaliasDataProcessor.NS_BIO + "FMNH_372765\"/>\n"
+				+ "    <hs:countMigration>2</hs:countMigration>\n"
+				+ "  </qb:Observation>\n";
+		}
+		rdf += "  <rdf:Description rdf:about=\"" + o1 + "\"><hs:countLocal>19</hs:countLocal></rdf:Description>\n</rdf:RDF>\n";
+
+		File input = File.createTempFile("halias_split", ".rdf");
+		input.deleteOnExit();
+		Files.write(input.toPath(), rdf.getBytes("UTF-8"));
+		HaliasDataProcessor processor = observationTestProcessor();
+
+		Model graph = ModelFactory.createDefaultModel();
+		graph.read("file:" + input.getPath(), "RDF/XML");
+		processor.enrichObservations(graph, new BitSet());
+
+		File output = File.createTempFile("halias_stream", ".nt");
+		output.deleteOnExit();
+		processor.processObservationStream(input.getPath(), output.getPath(), "N-TRIPLES");
+		Model streamed = ModelFactory.createDefaultModel();
+		streamed.read("file:" + output.getPath(), "N-TRIPLES");
+
+		// Triples of a subject are expected to be contiguous: the first part is enriched without the later count,
+		// which is passed on as it was read
+		Resource r = streamed.createResource(o1);
+		Property countLocal = streamed.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "countLocal");
+		assertTrue(graph.contains(graph.createResource(o1), countLocal, graph.createTypedLiteral(19)));
+		assertTrue(streamed.contains(r, countLocal, streamed.createTypedLiteral(0)));
+		assertTrue(streamed.contains(r, countLocal, "19"));
+		assertFalse(streamed.isIsomorphicWith(graph));
+	}
+
+	@Test
+	public void testReadConservationStatuses() throws Exception {
+
+		HaliasDataProcessor processor = new HaliasDataProcessor();
+		Model taxa = processor.taxonOntology;
+		Resource taxon = taxa.createResource(HaliasDataProcessor.NS_BIO + "FMNH_372765");
+		Resource vernacular = taxa.createResource(HaliasDataProcessor.NS_TAXMEON + "vernacular_372765_fi");
+		taxa.add(taxon, taxa.createProperty(HaliasDataProcessor.NS_TAXMEON, "hasVernacularName"), vernacular);
+		taxa.add(vernacular, taxa.createProperty(HaliasDataProcessor.NS_TAXMEON, "vernacularName"), "punajalkaviklo");
+		taxa.add(taxon, RDFS.label, "Tringa totanus");
+		taxa.add(taxon, RDFS.label, taxa.createLiteral("Scolopax rusticola", "la"));
+
+		File statuses = File.createTempFile("statuses", ".csv");
+		File directive = File.createTempFile("directive", ".csv");
+		try {
+			Files.write(statuses.toPath(), "Punajalkaviklo, NT\nlehtokurppa,VU\n".getBytes("UTF-8"));
+			Files.write(directive.toPath(), "Tringa totanus\n\nScolopax rusticola\n".getBytes("UTF-8"));
+			processor.readConservationStatuses(statuses.getPath(), directive.getPath());
+		} finally {
+			statuses.delete();
+			directive.delete();
+		}
+
+		assertTrue(taxa.contains(taxon, taxa.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "hasConservationStatus2010"),
+				taxa.createResource(HaliasDataProcessor.NS_HALIAS_SCHEMA + "conservationStatusNT")));
+		assertTrue(taxa.contains(taxon, taxa.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "isDirectiveSpecies"), taxa.createTypedLiteral(true)));
+
+		// Language tagged labels do not match
+		assertEquals(Arrays.asList("lehtokurppa"), processor.unmatchedConservationSpecies);
+		assertEquals(Arrays.asList("Scolopax rusticola"), processor.unmatchedDirectiveSpecies);
+	}
+
+	@Test
+	public void testHaliasDataProcessor() {
+
 		final String[] expectedSpecies = {"tylli@fi", "haahka@fi", "punajalkaviklo@fi", "lehtokurppa@fi", "kyhmyjoutsen@fi"};
 		final HashMap<String, String> expectedHumi = new HashMap<String, String>( 4 );
 		final HashMap<String, String> expectedTempDay = new HashMap<String, String>( 4 );
@@ -423,6 +1640,9 @@ public class HaliasTest {
         haliasConverter.createHaliasWeatherCube();
         haliasConverter.createRussaroCube();
 
+        Model weatherCube = ModelFactory.createDefaultModel();
+        haliasConverter.writeHaliasWeatherCube(StreamRDFLib.graph(weatherCube.getGraph()));
+
 		ResIterator iter = obs.listResourcesWithProperty(RDF.type, obs.createResource(HaliasDataProcessor.NS_QB + "Observation"));
 		
 		while (iter.hasNext()) {
@@ -446,20 +1666,20 @@ public class HaliasTest {
 
 		    // CHECK HUMIDITIES
 
-            Resource weather_resource = haliasConverter.hWC.listResourcesWithProperty(haliasConverter.hWC.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "refTime"), date_node).next();
+            Resource weather_resource = weatherCube.listResourcesWithProperty(weatherCube.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "refTime"), date_node).next();
 
-            RDFNode humi_node = haliasConverter.hWC.listObjectsOfProperty(weather_resource, obs.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "humidity")).next();
+            RDFNode humi_node = weatherCube.listObjectsOfProperty(weather_resource, obs.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "humidity")).next();
             System.out.println(humi_node);
             String humi = humi_node.asLiteral().getString();
 		    assertTrue(date, expectedHumi.get(date).equals(humi));
 
 		    // CHECK TEMPERATURES
 
-            RDFNode temp_node = haliasConverter.hWC.listObjectsOfProperty(weather_resource, obs.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "temperatureDay")).next();
+            RDFNode temp_node = weatherCube.listObjectsOfProperty(weather_resource, obs.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "temperatureDay")).next();
 		    String temp = temp_node.asLiteral().getString();
 		    assertTrue(date, expectedTempDay.get(date).equals(temp));
 
-            RDFNode standard_temp_node = haliasConverter.hWC.listObjectsOfProperty(weather_resource, obs.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "standardTemperature")).next();
+            RDFNode standard_temp_node = weatherCube.listObjectsOfProperty(weather_resource, obs.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, "standardTemperature")).next();
 		    assertNotNull("No standardTemperature for " + date, standard_temp_node);
 
 		    String standardTemp = standard_temp_node.asLiteral().getString();
@@ -0,0 +1,249 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+/**
+ * Cache of parsed RDF files as binary snapshots, so that unchanged files need not be parsed again.
+ *
+ * A snapshot is keyed by the SHA-1 hash of the file contents. It holds the namespace prefixes of the file,
+ * a dictionary of the distinct nodes of the graph, and the triples as triples of dictionary indices.
+ * Blank nodes get fresh labels on every read, as with parsing.
+ */
+public class ModelSnapshotCache {
+
+	private static final int MAGIC = 0x48524446;		// "HRDF"
+	private static final int VERSION = 1;
+
+	private static final byte URI = 0;
+	private static final byte BLANK = 1;
+	private static final byte LITERAL = 2;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File directory;
+
+	/**
+	 * @param	directory	directory to keep snapshots in, created when needed
+	 */
+	public ModelSnapshotCache(String directory) {
+		this.directory = new File(directory);
+	}
+
+	/**
+	 * Read an RDF file to a graph, from its snapshot if one exists, otherwise by parsing the file and saving a snapshot.
+	 * Falls back to parsing if the snapshot cannot be read or written.
+	 *
+	 * @param	model		graph to add the triples and namespace prefixes of the file to
+	 * @param	file_name	RDF file to read
+	 * @param	lang		language of the file, e.g. "TTL"
+	 */
+	public void read(Model model, String file_name, String lang) {
+		File file = new File(file_name);
+		if (!file.isFile()) {
+			// Let Jena report the missing file
+			model.read("file:" + file_name, lang);
+			return;
+		}
+
+		File snapshot = snapshotFile(file);
+		if (snapshot.isFile()) {
+			try {
+				readSnapshot(model, snapshot);
+				return;
+			} catch (Exception e) {
+				e.printStackTrace();
+				snapshot.delete();
+			}
+		}
+
+		Model parsed = ModelFactory.createDefaultModel();
+		parsed.read("file:" + file_name, lang);
+		try {
+			writeSnapshot(parsed, snapshot);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		model.add(parsed);
+		model.setNsPrefixes(parsed.getNsPrefixMap());
+	}
+
+	/**
+	 * Snapshot file of an RDF file, named by the file name and the hash of the file contents.
+	 */
+	File snapshotFile(File file) {
+		return new File(directory, file.getName() + "." + BuildManifest.hash(file) + ".rdfb");
+	}
+
+	/**
+	 * Write snapshot of a graph. The snapshot is written to a temporary file and renamed, so that an interrupted
+	 * write does not leave a broken snapshot.
+	 */
+	static void writeSnapshot(Model model, File snapshot) throws IOException {
+		File parent = snapshot.getAbsoluteFile().getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs())
+			throw new IOException("Could not create directory " + parent);
+
+		Graph graph = model.getGraph();
+		Map<Node, Integer> dictionary = new HashMap<Node, Integer>();
+		int[] triples = new int[ graph.size() * 3 ];
+		int count = 0;
+		for (Iterator<Triple> iter = graph.find(Node.ANY, Node.ANY, Node.ANY); iter.hasNext();) {
+			Triple triple = iter.next();
+			if (count == triples.length)
+				triples = Arrays.copyOf(triples, triples.length * 2 + 3);
+			triples[ count++ ] = index(dictionary, triple.getSubject());
+			triples[ count++ ] = index(dictionary, triple.getPredicate());
+			triples[ count++ ] = index(dictionary, triple.getObject());
+		}
+
+		Node[] nodes = new Node[ dictionary.size() ];
+		for (Map.Entry<Node, Integer> entry : dictionary.entrySet())
+			nodes[ entry.getValue() ] = entry.getKey();
+
+		File temp = new File(parent, snapshot.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			Map<String, String> prefixes = model.getNsPrefixMap();
+			out.writeInt(prefixes.size());
+			for (Map.Entry<String, String> entry : prefixes.entrySet()) {
+				writeString(out, entry.getKey());
+				writeString(out, entry.getValue());
+			}
+
+			out.writeInt(nodes.length);
+			for (Node node : nodes) {
+				if (node.isURI()) {
+					out.writeByte(URI);
+					writeString(out, node.getURI());
+				} else if (node.isBlank()) {
+					out.writeByte(BLANK);
+				} else {
+					out.writeByte(LITERAL);
+					writeString(out, node.getLiteralLexicalForm());
+					writeString(out, node.getLiteralLanguage());
+					writeString(out, node.getLiteralDatatypeURI() == null ? "" : node.getLiteralDatatypeURI());
+				}
+			}
+
+			out.writeInt(count / 3);
+			for (int i = 0; i < count; i++)
+				out.writeInt(triples[ i ]);
+		} finally {
+			out.close();
+		}
+
+		if (!temp.renameTo(snapshot)) {
+			temp.delete();
+			throw new IOException("Could not write snapshot " + snapshot);
+		}
+	}
+
+	/**
+	 * Read a snapshot to a graph, decoding the memory mapped snapshot file.
+	 */
+	static void readSnapshot(Model model, File snapshot) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(snapshot, "r");
+		ByteBuffer in;
+		try {
+			in = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+		} finally {
+			file.close();
+		}
+
+		if (in.getInt() != MAGIC || in.getInt() != VERSION)
+			throw new IOException("Not a snapshot: " + snapshot);
+
+		Map<String, String> prefixes = new HashMap<String, String>();
+		for (int i = in.getInt(); i > 0; i--)
+			prefixes.put(readString(in), readString(in));
+
+		TypeMapper types = TypeMapper.getInstance();
+		Node[] nodes = new Node[ in.getInt() ];
+		for (int i = 0; i < nodes.length; i++) {
+			byte kind = in.get();
+			if (kind == URI) {
+				nodes[ i ] = NodeFactory.createURI(readString(in));
+			} else if (kind == BLANK) {
+				nodes[ i ] = NodeFactory.createAnon();
+			} else if (kind == LITERAL) {
+				String lexical = readString(in);
+				String language = readString(in);
+				String datatype = readString(in);
+				nodes[ i ] = NodeFactory.createLiteral(lexical, language, datatype.isEmpty() ? null : types.getSafeTypeByName(datatype));
+			} else {
+				throw new IOException("Unknown node kind " + kind + " in " + snapshot);
+			}
+		}
+
+		Graph graph = model.getGraph();
+		for (int i = in.getInt(); i > 0; i--)
+			graph.add(Triple.create(nodes[ in.getInt() ], nodes[ in.getInt() ], nodes[ in.getInt() ]));
+		model.setNsPrefixes(prefixes);
+	}
+
+	private static int index(Map<Node, Integer> dictionary, Node node) {
+		Integer index = dictionary.get(node);
+		if (index == null) {
+			index = dictionary.size();
+			dictionary.put(node, index);
+		}
+		return index;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[ in.getInt() ];
+		in.get(bytes);
+		return new String(bytes, UTF8);
+	}
+}
@@ -0,0 +1,171 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import halias.DailyWeather.MorningWeather;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * Weather of morning standardized observation time of a range of days, calculated for all days at once.
+ *
+ * Calculation parameters of all days are resolved first, after which each variable is averaged over all days
+ * in one loop over the primitive observation columns of {@link WeatherStore}. Averages are NaN and winds
+ * {@link WeatherStore#NO_WIND} where missing, as in the store.
+ */
+public class MorningWeatherTable {
+
+	/** Maximum number of winds of one morning */
+	public static final int WINDS = 3;
+
+	private final WeatherStore store;
+	private final int firstDay;
+	private final boolean[] valid;
+
+	final double[] temperature, pressure, cloudCover, humidity;
+	final int[] winds;		// WINDS per day
+
+	/**
+	 * Calculate morning weather of consecutive days of a weather store. Days missing from the store
+	 * or having invalid start times have no morning weather.
+	 *
+	 * @param	store			weather data
+	 * @param	firstDay		day number of first day
+	 * @param	startTimeHour	start hours of days, see {@link DailyWeather#calculateMorningWeather(Integer, Integer, Integer)}
+	 * @param	startTimeMinute	start minutes of days
+	 * @param	month			months of days (1-12)
+	 */
+	public MorningWeatherTable(WeatherStore store, int firstDay, int[] startTimeHour, int[] startTimeMinute, int[] month) {
+		int days = startTimeHour.length;
+		if (startTimeMinute.length != days || month.length != days)
+			throw new IllegalArgumentException("Parameter arrays of different lengths");
+
+		this.store = store;
+		this.firstDay = firstDay;
+
+		valid = new boolean[ days ];
+		temperature = new double[ days ];
+		pressure = new double[ days ];
+		cloudCover = new double[ days ];
+		humidity = new double[ days ];
+		winds = new int[ days * WINDS ];
+		Arrays.fill(temperature, Double.NaN);
+		Arrays.fill(pressure, Double.NaN);
+		Arrays.fill(cloudCover, Double.NaN);
+		Arrays.fill(humidity, Double.NaN);
+		Arrays.fill(winds, WeatherStore.NO_WIND);
+
+		// Parameters of days having morning weather
+		int[] dayIndex = new int[ days ];
+		int[] base = new int[ days ];
+		int[] index0 = new int[ days ];
+		int[] minutes0 = new int[ days ];
+		int[] length = new int[ days ];
+		int n = 0;
+
+		for (int i = 0; i < days; i++) {
+			int hour = startTimeHour[ i ];
+			int minute = startTimeMinute[ i ];
+			if (!store.hasDay(firstDay + i) ||
+				(hour < 0 || hour > 8) ||
+				(minute < 0 || minute > 59) ||
+				(hour == 8 && minute != 0))
+				continue;
+
+			valid[ i ] = true;
+			dayIndex[ n ] = i;
+			base[ n ] = store.slotIndex(firstDay + i);
+			index0[ n ] = hour / 3;
+			minutes0[ n ] = ( hour % 3 ) * 60 + minute;
+			length[ n ] = WeatherStore.morningLength(month[ i ]);
+			n++;
+		}
+
+		average(store.temperature, temperature, n, dayIndex, base, index0, minutes0, length);
+		average(store.pressure, pressure, n, dayIndex, base, index0, minutes0, length);
+		average(store.cloudCover, cloudCover, n, dayIndex, base, index0, minutes0, length);
+		average(store.humidity, humidity, n, dayIndex, base, index0, minutes0, length);
+
+		for (int k = 0; k < n; k++) {
+			int w = dayIndex[ k ] * WINDS;
+			int first = base[ k ] + index0[ k ];
+			int end = minutes0[ k ] + length[ k ];
+
+			if (minutes0[ k ] == 0 && store.wind.get(first) != WeatherStore.NO_WIND)
+				winds[ w++ ] = store.wind.get(first);
+			if (end >= 180 && store.wind.get(first + 1) != WeatherStore.NO_WIND)
+				winds[ w++ ] = store.wind.get(first + 1);
+			if (end >= 2 * 180 && store.wind.get(first + 2) != WeatherStore.NO_WIND)
+				winds[ w ] = store.wind.get(first + 2);
+		}
+	}
+
+	/**
+	 * Average one observation column over the standardized observation time of the given days.
+	 */
+	private static void average(DoubleBuffer column, double[] result, int n, int[] days, int[] base, int[] index0, int[] minutes0, int[] length) {
+		for (int k = 0; k < n; k++)
+			result[ days[ k ] ] = WeatherStore.morningAverage(column, base[ k ], index0[ k ], minutes0[ k ], length[ k ]);
+	}
+
+	public int firstDay() {
+		return firstDay;
+	}
+
+	public int size() {
+		return valid.length;
+	}
+
+	/**
+	 * Check if a day has morning weather.
+	 */
+	public boolean hasDay(int dayNumber) {
+		int i = dayNumber - firstDay;
+		return i >= 0 && i < valid.length && valid[ i ];
+	}
+
+	/**
+	 * Get morning weather of a day, equal to {@link WeatherStore#calculateMorningWeather(int, int, int, int)}.
+	 *
+	 * @return	morning weather, or null if the day has none
+	 */
+	public MorningWeather get(int dayNumber) {
+		if (!hasDay(dayNumber))
+			return null;
+
+		int i = dayNumber - firstDay;
+		MorningWeather averagedValues = new MorningWeather();
+		averagedValues.temperature = nullIfNaN(temperature[ i ]);
+		averagedValues.pressure = nullIfNaN(pressure[ i ]);
+		for (int w = i * WINDS; w < (i + 1) * WINDS && winds[ w ] != WeatherStore.NO_WIND; w++)
+			averagedValues.winds.add(store.windInstance(winds[ w ]));
+		averagedValues.cloudCover = nullIfNaN(cloudCover[ i ]);
+		averagedValues.humidity = nullIfNaN(humidity[ i ]);
+		return averagedValues;
+	}
+
+	private static Double nullIfNaN(double value) {
+		return Double.isNaN(value) ? null : value;
+	}
+}
@@ -0,0 +1,238 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+package halias;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+/**
+ * Conversion of observation files as a pipeline of reading, enriching and writing stages, each in its own thread,
+ * so that the next file is read while one is enriched and the previous one is written.
+ *
+ * Stages hand files over through bounded queues. At most a given number of files are in the pipeline at a time,
+ * which caps memory use at that many observation graphs. Each stage is recorded in the run report with the time
+ * it stalled waiting for input or for room in the pipeline, and the depth of its input queue.
+ */
+public class ObservationPipeline {
+
+	/**
+	 * Observation file in the pipeline.
+	 */
+	static class Chunk {
+		final Integer number;
+		Model observations;
+		long count;
+		BitSet days;
+
+		Chunk(Integer number) {
+			this.number = number;
+		}
+	}
+
+	private static final Chunk END = new Chunk(-1);
+
+	private final HaliasDataProcessor processor;
+	private final Semaphore inFlight;
+	private final BlockingQueue<Chunk> parsed, enriched;
+	private final List<Thread> threads = new ArrayList<Thread>();
+	private final AtomicInteger chunksInFlight = new AtomicInteger();
+	private volatile int peakInFlight;
+	private volatile Throwable failure;
+
+	/**
+	 * @param	processor	processor converting the files
+	 * @param	maxInFlight	maximum number of files in the pipeline at a time, at least 1
+	 */
+	public ObservationPipeline(HaliasDataProcessor processor, int maxInFlight) {
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("At least one file must fit in the pipeline");
+		this.processor = processor;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.parsed = new ArrayBlockingQueue<Chunk>(maxInFlight + 1);
+		this.enriched = new ArrayBlockingQueue<Chunk>(maxInFlight + 1);
+	}
+
+	/**
+	 * Convert observation files, writing them in the given order. Returns when all files are written.
+	 * A pipeline is run only once.
+	 *
+	 * @param	chunks	numbers of the observation files
+	 */
+	public void run(final List<Integer> chunks) {
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				readAll(chunks);
+			}
+		}, "pipeline reader");
+		Thread enricher = new Thread(new Runnable() {
+			public void run() {
+				enrichAll();
+			}
+		}, "pipeline enricher");
+		synchronized (threads) {
+			threads.add(Thread.currentThread());
+			threads.add(reader);
+			threads.add(enricher);
+		}
+		reader.start();
+		enricher.start();
+
+		writeAll();
+
+		try {
+			reader.join();
+			enricher.join();
+		} catch (InterruptedException e) {
+			fail(e);
+		}
+		if (failure != null) {
+			// Clear interrupt by the failed stage
+			Thread.interrupted();
+			throw new RuntimeException("Processing observation file failed", failure);
+		}
+	}
+
+	private void readAll(List<Integer> chunks) {
+		RunReport.Stage stage = processor.report.start("pipeline read");
+		try {
+			for (Integer i : chunks) {
+				long start = System.nanoTime();
+				inFlight.acquire();
+				stage.addStall(System.nanoTime() - start);
+				entered();
+
+				Chunk chunk = new Chunk(i);
+				chunk.observations = ModelFactory.createDefaultModel();
+				chunk.count = read(chunk);
+				stage.addObservations(chunk.count);
+				put(parsed, chunk, stage);
+			}
+			put(parsed, END, stage);
+		} catch (InterruptedException e) {
+			// Another stage failed
+		} catch (Throwable e) {
+			fail(e);
+		} finally {
+			stage.finish();
+		}
+	}
+
+	private void enrichAll() {
+		RunReport.Stage stage = processor.report.start("pipeline enrich");
+		try {
+			for (Chunk chunk = take(parsed, stage); chunk != END; chunk = take(parsed, stage)) {
+				chunk.days = enrich(chunk);
+				stage.addObservations(chunk.count);
+				put(enriched, chunk, stage);
+			}
+			put(enriched, END, stage);
+		} catch (InterruptedException e) {
+			// Another stage failed
+		} catch (Throwable e) {
+			fail(e);
+		} finally {
+			stage.finish();
+		}
+	}
+
+	private void writeAll() {
+		RunReport.Stage stage = processor.report.start("pipeline write");
+		try {
+			for (Chunk chunk = take(enriched, stage); chunk != END; chunk = take(enriched, stage)) {
+				write(chunk);
+				stage.addObservations(chunk.count);
+				chunk.observations = null;
+				chunksInFlight.decrementAndGet();
+				inFlight.release();
+			}
+		} catch (InterruptedException e) {
+			// Another stage failed
+		} catch (Throwable e) {
+			fail(e);
+		} finally {
+			stage.finish();
+		}
+	}
+
+	long read(Chunk chunk) {
+		System.out.println( "- PROCESSING #" + chunk.number + "... -" );
+		return processor.readObservationFile(chunk.number, chunk.observations);
+	}
+
+	BitSet enrich(Chunk chunk) {
+		return processor.enrichObservationFile(chunk.number, chunk.observations, chunk.count);
+	}
+
+	void write(Chunk chunk) {
+		processor.writeObservationFile(chunk.number, chunk.observations, chunk.count, chunk.days);
+		System.out.println( "- DONE #" + chunk.number + " -" );
+	}
+
+	private static void put(BlockingQueue<Chunk> queue, Chunk chunk, RunReport.Stage stage) throws InterruptedException {
+		long start = System.nanoTime();
+		queue.put(chunk);
+		stage.addStall(System.nanoTime() - start);
+	}
+
+	private static Chunk take(BlockingQueue<Chunk> queue, RunReport.Stage stage) throws InterruptedException {
+		stage.sampleQueueDepth(queue.size());
+		long start = System.nanoTime();
+		Chunk chunk = queue.take();
+		stage.addStall(System.nanoTime() - start);
+		return chunk;
+	}
+
+	private void entered() {
+		int n = chunksInFlight.incrementAndGet();
+		synchronized (this) {
+			if (n > peakInFlight)
+				peakInFlight = n;
+		}
+	}
+
+	/**
+	 * Stop all stages after a failure. The first failure is thrown from {@link #run(List)}.
+	 */
+	private void fail(Throwable e) {
+		synchronized (threads) {
+			if (failure == null)
+				failure = e;
+			for (Thread thread : threads)
+				thread.interrupt();
+		}
+	}
+
+	/**
+	 * Highest number of files that have been in the pipeline at a time.
+	 */
+	public int getPeakInFlight() {
+		return peakInFlight;
+	}
+}
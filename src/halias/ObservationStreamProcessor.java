@@ -0,0 +1,138 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import java.util.BitSet;
+import java.util.Map;
+
+import org.apache.jena.atlas.lib.Tuple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.shared.PrefixMapping;
+import com.hp.hpl.jena.shared.impl.PrefixMappingImpl;
+import com.hp.hpl.jena.sparql.core.Quad;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * Streaming enrichment of observation files provided by Python conversion program.
+ *
+ * Parsed triples are grouped by subject. Each group describing a qb:Observation gets the same labels, bird counts
+ * and date information as with {@link HaliasDataProcessor} graph processing, and is then passed on to the output stream.
+ * Only one subject is held in memory at a time, so the triples of a subject are expected to be contiguous in the input
+ * (as they are in RDF/XML written by the Python conversion).
+ */
+public class ObservationStreamProcessor implements StreamRDF {
+
+	private HaliasDataProcessor processor;
+	private StreamRDF output;
+	private PrefixMapping prefixes;
+
+	private Model buffer;
+	private Node currentSubject;
+
+	public long observationCount;
+	public final BitSet observationDays = new BitSet();		// Days of observations by EpochDay bit
+
+	/**
+	 * @param	processor	processor holding the taxon ontology, standardized observations and weather data
+	 * @param	output		stream to write enriched triples to
+	 */
+	public ObservationStreamProcessor(HaliasDataProcessor processor, StreamRDF output) {
+		this.processor = processor;
+		this.output = output;
+
+		prefixes = new PrefixMappingImpl();
+		HaliasDataProcessor.setObservationNsPrefixes(prefixes);
+
+		buffer = ModelFactory.createDefaultModel();
+		currentSubject = null;
+		observationCount = 0;
+	}
+
+	@Override
+	public void start() {
+		output.start();
+		for (Map.Entry<String, String> entry : prefixes.getNsPrefixMap().entrySet()) {
+			output.prefix(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Override
+	public void triple(Triple triple) {
+		if (currentSubject != null && !currentSubject.equals(triple.getSubject())) {
+			flush();
+		}
+		currentSubject = triple.getSubject();
+		buffer.getGraph().add(triple);
+	}
+
+	@Override
+	public void quad(Quad quad) {
+		triple(quad.asTriple());
+	}
+
+	@Override
+	public void tuple(Tuple<Node> tuple) {
+		// Not used with RDF/XML input
+	}
+
+	@Override
+	public void base(String base) {
+		output.base(base);
+	}
+
+	@Override
+	public void prefix(String prefix, String iri) {
+		// Output prefixes are already set, keep only the new ones from input
+		if (prefixes.getNsPrefixURI(prefix) == null && !prefix.equals("halias-schema")) {
+			prefixes.setNsPrefix(prefix, iri);
+			output.prefix(prefix, iri);
+		}
+	}
+
+	@Override
+	public void finish() {
+		flush();
+		output.finish();
+	}
+
+	/**
+	 * Enrich the buffered subject if it is an observation and pass its triples on to the output.
+	 */
+	private void flush() {
+		if (buffer.contains(null, RDF.type, Terms.Observation)) {
+			processor.enrichObservations(buffer, observationDays);
+			observationCount++;
+		}
+
+		StreamRDFLib.triplesToStream(output, buffer.getGraph().find(Node.ANY, Node.ANY, Node.ANY));
+
+		buffer.removeAll();
+		currentSubject = null;
+	}
+}
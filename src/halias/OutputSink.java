@@ -0,0 +1,101 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+package halias;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Ways of writing an output file: plain, gzip compressed, or gzip compressed in parallel.
+ *
+ * Compression runs on other threads than the one writing to the returned stream, so that serializing output
+ * overlaps with compressing it. Streams are buffered, and closing the returned stream closes the file.
+ */
+public enum OutputSink {
+
+	/** Uncompressed file */
+	PLAIN("") {
+		OutputStream wrap(OutputStream file) {
+			return new BufferedOutputStream(file, BUFFER_SIZE);
+		}
+	},
+
+	/** Gzip compressed file, compressed on a writer thread */
+	GZIP(".gz") {
+		OutputStream wrap(OutputStream file) throws IOException {
+			return new AsyncOutputStream(new GZIPOutputStream(file, BUFFER_SIZE), BUFFER_SIZE, 16);
+		}
+	},
+
+	/** Gzip compressed file of independently compressed blocks, compressed on a thread per processor */
+	PARALLEL_GZIP(".gz") {
+		OutputStream wrap(OutputStream file) {
+			return new ParallelGzipOutputStream(new BufferedOutputStream(file, BUFFER_SIZE));
+		}
+	};
+
+	static final int BUFFER_SIZE = 1 << 16;
+
+	private final String suffix;
+
+	private OutputSink(String suffix) {
+		this.suffix = suffix;
+	}
+
+	abstract OutputStream wrap(OutputStream file) throws IOException;
+
+	/**
+	 * File name suffix of files written with this sink, e.g. ".gz".
+	 */
+	public String suffix() {
+		return suffix;
+	}
+
+	/**
+	 * Open a file for writing.
+	 *
+	 * @param	file_name	file to write to
+	 * @return	stream to write to, which must be closed
+	 */
+	public OutputStream open(String file_name) throws IOException {
+		FileOutputStream file = new FileOutputStream(file_name);
+		try {
+			return wrap(file);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		} catch (RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Sink of a file by its name: gzip for names ending with ".gz", otherwise plain.
+	 */
+	public static OutputSink forFile(String file_name) {
+		return file_name.endsWith(GZIP.suffix) ? GZIP : PLAIN;
+	}
+}
@@ -0,0 +1,212 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+
+package halias;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.jena.riot.lang.StreamRDFCounting;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.writer.WriterStreamRDFBlocks;
+
+/**
+ * Writer of weather cubes, rendering blocks of days in parallel and writing the blocks in day order.
+ *
+ * Each block of days is written to a buffer of its own by a writer of its own. For Turtle, the block writers know the
+ * namespace prefixes declared at the start of the output without declaring them again, so that the blocks form one
+ * document. The number of blocks being rendered is bounded, so memory use does not depend on output size.
+ */
+public class ParallelCubeWriter {
+
+	public static final int DEFAULT_BLOCK_DAYS = 366;
+
+	/**
+	 * Triples of days in a range of days.
+	 */
+	public interface DayRange {
+
+		/**
+		 * Write triples of days from fromDay up to but not including toDay. Called from several threads at once.
+		 */
+		void write(StreamRDF writer, int fromDay, int toDay);
+	}
+
+	private final int threads;
+	private final int blockDays;
+
+	/**
+	 * Write with one thread per processor.
+	 */
+	public ParallelCubeWriter() {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_BLOCK_DAYS);
+	}
+
+	/**
+	 * @param	threads		number of rendering threads
+	 * @param	blockDays	number of days in a block
+	 */
+	public ParallelCubeWriter(int threads, int blockDays) {
+		this.threads = threads;
+		this.blockDays = blockDays;
+	}
+
+	/**
+	 * Write triples of days from firstDay to lastDay to output.
+	 *
+	 * @param	out			output stream, closed by the caller
+	 * @param	format		"TTL" for streaming Turtle, otherwise N-Triples
+	 * @param	prefixes	namespace prefixes to declare at the start of output
+	 * @param	firstDay	first day to write
+	 * @param	lastDay		last day to write
+	 * @param	days		triples of days
+	 * @return	number of triples written
+	 */
+	public long write(OutputStream out, final String format, final Map<String, String> prefixes,
+			int firstDay, int lastDay, final DayRange days) throws IOException {
+
+		StreamRDF header = HaliasDataProcessor.createStreamWriter(out, format);
+		header.start();
+		for (Map.Entry<String, String> prefix : prefixes.entrySet())
+			header.prefix(prefix.getKey(), prefix.getValue());
+		header.finish();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "cube writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		Queue<Future<Block>> pending = new ArrayDeque<Future<Block>>();
+		boolean turtle = format.equals("TTL");
+		boolean written = !prefixes.isEmpty();
+		long triples = 0;
+		try {
+			for (int from = firstDay; from <= lastDay; from += blockDays) {
+				final int blockFrom = from;
+				final int blockTo = (int) Math.min((long) from + blockDays, (long) lastDay + 1);
+				pending.add(executor.submit(new Callable<Block>() {
+					public Block call() {
+						ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+						StreamRDFCounting writer = StreamRDFLib.count(blockWriter(buffer, format, prefixes));
+						writer.start();
+						days.write(writer, blockFrom, blockTo);
+						writer.finish();
+						return new Block(buffer, writer.countTriples());
+					}
+				}));
+
+				while (pending.size() > threads * 2) {
+					Block block = next(pending);
+					written = block.writeTo(out, turtle && written) || written;
+					triples += block.triples;
+				}
+			}
+			while (!pending.isEmpty()) {
+				Block block = next(pending);
+				written = block.writeTo(out, turtle && written) || written;
+				triples += block.triples;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		out.flush();
+		return triples;
+	}
+
+	/**
+	 * Rendered block of days.
+	 */
+	private static class Block {
+		final ByteArrayOutputStream buffer;
+		final long triples;
+
+		Block(ByteArrayOutputStream buffer, long triples) {
+			this.buffer = buffer;
+			this.triples = triples;
+		}
+
+		/**
+		 * Write block to output.
+		 *
+		 * @param	gap		true to start a non-empty block with an empty line, as Turtle writers separate subjects
+		 * @return	true if the block is not empty
+		 */
+		boolean writeTo(OutputStream out, boolean gap) throws IOException {
+			if (buffer.size() == 0)
+				return false;
+			if (gap)
+				out.write('\n');
+			buffer.writeTo(out);
+			return true;
+		}
+	}
+
+	/**
+	 * Wait for the oldest block to be rendered.
+	 */
+	private static Block next(Queue<Future<Block>> pending) throws IOException {
+		try {
+			return pending.remove().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing cube");
+		} catch (ExecutionException e) {
+			throw new IOException("Writing cube failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Writer of a block, abbreviating with the prefixes declared in the header.
+	 */
+	static StreamRDF blockWriter(OutputStream out, String format, Map<String, String> prefixes) {
+		if (format.equals("TTL"))
+			return new TurtleBlockWriter(out, prefixes);
+		return StreamRDFLib.writer(out);
+	}
+
+	/**
+	 * Turtle writer using prefixes without declaring them.
+	 */
+	private static class TurtleBlockWriter extends WriterStreamRDFBlocks {
+
+		TurtleBlockWriter(OutputStream out, Map<String, String> prefixes) {
+			super(out);
+			for (Map.Entry<String, String> prefix : prefixes.entrySet())
+				pMap.add(prefix.getKey(), prefix.getValue());
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+package halias;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output stream compressing blocks of output in parallel into gzip members.
+ *
+ * Each block is compressed into a complete gzip member on a thread pool, and the members are written in order.
+ * Concatenated members form a valid gzip file, which standard gzip tools decompress as a whole. The number of
+ * blocks being compressed is bounded, so memory use does not depend on output size.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	private final OutputStream out;
+	private final ExecutorService executor;
+	private final Queue<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+	private final int maxPending;
+	private final int blockSize;
+
+	private byte[] block;
+	private int count;
+	private boolean submitted, closed;
+
+	/**
+	 * Compress with one thread per processor.
+	 */
+	public ParallelGzipOutputStream(OutputStream out) {
+		this(out, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param	out			stream to write the gzip members to
+	 * @param	blockSize	size of uncompressed blocks
+	 * @param	threads		number of compressing threads
+	 */
+	public ParallelGzipOutputStream(OutputStream out, int blockSize, int threads) {
+		this.out = out;
+		this.blockSize = blockSize;
+		this.maxPending = threads * 2;
+		this.block = new byte[ blockSize ];
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "gzip compressor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (count == block.length)
+			submit();
+		block[ count++ ] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (count == block.length)
+				submit();
+			int n = Math.min(len, block.length - count);
+			System.arraycopy(b, off, block, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Compress the current block and write all compressed blocks. Every flush ends a gzip member,
+	 * so frequent flushing weakens compression.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (count > 0)
+			submit();
+		while (!pending.isEmpty())
+			writeNext();
+		out.flush();
+	}
+
+	private void submit() throws IOException {
+		final byte[] data = block;
+		final int length = count;
+		pending.add(executor.submit(new Callable<byte[]>() {
+			public byte[] call() throws IOException {
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 3 + 64);
+				GZIPOutputStream gzip = new GZIPOutputStream(compressed, 1 << 16);
+				gzip.write(data, 0, length);
+				gzip.close();
+				return compressed.toByteArray();
+			}
+		}));
+		block = new byte[ blockSize ];
+		count = 0;
+		submitted = true;
+
+		while (pending.size() > maxPending)
+			writeNext();
+	}
+
+	/**
+	 * Wait for the oldest block to be compressed and write it.
+	 */
+	private void writeNext() throws IOException {
+		try {
+			out.write(pending.remove().get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while compressing output");
+		} catch (ExecutionException e) {
+			throw new IOException("Compressing output failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Write remaining blocks, stop the compressing threads and close the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+
+		try {
+			// Empty output still needs one member to be a gzip file
+			if (count > 0 || !submitted)
+				submit();
+			while (!pending.isEmpty())
+				writeNext();
+		} finally {
+			executor.shutdownNow();
+			out.close();
+		}
+	}
+}
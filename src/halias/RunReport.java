@@ -0,0 +1,295 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+/**
+ * Timing and throughput of the processing stages of a run, written as a JSON report.
+ *
+ * Stages may run concurrently in several threads. Heap usage is sampled while stages are running, so the peak heap
+ * of a stage is the highest sampled heap usage of the JVM during the stage.
+ */
+public class RunReport {
+
+	private static final long SAMPLE_INTERVAL = 20;		// Heap sampling interval in milliseconds
+
+	private final long startTime;
+	private final long startNanos;
+	private final List<Stage> stages = new ArrayList<Stage>();
+	private final List<Stage> running = new ArrayList<Stage>();
+	private Timer sampler;
+
+	/**
+	 * A processing stage. Triples are counted from a graph given to {@link RunReport#start(String, Model)},
+	 * or added with {@link #addTriples(long)} by stages that write triples to a stream.
+	 * Stages connected by queues also record time stalled waiting for the queues and the depth of their input queue.
+	 */
+	public class Stage {
+		public final String name;
+		public final String thread;
+		final long startNanos;
+		long elapsedNanos = -1;
+		long triplesAdded, triplesRemoved;
+		long observations;
+		long peakHeap;
+		long stallNanos;
+		long queueDepthSum;
+		int queueDepthSamples, maxQueueDepth;
+
+		private Model model;
+		private StatementListener listener;
+
+		Stage(String name) {
+			this.name = name;
+			this.thread = Thread.currentThread().getName();
+			this.startNanos = System.nanoTime();
+		}
+
+		public void addTriples(long triples) {
+			triplesAdded += triples;
+		}
+
+		public void addObservations(long count) {
+			observations += count;
+		}
+
+		/**
+		 * Add time the stage waited for input or for room in its output queue.
+		 */
+		public synchronized void addStall(long nanos) {
+			stallNanos += nanos;
+		}
+
+		/**
+		 * Record the number of items waiting in the input queue of the stage.
+		 */
+		public synchronized void sampleQueueDepth(int depth) {
+			queueDepthSum += depth;
+			queueDepthSamples++;
+			if (depth > maxQueueDepth)
+				maxQueueDepth = depth;
+		}
+
+		public double stallSeconds() {
+			return stallNanos / 1e9;
+		}
+
+		public double meanQueueDepth() {
+			return queueDepthSamples > 0 ? (double) queueDepthSum / queueDepthSamples : 0.0;
+		}
+
+		/**
+		 * Finish stage, counting processed observations.
+		 */
+		public void finish(long count) {
+			addObservations(count);
+			finish();
+		}
+
+		public void finish() {
+			elapsedNanos = System.nanoTime() - startNanos;
+			if (model != null)
+				model.unregister(listener);
+			RunReport.this.finished(this);
+		}
+
+		public double elapsedSeconds() {
+			return elapsedNanos / 1e9;
+		}
+
+		public double observationsPerSecond() {
+			return elapsedNanos > 0 ? observations / elapsedSeconds() : 0.0;
+		}
+
+		synchronized void sampleHeap(long used) {
+			if (used > peakHeap)
+				peakHeap = used;
+		}
+	}
+
+	public RunReport() {
+		startTime = System.currentTimeMillis();
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Start a stage.
+	 */
+	public Stage start(String name) {
+		Stage stage = new Stage(name);
+		synchronized (this) {
+			stages.add(stage);
+			running.add(stage);
+			if (sampler == null) {
+				sampler = new Timer("heap sampler", true);
+				sampler.schedule(new TimerTask() {
+					public void run() {
+						sampleHeap();
+					}
+				}, 0, SAMPLE_INTERVAL);
+			}
+		}
+		stage.sampleHeap(usedHeap());
+		return stage;
+	}
+
+	/**
+	 * Start a stage that modifies a graph, counting statements added to and removed from the graph until the stage
+	 * is finished. Removals by pattern (Model.removeAll) are not counted.
+	 */
+	public Stage start(String name, Model model) {
+		final Stage stage = start(name);
+		stage.model = model;
+		stage.listener = new StatementListener() {
+			@Override
+			public void addedStatement(Statement s) {
+				stage.triplesAdded++;
+			}
+
+			@Override
+			public void removedStatement(Statement s) {
+				stage.triplesRemoved++;
+			}
+		};
+		model.register(stage.listener);
+		return stage;
+	}
+
+	private synchronized void finished(Stage stage) {
+		stage.sampleHeap(usedHeap());
+		running.remove(stage);
+		if (running.isEmpty() && sampler != null) {
+			sampler.cancel();
+			sampler = null;
+		}
+	}
+
+	private synchronized void sampleHeap() {
+		long used = usedHeap();
+		for (Stage stage : running)
+			stage.sampleHeap(used);
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	public synchronized List<Stage> getStages() {
+		return new ArrayList<Stage>(stages);
+	}
+
+	/**
+	 * Print a line of each finished stage.
+	 */
+	public void print() {
+		for (Stage stage : getStages()) {
+			if (stage.elapsedNanos < 0)
+				continue;
+			String line = String.format(Locale.ROOT, "%-40s %9.2f s %10d + %10d - %10d obs %10.0f obs/s %6d MB",
+					stage.name, stage.elapsedSeconds(), stage.triplesAdded, stage.triplesRemoved,
+					stage.observations, stage.observationsPerSecond(), stage.peakHeap >> 20);
+			if (stage.queueDepthSamples > 0)
+				line += String.format(Locale.ROOT, " %9.2f s stalled, queue %.1f avg %d max",
+						stage.stallSeconds(), stage.meanQueueDepth(), stage.maxQueueDepth);
+			System.out.println(line);
+		}
+	}
+
+	/**
+	 * Write report of finished stages to a JSON file.
+	 */
+	public void write(String file_name) throws IOException {
+		SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+		Writer out = new OutputStreamWriter(new FileOutputStream(file_name), Charset.forName("UTF-8"));
+		try {
+			out.write("{\n");
+			out.write("  \"started\": \"" + iso.format(new Date(startTime)) + "\",\n");
+			out.write("  \"elapsedSeconds\": " + number((System.nanoTime() - startNanos) / 1e9) + ",\n");
+			out.write("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",\n");
+			out.write("  \"maxHeapBytes\": " + Runtime.getRuntime().maxMemory() + ",\n");
+			out.write("  \"stages\": [");
+
+			String separator = "\n";
+			for (Stage stage : getStages()) {
+				if (stage.elapsedNanos < 0)
+					continue;
+				out.write(separator);
+				out.write("    {\"name\": " + string(stage.name)
+						+ ", \"thread\": " + string(stage.thread)
+						+ ", \"startSeconds\": " + number((stage.startNanos - startNanos) / 1e9)
+						+ ", \"elapsedSeconds\": " + number(stage.elapsedSeconds())
+						+ ", \"triplesAdded\": " + stage.triplesAdded
+						+ ", \"triplesRemoved\": " + stage.triplesRemoved
+						+ ", \"observations\": " + stage.observations
+						+ ", \"observationsPerSecond\": " + number(stage.observationsPerSecond())
+						+ ", \"peakHeapBytes\": " + stage.peakHeap
+						+ (stage.queueDepthSamples > 0 ? ", \"stallSeconds\": " + number(stage.stallSeconds())
+								+ ", \"meanQueueDepth\": " + number(stage.meanQueueDepth())
+								+ ", \"maxQueueDepth\": " + stage.maxQueueDepth : "")
+						+ "}");
+				separator = ",\n";
+			}
+			out.write("\n  ]\n}\n");
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String number(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	private static String string(String value) {
+		StringBuilder json = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				json.append('\\').append(c);
+			else if (c < 0x20)
+				json.append(String.format("\\u%04x", (int) c));
+			else
+				json.append(c);
+		}
+		return json.append('"').toString();
+	}
+}
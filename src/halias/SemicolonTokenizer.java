@@ -0,0 +1,217 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Tokenizer for semicolon separated files, such as FMI's weather observation files.
+ *
+ * Lines are read into a reusable buffer and fields are parsed in place, so reading a file does not create
+ * strings or boxed numbers for each line.
+ */
+public class SemicolonTokenizer {
+
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private Reader reader;
+	private char[] buffer = new char[ 1 << 16 ];
+	private int position, limit;
+	private boolean skipLineFeed;
+
+	private char[] line = new char[ 256 ];
+	private int lineLength;
+
+	private int[] fieldStarts = new int[ 32 ];
+	private int[] fieldEnds = new int[ 32 ];
+	private int fieldCount;
+
+	public SemicolonTokenizer(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Read next line and split it to fields. Lines end with "\n", "\r" or "\r\n", as with BufferedReader.
+	 *
+	 * @return	false if there are no more lines
+	 */
+	public boolean nextLine() throws IOException {
+		lineLength = 0;
+		fieldCount = 0;
+		boolean read = false;
+
+		while (true) {
+			if (position >= limit) {
+				limit = reader.read(buffer, 0, buffer.length);
+				position = 0;
+				if (limit <= 0) {
+					limit = 0;
+					break;
+				}
+			}
+
+			char c = buffer[ position++ ];
+
+			if (skipLineFeed) {
+				skipLineFeed = false;
+				if (c == '\n')
+					continue;
+			}
+			read = true;
+
+			if (c == '\n')
+				break;
+			if (c == '\r') {
+				skipLineFeed = true;
+				break;
+			}
+
+			if (lineLength == line.length)
+				line = Arrays.copyOf(line, line.length * 2);
+			line[ lineLength++ ] = c;
+		}
+
+		if (!read)
+			return false;
+
+		splitFields();
+		return true;
+	}
+
+	private void splitFields() {
+		int start = 0;
+		for (int i = 0; i <= lineLength; i++) {
+			if (i == lineLength || line[ i ] == ';') {
+				if (fieldCount == fieldStarts.length) {
+					fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+					fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+				}
+				fieldStarts[ fieldCount ] = start;
+				fieldEnds[ fieldCount ] = i;
+				fieldCount++;
+				start = i + 1;
+			}
+		}
+	}
+
+	/**
+	 * Number of fields on current line.
+	 */
+	public int fieldCount() {
+		return fieldCount;
+	}
+
+	/**
+	 * Length of a field, 0 for fields missing from current line.
+	 */
+	public int length(int field) {
+		if (field >= fieldCount)
+			return 0;
+		return fieldEnds[ field ] - fieldStarts[ field ];
+	}
+
+	/**
+	 * Check if a field is empty or missing from current line.
+	 */
+	public boolean isEmpty(int field) {
+		return length(field) == 0;
+	}
+
+	/**
+	 * Parse integer field, with the same accepted syntax as Integer.parseInt.
+	 */
+	public int parseInt(int field) {
+		int i = fieldStarts[ field ];
+		int end = fieldEnds[ field ];
+		boolean negative = false;
+
+		if (i < end && (line[ i ] == '-' || line[ i ] == '+')) {
+			negative = line[ i ] == '-';
+			i++;
+		}
+		if (i == end || end - i > 9)
+			return Integer.parseInt(getString(field));		// Let Integer handle errors and overflows
+
+		int value = 0;
+		for (; i < end; i++) {
+			int digit = line[ i ] - '0';
+			if (digit < 0 || digit > 9)
+				throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parse decimal field. Plain decimal numbers are parsed in place, giving the same result as Double.parseDouble.
+	 */
+	public double parseDouble(int field) {
+		int i = fieldStarts[ field ];
+		int end = fieldEnds[ field ];
+		boolean negative = false;
+
+		if (i < end && (line[ i ] == '-' || line[ i ] == '+')) {
+			negative = line[ i ] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int decimals = -1;
+
+		for (; i < end; i++) {
+			char c = line[ i ];
+			if (c >= '0' && c <= '9') {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (decimals >= 0)
+					decimals++;
+			} else if (c == '.' && decimals < 0) {
+				decimals = 0;
+			} else {
+				digits = -1;
+				break;
+			}
+		}
+
+		// Both mantissa and power of ten are exact doubles here, so the division is correctly rounded
+		if (digits <= 0 || digits > 15 || decimals >= POWERS_OF_TEN.length)
+			return Double.parseDouble(getString(field));
+
+		double value = decimals > 0 ? mantissa / POWERS_OF_TEN[ decimals ] : mantissa;
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Get field as a new string.
+	 */
+	public String getString(int field) {
+		if (field >= fieldCount)
+			return "";
+		return new String(line, fieldStarts[ field ], length(field));
+	}
+}
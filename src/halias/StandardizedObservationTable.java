@@ -0,0 +1,96 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import java.util.HashMap;
+
+/**
+ * Standardized morning observation counts by day and taxon.
+ *
+ * Keys are built from a day number and an interned taxon id, so that looking up a count does not allocate.
+ */
+public class StandardizedObservationTable {
+
+	public static final int NO_VALUE = LongIntHashMap.NO_VALUE;
+
+	private HashMap<String, Integer> taxonIds;
+	private LongIntHashMap counts;
+
+	public StandardizedObservationTable(int expectedSize) {
+		taxonIds = new HashMap<String, Integer>( 1024 );
+		counts = new LongIntHashMap( expectedSize );
+	}
+
+	/**
+	 * Get interned id of a taxon, adding the taxon to the dictionary if needed.
+	 */
+	private int internTaxon(String taxon_uri) {
+		Integer id = taxonIds.get(taxon_uri);
+		if (id == null) {
+			id = taxonIds.size();
+			taxonIds.put(taxon_uri, id);
+		}
+		return id;
+	}
+
+	private static long key(int dayNumber, int taxonId) {
+		return ((long) dayNumber << 32) | (taxonId & 0xffffffffL);
+	}
+
+	/**
+	 * Put standardized observation count of a taxon for a day.
+	 */
+	public void put(int year, int month, int day, String taxon_uri, int count) {
+		counts.put(key(EpochDay.of(year, month, day), internTaxon(taxon_uri)), count);
+	}
+
+	/**
+	 * Get standardized observation count of a taxon for a day.
+	 *
+	 * @param	dateString	date as yyyy-MM-dd
+	 * @param	taxon_uri	URI of taxon
+	 * @return	count, or {@link #NO_VALUE} if there is none
+	 */
+	public int get(String dateString, String taxon_uri) {
+		return get(EpochDay.parse(dateString), taxon_uri);
+	}
+
+	/**
+	 * Get standardized observation count of a taxon on a day.
+	 *
+	 * @param	dayNumber	days since 1970-01-01
+	 * @param	taxon_uri	URI of the taxon
+	 * @return	count, or NO_VALUE
+	 */
+	public int get(int dayNumber, String taxon_uri) {
+		Integer taxonId = taxonIds.get(taxon_uri);
+		if (taxonId == null)
+			return NO_VALUE;
+
+		return counts.get(key(dayNumber, taxonId));
+	}
+
+	public int size() {
+		return counts.size();
+	}
+}
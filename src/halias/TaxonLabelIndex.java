@@ -0,0 +1,139 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.NodeIterator;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.ResIterator;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+ * Index of taxon labels used for labelling observations.
+ *
+ * Built once from the taxon ontology, after which labels of a species are found with a single hash lookup.
+ * Labels of a taxon are the labels of its vernacular names, or the taxon's own labels if it has no vernacular names.
+ */
+public class TaxonLabelIndex {
+
+	/**
+	 * Immutable label with language tag.
+	 */
+	public static class Label {
+		public final String label;
+		public final String lang;
+
+		public Label(String label, String lang) {
+			this.label = label;
+			this.lang = lang;
+		}
+	}
+
+	private HashMap<String, Label[]> labels;
+
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Build index from taxon ontology.
+	 *
+	 * @param	taxonOntology	taxon ontology, with vernacular names
+	 */
+	public TaxonLabelIndex(Model taxonOntology) {
+		labels = new HashMap<String, Label[]>( 2048 );
+
+		Property inverseOfHasVernacularName = taxonOntology.createProperty(HaliasDataProcessor.NS_TAXMEON, "inverse_of_hasVernacularName");
+
+		// Taxa with vernacular names
+		for (NodeIterator iter = taxonOntology.listObjectsOfProperty(inverseOfHasVernacularName); iter.hasNext();) {
+			RDFNode node = iter.next();
+			if (!node.isURIResource() || labels.containsKey(node.asResource().getURI()))
+				continue;
+
+			Resource id = node.asResource();
+			List<Label> taxonLabels = new ArrayList<Label>();
+
+			for (ResIterator verns = taxonOntology.listResourcesWithProperty(inverseOfHasVernacularName, id); verns.hasNext();) {
+				NodeIterator vernStr = taxonOntology.listObjectsOfProperty(verns.nextResource(), RDFS.label);
+				if (vernStr.hasNext())
+					taxonLabels.add(toLabel(vernStr.next().asLiteral()));
+			}
+			labels.put(id.getURI(), taxonLabels.toArray(new Label[taxonLabels.size()]));
+		}
+
+		// Other taxa use their own labels
+		for (ResIterator iter = taxonOntology.listSubjectsWithProperty(RDFS.label); iter.hasNext();) {
+			Resource id = iter.nextResource();
+			if (!id.isURIResource() || labels.containsKey(id.getURI()))
+				continue;
+
+			List<Label> taxonLabels = new ArrayList<Label>();
+
+			for (NodeIterator verns = taxonOntology.listObjectsOfProperty(id, RDFS.label); verns.hasNext();) {
+				taxonLabels.add(toLabel(verns.next().asLiteral()));
+			}
+			labels.put(id.getURI(), taxonLabels.toArray(new Label[taxonLabels.size()]));
+		}
+	}
+
+	private static Label toLabel(Literal literal) {
+		return new Label(literal.getString(), literal.getLanguage());
+	}
+
+	/**
+	 * Get labels of a species.
+	 *
+	 * @param	species_uri		URI of the species
+	 * @return	labels, or null if species is not known
+	 */
+	public Label[] get(String species_uri) {
+		Label[] speciesLabels = labels.get(species_uri);
+
+		if (speciesLabels != null && speciesLabels.length > 0)
+			hits.incrementAndGet();
+		else
+			misses.incrementAndGet();
+
+		return speciesLabels;
+	}
+
+	public Integer size() {
+		return labels.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+}
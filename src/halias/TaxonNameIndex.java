@@ -0,0 +1,112 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import java.util.HashMap;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+ * Index of taxon names used for joining species lists to the taxon ontology.
+ *
+ * Built once from the taxon ontology, after which a taxon is found by name with a single hash lookup.
+ * Names are matched like plain literals in graph queries: only names without language tag match.
+ */
+public class TaxonNameIndex {
+
+	private HashMap<String, Resource> byVernacularName;
+	private HashMap<String, Resource> byLabel;
+
+	/**
+	 * Build index from taxon ontology.
+	 *
+	 * @param	taxonOntology	taxon ontology, with vernacular names
+	 */
+	public TaxonNameIndex(Model taxonOntology) {
+		byVernacularName = new HashMap<String, Resource>( 4096 );
+		byLabel = new HashMap<String, Resource>( 4096 );
+
+		Property vernacularName = taxonOntology.createProperty(HaliasDataProcessor.NS_TAXMEON, "vernacularName");
+		Property hasVernacularName = taxonOntology.createProperty(HaliasDataProcessor.NS_TAXMEON, "hasVernacularName");
+
+		// Taxa of vernacular name resources
+		HashMap<Resource, Resource> taxa = new HashMap<Resource, Resource>( 4096 );
+		for (StmtIterator iter = taxonOntology.listStatements(null, hasVernacularName, (RDFNode) null); iter.hasNext();) {
+			Statement statement = iter.nextStatement();
+			if (statement.getObject().isResource() && !taxa.containsKey(statement.getObject().asResource()))
+				taxa.put(statement.getObject().asResource(), statement.getSubject());
+		}
+
+		for (StmtIterator iter = taxonOntology.listStatements(null, vernacularName, (RDFNode) null); iter.hasNext();) {
+			Statement statement = iter.nextStatement();
+			Resource taxon = taxa.get(statement.getSubject());
+			String name = plainString(statement.getObject());
+			if (taxon != null && name != null && !byVernacularName.containsKey(name))
+				byVernacularName.put(name, taxon);
+		}
+
+		for (StmtIterator iter = taxonOntology.listStatements(null, RDFS.label, (RDFNode) null); iter.hasNext();) {
+			Statement statement = iter.nextStatement();
+			String label = plainString(statement.getObject());
+			if (label != null && !byLabel.containsKey(label))
+				byLabel.put(label, statement.getSubject());
+		}
+	}
+
+	/**
+	 * String of a literal without language tag, or null for other nodes.
+	 */
+	private static String plainString(RDFNode node) {
+		if (!node.isLiteral() || !node.asLiteral().getLanguage().isEmpty())
+			return null;
+		String datatype = node.asLiteral().getDatatypeURI();
+		if (datatype != null && !datatype.equals(XSDDatatype.XSDstring.getURI()))
+			return null;
+		return node.asLiteral().getLexicalForm();
+	}
+
+	/**
+	 * Get taxon of a vernacular name.
+	 *
+	 * @return	taxon, or null if no taxon has the vernacular name
+	 */
+	public Resource getByVernacularName(String name) {
+		return byVernacularName.get(name);
+	}
+
+	/**
+	 * Get resource with a label.
+	 *
+	 * @return	resource, or null if no resource has the label
+	 */
+	public Resource getByLabel(String label) {
+		return byLabel.get(label);
+	}
+}
@@ -0,0 +1,236 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+
+package halias;
+
+import halias.DailyWeather.WindInstance;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.ResourceFactory;
+
+/**
+ * Shared RDF terms of the Halias data: the schema vocabulary as constants, and caches of repeated literal nodes.
+ *
+ * Like the Jena vocabulary classes, terms are given as resources and properties for use with models, and as
+ * nodes in {@link Terms.Nodes} for use with graphs and streams. Literal nodes of small ints and of doubles with
+ * at most one decimal in the range of weather values are shared; other values get new nodes. A literal node
+ * equals the node of Model.createTypedLiteral of the same value.
+ */
+public class Terms {
+
+	/* Data cube vocabulary */
+	public static final Resource Observation = resource(HaliasDataProcessor.NS_QB + "Observation");
+	public static final Property dataSet = property(HaliasDataProcessor.NS_QB + "dataSet");
+
+	/* Observations */
+	public static final Property refTime = schemaProperty("refTime");
+	public static final Property observedSpecies = schemaProperty("observedSpecies");
+	public static final Property countLocal = schemaProperty("countLocal");
+	public static final Property countMigration = schemaProperty("countMigration");
+	public static final Property countAdditionalArea = schemaProperty("countAdditionalArea");
+	public static final Property countTotal = schemaProperty("countTotal");
+	public static final Property countStandardizedMigration = schemaProperty("countStandardizedMigration");
+	public static final Property nonsamplingErr = property(HaliasDataProcessor.NS_SDMX_A + "nonsamplingErr");
+	public static final Property weekOfYear = schemaProperty("weekOfYear");
+	public static final Property monthOfYear = schemaProperty("monthOfYear");
+
+	/* Taxa */
+	public static final Property hasConservationStatus2010 = schemaProperty("hasConservationStatus2010");
+	public static final Property isDirectiveSpecies = schemaProperty("isDirectiveSpecies");
+
+	/* Weather */
+	public static final Resource weatherDataset = resource(HaliasDataProcessor.NS_HALIAS_SCHEMA + "weatherDataset");
+	public static final Property observationTime = schemaProperty("observationTime");
+	public static final Property sunriseTime = schemaProperty("sunriseTime");
+	public static final Property sunsetTime = schemaProperty("sunsetTime");
+	public static final Property season = schemaProperty("season");
+	public static final Property standardTemperature = schemaProperty("standardTemperature");
+	public static final Property standardWind = schemaProperty("standardWind");
+	public static final Property standardCloudCover = schemaProperty("standardCloudCover");
+	public static final Property temperature = schemaProperty("temperature");
+	public static final Property temperatureDay = schemaProperty("temperatureDay");
+	public static final Property humidity = schemaProperty("humidity");
+	public static final Property airPressure = schemaProperty("airPressure");
+	public static final Property cloudCover = schemaProperty("cloudCover");
+	public static final Property rainfall = schemaProperty("rainfall");
+	public static final Property haliasObservationDay = schemaProperty("haliasObservationDay");
+
+	/* Winds */
+	public static final Resource WindObservation = resource(HaliasDataProcessor.NS_HALIAS_SCHEMA + "WindObservation");
+	public static final Property wind = schemaProperty("wind");
+	public static final Property windSpeed = schemaProperty("windSpeed");
+	public static final Property windDirection = schemaProperty("windDirection");
+	public static final Property windPreSunrise = schemaProperty("windPreSunrise");
+	public static final Property windPostSunset = schemaProperty("windPostSunset");
+	public static final Property windDay = schemaProperty("windDay");
+	public static final Resource windUnknown = resource(HaliasDataProcessor.NS_WINDS + "windUnknown");
+	public static final Resource windNull = resource(HaliasDataProcessor.NS_WINDS + null);
+
+	/**
+	 * The terms as nodes.
+	 */
+	public static class Nodes {
+		public static final Node Observation = Terms.Observation.asNode();
+		public static final Node dataSet = Terms.dataSet.asNode();
+
+		public static final Node refTime = Terms.refTime.asNode();
+		public static final Node observedSpecies = Terms.observedSpecies.asNode();
+		public static final Node countLocal = Terms.countLocal.asNode();
+		public static final Node countMigration = Terms.countMigration.asNode();
+		public static final Node countAdditionalArea = Terms.countAdditionalArea.asNode();
+		public static final Node countTotal = Terms.countTotal.asNode();
+		public static final Node countStandardizedMigration = Terms.countStandardizedMigration.asNode();
+		public static final Node nonsamplingErr = Terms.nonsamplingErr.asNode();
+		public static final Node weekOfYear = Terms.weekOfYear.asNode();
+		public static final Node monthOfYear = Terms.monthOfYear.asNode();
+
+		public static final Node weatherDataset = Terms.weatherDataset.asNode();
+		public static final Node observationTime = Terms.observationTime.asNode();
+		public static final Node sunriseTime = Terms.sunriseTime.asNode();
+		public static final Node sunsetTime = Terms.sunsetTime.asNode();
+		public static final Node season = Terms.season.asNode();
+		public static final Node standardTemperature = Terms.standardTemperature.asNode();
+		public static final Node standardWind = Terms.standardWind.asNode();
+		public static final Node standardCloudCover = Terms.standardCloudCover.asNode();
+		public static final Node temperature = Terms.temperature.asNode();
+		public static final Node temperatureDay = Terms.temperatureDay.asNode();
+		public static final Node humidity = Terms.humidity.asNode();
+		public static final Node airPressure = Terms.airPressure.asNode();
+		public static final Node cloudCover = Terms.cloudCover.asNode();
+		public static final Node rainfall = Terms.rainfall.asNode();
+		public static final Node haliasObservationDay = Terms.haliasObservationDay.asNode();
+
+		public static final Node wind = Terms.wind.asNode();
+		public static final Node windPreSunrise = Terms.windPreSunrise.asNode();
+		public static final Node windPostSunset = Terms.windPostSunset.asNode();
+		public static final Node windDay = Terms.windDay.asNode();
+		public static final Node windUnknown = Terms.windUnknown.asNode();
+		public static final Node windNull = Terms.windNull.asNode();
+
+		public static final Node TRUE = NodeFactory.createLiteral("true", null, XSDDatatype.XSDboolean);
+		public static final Node FALSE = NodeFactory.createLiteral("false", null, XSDDatatype.XSDboolean);
+	}
+
+	// Seasons by season number of EpochDay
+	private static final Node[] SEASONS = new Node[ EpochDay.SEASON_NAMES.length ];
+
+	// Wind instances by wind code
+	private static final Node[] WINDS = new Node[ WindInstance.CODES ];
+
+	// Cached literals: ints from INT_MIN to INT_MAX, and doubles in tenths from DOUBLE_MIN to DOUBLE_MAX
+	static final int INT_MIN = -128, INT_MAX = 1023;
+	static final int DOUBLE_MIN = -1000, DOUBLE_MAX = 11000;
+	private static final Node[] INTS = new Node[ INT_MAX - INT_MIN + 1 ];
+	private static final AtomicReferenceArray<Node> DOUBLES = new AtomicReferenceArray<Node>( DOUBLE_MAX - DOUBLE_MIN + 1 );
+	private static final Node DOUBLE_NAN = newDoubleLiteral(Double.NaN);
+
+	static {
+		for (int i = 0; i < SEASONS.length; i++)
+			SEASONS[ i ] = NodeFactory.createURI(HaliasDataProcessor.NS_HALIAS_SCHEMA + EpochDay.SEASON_NAMES[ i ]);
+		for (int code = 0; code < WINDS.length; code++)
+			WINDS[ code ] = NodeFactory.createURI(WindInstance.of(code).uri);
+		for (int i = 0; i < INTS.length; i++)
+			INTS[ i ] = NodeFactory.createLiteral(Integer.toString(INT_MIN + i), null, XSDDatatype.XSDint);
+	}
+
+	private Terms() {
+	}
+
+	private static Resource resource(String uri) {
+		return ResourceFactory.createResource(uri);
+	}
+
+	private static Property property(String uri) {
+		return ResourceFactory.createProperty(uri);
+	}
+
+	private static Property schemaProperty(String localName) {
+		return ResourceFactory.createProperty(HaliasDataProcessor.NS_HALIAS_SCHEMA, localName);
+	}
+
+	/**
+	 * Node of a season.
+	 *
+	 * @param	season	season number, as given by {@link EpochDay#season(int)}
+	 */
+	public static Node seasonNode(int season) {
+		return SEASONS[ season ];
+	}
+
+	/**
+	 * Node of a wind instance in the wind ontology.
+	 */
+	public static Node windNode(WindInstance wind) {
+		return WINDS[ wind.code ];
+	}
+
+	/**
+	 * Literal node of a boolean, as given by Model.createTypedLiteral(boolean).
+	 */
+	public static Node booleanLiteral(boolean value) {
+		return value ? Nodes.TRUE : Nodes.FALSE;
+	}
+
+	/**
+	 * Literal node of an int, as given by Model.createTypedLiteral(int).
+	 */
+	public static Node intLiteral(int value) {
+		if (value >= INT_MIN && value <= INT_MAX)
+			return INTS[ value - INT_MIN ];
+		return NodeFactory.createLiteral(Integer.toString(value), null, XSDDatatype.XSDint);
+	}
+
+	/**
+	 * Literal node of a double, as given by Model.createTypedLiteral(double).
+	 */
+	public static Node doubleLiteral(double value) {
+		if (value != value)
+			return DOUBLE_NAN;
+		double tenths = Math.rint(value * 10);
+		if (tenths < DOUBLE_MIN || tenths > DOUBLE_MAX)
+			return newDoubleLiteral(value);
+		// Only values written exactly as tenths, which also leaves out -0.0
+		int t = (int) tenths;
+		if (Double.doubleToRawLongBits(t / 10.0) != Double.doubleToRawLongBits(value))
+			return newDoubleLiteral(value);
+
+		int i = t - DOUBLE_MIN;
+		Node node = DOUBLES.get(i);
+		if (node == null) {
+			node = newDoubleLiteral(value);
+			if (!DOUBLES.compareAndSet(i, null, node))
+				node = DOUBLES.get(i);
+		}
+		return node;
+	}
+
+	private static Node newDoubleLiteral(double value) {
+		return NodeFactory.createLiteral(Double.toString(value), null, XSDDatatype.XSDdouble);
+	}
+}
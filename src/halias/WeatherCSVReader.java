@@ -0,0 +1,323 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+
+package halias;
+
+import halias.DailyWeather.WindInstance;
+
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel reader of FMI's weather files of several weather stations.
+ *
+ * Files are read on a fork-join pool. An observation file is memory mapped and split by byte range into parts of
+ * whole lines, and parts are moved forward to end at a change of day so that each day is in one part. Parts are
+ * read to stores of their own, which are merged in file order, so the result is the same as reading the file at once.
+ */
+public class WeatherCSVReader {
+
+	static final int PART_SIZE = 1 << 22;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ForkJoinPool pool;
+	private final int partSize;
+
+	public WeatherCSVReader(ForkJoinPool pool) {
+		this(pool, PART_SIZE);
+	}
+
+	/**
+	 * @param	pool		pool to read files on
+	 * @param	partSize	approximate size of file parts to read in parallel, in bytes
+	 */
+	public WeatherCSVReader(ForkJoinPool pool, int partSize) {
+		this.pool = pool;
+		this.partSize = partSize;
+	}
+
+	/**
+	 * Read weather files of stations to their weather data, all stations in parallel.
+	 */
+	public void read(List<WeatherStation> stations) {
+		List<StationTask> tasks = new ArrayList<StationTask>();
+		for (WeatherStation station : stations)
+			tasks.add(new StationTask(station.weather, station.weatherFile, station.rainFile));
+		pool.invoke(new StationsTask(tasks));
+	}
+
+	/**
+	 * Read weather files of one station to its weather data.
+	 */
+	public void read(WeatherData weather, String weather_file_name, String rain_file_name) {
+		pool.invoke(new StationTask(weather, weather_file_name, rain_file_name));
+	}
+
+	private static class StationsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<StationTask> tasks;
+
+		StationsTask(List<StationTask> tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(tasks);
+		}
+	}
+
+	/**
+	 * Store and winds read from a part of a file.
+	 */
+	private static class Part {
+		final WeatherStore store = new WeatherStore();
+		final Set<WindInstance> winds = new HashSet<WindInstance>();
+
+		void merge(Part other) {
+			store.merge(other.store);
+			winds.addAll(other.winds);
+		}
+	}
+
+	private class StationTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final WeatherData weather;
+		private final String weather_file_name, rain_file_name;
+
+		StationTask(WeatherData weather, String weather_file_name, String rain_file_name) {
+			this.weather = weather;
+			this.weather_file_name = weather_file_name;
+			this.rain_file_name = rain_file_name;
+		}
+
+		@Override
+		protected void compute() {
+			ByteBuffer bytes;
+			try {
+				bytes = map(weather_file_name);
+			} catch (IOException e) {
+				e.printStackTrace();
+				bytes = ByteBuffer.allocate(0);
+			}
+			int[] bounds = split(bytes, skipLines(bytes, 0, WeatherData.WEATHER_HEADER_LINES), partSize);
+
+			RainTask rain = new RainTask(rain_file_name);
+			rain.fork();
+			Part part = new PartTask(weather, bytes, bounds, 0, bounds.length - 1).compute();
+			part.store.merge(rain.join());
+
+			weather.setWeather(part.store, part.winds);
+		}
+	}
+
+	/**
+	 * Task reading the parts from..to-1 of an observation file, splitting the range in halves.
+	 */
+	private static class PartTask extends RecursiveTask<Part> {
+		private static final long serialVersionUID = 1L;
+
+		private final WeatherData weather;
+		private final ByteBuffer bytes;
+		private final int[] bounds;
+		private final int from, to;
+
+		PartTask(WeatherData weather, ByteBuffer bytes, int[] bounds, int from, int to) {
+			this.weather = weather;
+			this.bytes = bytes;
+			this.bounds = bounds;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Part compute() {
+			if (to - from <= 1) {
+				Part part = new Part();
+				if (to > from) {
+					try {
+						weather.readWeatherRows(tokenizer(bytes, bounds[ from ], bounds[ to ]), part.store, part.winds);
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+				return part;
+			}
+
+			int middle = (from + to) >>> 1;
+			PartTask right = new PartTask(weather, bytes, bounds, middle, to);
+			right.fork();
+			Part part = new PartTask(weather, bytes, bounds, from, middle).compute();
+			part.merge(right.join());
+			return part;
+		}
+	}
+
+	private static class RainTask extends RecursiveTask<WeatherStore> {
+		private static final long serialVersionUID = 1L;
+
+		private final String rain_file_name;
+
+		RainTask(String rain_file_name) {
+			this.rain_file_name = rain_file_name;
+		}
+
+		@Override
+		protected WeatherStore compute() {
+			WeatherStore store = new WeatherStore();
+			try {
+				ByteBuffer bytes = map(rain_file_name);
+				SemicolonTokenizer csv = tokenizer(bytes, 0, bytes.limit());
+				WeatherData.skipLines(csv, WeatherData.RAIN_HEADER_LINES);
+				WeatherData.readRainRows(csv, store);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return store;
+		}
+	}
+
+	/**
+	 * Memory map a file for reading.
+	 */
+	static ByteBuffer map(String file_name) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(new File(file_name), "r");
+		try {
+			return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Tokenizer of the lines from start to end of a file.
+	 */
+	static SemicolonTokenizer tokenizer(ByteBuffer bytes, int start, int end) {
+		ByteBuffer range = bytes.duplicate();
+		range.position(start);
+		range.limit(end);
+		CharBuffer chars = UTF8.decode(range);
+		return new SemicolonTokenizer(new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining()));
+	}
+
+	/**
+	 * Split lines from start to the end of a file to parts of about partSize bytes, each part ending at a change of day.
+	 *
+	 * @return	bounds of the parts, from start to the end of the file
+	 */
+	static int[] split(ByteBuffer bytes, int start, int partSize) {
+		List<Integer> bounds = new ArrayList<Integer>();
+		bounds.add(start);
+
+		int position = start;
+		while (bytes.limit() - position > partSize) {
+			int bound = nextLine(bytes, position + partSize - 1);
+			while (bound < bytes.limit() && sameDay(bytes, previousLine(bytes, bound), bound))
+				bound = nextLine(bytes, bound);
+			if (bound >= bytes.limit())
+				break;
+			bounds.add(bound);
+			position = bound;
+		}
+		bounds.add(bytes.limit());
+
+		int[] array = new int[ bounds.size() ];
+		for (int i = 0; i < array.length; i++)
+			array[ i ] = bounds.get(i);
+		return array;
+	}
+
+	/**
+	 * Position after the given number of lines from position.
+	 */
+	static int skipLines(ByteBuffer bytes, int position, int lines) {
+		for (int i = 0; i < lines && position < bytes.limit(); i++)
+			position = nextLine(bytes, position);
+		return position;
+	}
+
+	/**
+	 * Start of the line after the line at position. Lines end with "\n", "\r" or "\r\n".
+	 */
+	static int nextLine(ByteBuffer bytes, int position) {
+		while (position < bytes.limit()) {
+			byte b = bytes.get(position++);
+			if (b == '\n')
+				return position;
+			if (b == '\r') {
+				if (position < bytes.limit() && bytes.get(position) == '\n')
+					position++;
+				return position;
+			}
+		}
+		return position;
+	}
+
+	/**
+	 * Start of the line before the line starting at position.
+	 */
+	private static int previousLine(ByteBuffer bytes, int position) {
+		if (position > 0 && bytes.get(position - 1) == '\n')
+			position--;
+		if (position > 0 && bytes.get(position - 1) == '\r')
+			position--;
+		while (position > 0 && bytes.get(position - 1) != '\n' && bytes.get(position - 1) != '\r')
+			position--;
+		return position;
+	}
+
+	/**
+	 * Check if lines starting at a and b have the same date, the first three fields.
+	 */
+	private static boolean sameDay(ByteBuffer bytes, int a, int b) {
+		int separators = 0;
+		while (separators < 3) {
+			if (a >= bytes.limit() || b >= bytes.limit())
+				return false;
+			byte x = bytes.get(a++);
+			if (x != bytes.get(b++))
+				return false;
+			if (x == '\n' || x == '\r')
+				return false;
+			if (x == ';')
+				separators++;
+		}
+		return true;
+	}
+}
@@ -24,7 +24,7 @@ package halias;
 
 import halias.DailyWeather.WindInstance;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -36,10 +36,6 @@ import java.util.Calendar;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.TimeZone;
-
-import com.luckycatlabs.sunrisesunset.SunriseSunsetCalculator;
-import com.luckycatlabs.sunrisesunset.dto.Location;
 
 /**
  * Class for handling weather data with HALIAS-observations
@@ -48,12 +44,21 @@ import com.luckycatlabs.sunrisesunset.dto.Location;
  */
 public class WeatherData {
 	
-	private HashMap<String, DailyWeather> dailyWeathers;
+	private WeatherStore store;
 	public Set<WindInstance> windInstances = new HashSet<WindInstance>();
+	private final double latitude, longitude;
+	private DayLengthTable dayLengths;
+
+	// Location of Hanko
+	static final double LATITUDE = 59.81021528;
+	static final double LONGITUDE = 22.89485922;
+
+	// Header lines of FMI's observation and rainfall files
+	static final int WEATHER_HEADER_LINES = 16;
+	static final int RAIN_HEADER_LINES = 8;
 
-	private static final Integer _PRESUNRISE = 0;
-	private static final Integer _DAY = 1;
-	private static final Integer _POSTSUNSET = 2;
+	// Hours between the observation times of store slots
+	static final int HOURS_PER_SLOT = 24 / WeatherStore.SLOTS;
 
 	public static HashMap<Integer, String> windDirections;
 
@@ -99,6 +104,13 @@ public class WeatherData {
 		windDirections.put(360, "N");
 	}
 	
+	private static String[] windDirectionsByTens = new String[ 37 ];
+
+	static {
+		for (int angle = 0; angle <= 360; angle += 10)
+			windDirectionsByTens[ angle / 10 ] = windDirections.get( angle );
+	}
+	
 	public static String[] possibleWindDirections = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
 	
 	public class DayLength {
@@ -114,181 +126,83 @@ public class WeatherData {
 	}
 	
 	/**
-	 * WeatherData constructor.
+	 * WeatherData constructor, for weather observed in Hanko.
 	 */
 	public WeatherData() {
-		dailyWeathers = new HashMap<String, DailyWeather>( 15000 );		
+		this(LATITUDE, LONGITUDE);
+	}
+
+	/**
+	 * WeatherData constructor.
+	 * 
+	 * @param	latitude	latitude of the place of observation, for sunrise and sunset times
+	 * @param	longitude	longitude of the place of observation
+	 */
+	public WeatherData(double latitude, double longitude) {
+		this.latitude = latitude;
+		this.longitude = longitude;
+		store = new WeatherStore();
+		dayLengths = new DayLengthTable(latitude, longitude);
+	}
+
+	/**
+	 * Get columnar weather data of all days.
+	 */
+	public WeatherStore getWeatherStore() {
+		return store;
 	}
 
 	/**
 	 * Get all weather data for one day.
 	 * 
-	 * @param	day_index	getter for {@link DailyWeather}
-	 * @return	{@link DailyWeather}
+	 * @param	day_index	date as yyyy-MM-dd
+	 * @return	{@link DailyWeather} view of the day, or null if there is no weather data for the day
 	 */
 	public DailyWeather getDailyWeatherData(String day_index) {
-		return dailyWeathers.get( day_index );
+		int dayNumber = EpochDay.parse( day_index );
+		if ( !store.hasDay( dayNumber ) )
+			return null;
+		return new DailyWeather( store, dayNumber );
 	}
 
 
     /**
-     * Get all weather data for all days.
+     * Get all weather data for all days. Views are created for each call, so prefer {@link #getWeatherStore()}.
      *
      * @return	{@link HashMap }
      */
     public HashMap<String, DailyWeather> getDailyWeathers() {
+        HashMap<String, DailyWeather> dailyWeathers = new HashMap<String, DailyWeather>( store.size() * 2 );
+        for (int d = store.firstDay(); d <= store.lastDay(); d++) {
+            if ( store.hasDay( d ) )
+                dailyWeathers.put( EpochDay.toIsoString( d ), new DailyWeather( store, d ) );
+        }
         return dailyWeathers;
     }
 
 
     /**
-	 * Read weather data from files to class variable 'dailyWeathers'.
+	 * Read weather data from files to class variable 'store'.
+	 * 
+	 * Observations are expected to be 3-hourly, one row for each of the 8 observation times of a day. Rows at other
+	 * hours are skipped, see {@link #readWeatherRows(SemicolonTokenizer, WeatherStore, Set)}.
 	 * 
 	 * @param	weather_file_name	path to FMI's observation file
 	 * @param	rain_file_name		path to FMI's rainfall observation file
 	 */
 	public void readWeatherCSV( String weather_file_name, String rain_file_name ) {
-		InputStream		fis;
-		BufferedReader	br;
-		String			line;
-		String[]		strArr;
-		Integer			i = 0;
-		
-		String 			indx;
-		Double 			temp, pres;
-		Integer 		wind, clouds, humi;
-		String 			windDir;
-		
-		DailyWeather	thisWeather;
-		WindInstance	thisWind = null;
+		if ( store.isMapped() )
+			store = new WeatherStore();
 
+		InputStream			fis;
+		SemicolonTokenizer	csv;
+		
 		try {
 			fis = new FileInputStream( weather_file_name );
-			br = new BufferedReader(new InputStreamReader(fis, Charset.forName("UTF-8")));
+			csv = new SemicolonTokenizer(new InputStreamReader(fis, Charset.forName("UTF-8")));
 			try {
-				while ((line = br.readLine()) != null) {
-					
-					strArr=line.split(";");
-
-					if ( i < 16) {
-						// Skip header lines
-						i++;
-						continue;
-					}
-					
-					if ((strArr[1].length()) == 1 )
-						strArr[1] = "0" + strArr[1];
-					if ((strArr[2].length()) == 1 )
-						strArr[2] = "0" + strArr[2];
-					
-					indx = strArr[0] + "-" + strArr[1] + "-" + strArr[2];
-					
-					// Get sunrise and sunset times
-					Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-					cal.set( Integer.parseInt(strArr[0]), Integer.parseInt(strArr[1]) - 1, Integer.parseInt(strArr[2]));
-					
-					DayLength dayLen = getDayLength(cal);
-					
-					if ( !dailyWeathers.containsKey( indx )) {
-						dailyWeathers.put(indx, new DailyWeather());
-					}
-
-					thisWeather = dailyWeathers.get( indx );
-					
-					/* Air pressure */
-					if ( strArr.length > 9 && strArr[9].length() > 0 ) {
-						pres = Double.parseDouble( strArr[9] );
-						
-						thisWeather.pressureSum += pres;
-						thisWeather.pressureN += 1;
-					} else
-						pres = null;
-					
-					/* Humidity */
-					if ( strArr.length > 5 && strArr[ 5 ].length() > 0) {
-						humi = Integer.parseInt( strArr[ 5 ] );
-						
-						thisWeather.humiditySum += humi;
-						thisWeather.humidityN += 1;
-					} else
-						humi = null;
-					
-					/* Cloud cover */
-					if ( strArr.length > 10 && strArr[ 10 ].length() > 0 ) {
-						clouds = Integer.parseInt( strArr[ 10 ] );
-						
-						thisWeather.cloudCoverDaySum += clouds;
-						thisWeather.cloudCoverDayN += 1;
-					} else
-						clouds = null;
-					
-					if ( strArr.length > 3 && strArr[ 3 ].length() > 0 ) {
-						Integer hour = Integer.parseInt( strArr[ 3 ] );
-						
-						Integer timeOfDay;
-
-						// Check if we have a pre-sunrise observation
-						if (hour <= dayLen.sunriseH ) {
-							timeOfDay = _PRESUNRISE;								
-						// Check if we have a post-sunset observation
-						} else if (hour > dayLen.sunsetH || (hour == dayLen.sunsetH && dayLen.sunsetMin == 0)) {
-							timeOfDay = _POSTSUNSET;								
-						} else {
-							// We have a daytime observation
-							timeOfDay = _DAY;								
-						}
-						
-						/* Day and night temperature */
-						if (( strArr[ 4 ].length()) > 0 ) {
-							temp = Double.parseDouble( strArr[ 4 ] );
-							
-							// Check if we have a daytime observation (after or exactly at sunrise, before or exactly at sunset)
-							if (timeOfDay == _DAY) {
-								thisWeather.tempDaySum += temp;
-								thisWeather.tempDayN += 1;
-							}
-						} else
-							temp = null;
-						
-						/* Day and night wind speeds */
-						if ( strArr.length > 7 && strArr[7].length() > 0) {
-							wind = Integer.parseInt( strArr[7] );
-						} else
-							wind = null;
-
-						/* Wind Directions */
-						if ( strArr.length > 6 && strArr[6].length() > 0 ) {
-							// Convert wind angle to cardinal or half-cardinal direction
-							windDir = WeatherData.windDirections.get( Integer.parseInt( strArr[6] ));
-						} else
-							windDir = null;
-
-						if (wind != null && windDir != null) {
-							thisWind = new WindInstance(wind, windDir);
-							windInstances.add(thisWind);
-						} else
-							thisWind = null;
-
-						if (timeOfDay == _PRESUNRISE) {
-							thisWeather.windsPreSunrise.add(thisWind);
-						} else if (timeOfDay == _POSTSUNSET) {
-							thisWeather.windsPostSunset.add(thisWind);
-						} else {
-							thisWeather.windsDay.add(thisWind);
-						}
-						
-						/* Memorize single observations */
-                        hour = ( hour / 3 );
-
-                        thisWeather.weatherObservation[ hour ].temperature = temp;
-                        thisWeather.weatherObservation[ hour ].humidity = humi;
-                        thisWeather.weatherObservation[ hour ].pressure = pres;
-                        thisWeather.weatherObservation[ hour ].cloudCover = clouds;
-                        if (thisWind != null)
-                            thisWeather.weatherObservation[ hour ].wind = thisWind;
-					}
-					i++;
-				}
+				skipLines( csv, WEATHER_HEADER_LINES );
+				readWeatherRows( csv, store, windInstances );
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -296,38 +210,13 @@ public class WeatherData {
 			e.printStackTrace();
 		}
 
-		i = 0;
-		Double rain;
-		
 		/* Get daily rainfall */
 		try {
 			fis = new FileInputStream(rain_file_name);
-			br = new BufferedReader(new InputStreamReader(fis, Charset.forName("UTF-8")));
+			csv = new SemicolonTokenizer(new InputStreamReader(fis, Charset.forName("UTF-8")));
 			try {
-				while ((line = br.readLine()) != null) {
-					strArr=line.split(";");
-
-					if ( i > 7) {
-						if (( strArr[1].length() )== 1 )
-							strArr[1] = "0" + strArr[1];
-						if (( strArr[2].length() )== 1 )
-							strArr[2] = "0" + strArr[2];
-						
-						indx = strArr[ 0 ] + "-" + strArr[ 1 ] + "-" + strArr[ 2 ]; 
-
-						if ( !dailyWeathers.containsKey( indx )) {
-							dailyWeathers.put(indx, new DailyWeather());
-						}
-						
-						/* Rainfall */
-						if ( strArr.length > 3 && strArr[ 3 ].length() > 0 ) {
-							rain = Double.parseDouble( strArr[ 3 ] );
-							
-							dailyWeathers.get( indx ).rainfall = rain;
-						}
-					}
-					i++;
-				}
+				skipLines( csv, RAIN_HEADER_LINES );
+				readRainRows( csv, store );
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -336,27 +225,344 @@ public class WeatherData {
 		}	
 	}
 
+	static void skipLines( SemicolonTokenizer csv, int lines ) throws IOException {
+		for (int i = 0; i < lines && csv.nextLine(); i++)
+			;
+	}
+
+	/**
+	 * Read rows of FMI's observation file after the header lines to a store. Rows of a day are expected to be
+	 * consecutive, so the rows may be read in parts that each have whole days. The store has a slot for each of the
+	 * {@link WeatherStore#SLOTS} observation times 00:00, 03:00, ..., 21:00, so rows at other hours, e.g. of hourly
+	 * data, are skipped instead of being filed into the slot of another time and counted in the daily aggregates.
+	 * 
+	 * @param	csv		observation file rows
+	 * @param	store	store to add the observations to
+	 * @param	winds	set to add the winds of the observations to
+	 */
+	void readWeatherRows( SemicolonTokenizer csv, WeatherStore store, Set<WindInstance> winds ) throws IOException {
+		double 			temp, pres;
+		int 			wind, clouds, humi;
+		String 			windDir;
+		int				year, month, day;
+		int				prevYear = 0, prevMonth = 0, prevDay = 0;
+		
+		int				dayNumber = 0;
+		boolean			firstRow = true;
+		DayLength		dayLen = null;
+		int				thisWind;
+		int				skipped = 0;
+
+		while (csv.nextLine()) {
+			
+			year = csv.parseInt( 0 );
+			month = csv.parseInt( 1 );
+			day = csv.parseInt( 2 );
+
+			if ( !csv.isEmpty( 3 ) && !isObservationHour( csv.parseInt( 3 ) ) ) {
+				skipped++;
+				continue;
+			}
+			
+			// Rows of a day are consecutive, so day index and sunrise and sunset times change only with the day
+			if ( firstRow || year != prevYear || month != prevMonth || day != prevDay ) {
+				dayNumber = EpochDay.of( year, month, day );
+				
+				// Get sunrise and sunset times
+				dayLen = getDayLength( year, month, day );
+				
+				store.addDay( dayNumber );
+				
+				firstRow = false;
+				prevYear = year;
+				prevMonth = month;
+				prevDay = day;
+			}
+			
+			/* Air pressure */
+			boolean hasPres = !csv.isEmpty( 9 );
+			if ( hasPres ) {
+				pres = csv.parseDouble( 9 );
+				
+				store.addPressure( dayNumber, pres );
+			} else
+				pres = Double.NaN;
+			
+			/* Humidity */
+			boolean hasHumi = !csv.isEmpty( 5 );
+			if ( hasHumi ) {
+				humi = csv.parseInt( 5 );
+				
+				store.addHumidity( dayNumber, humi );
+			} else
+				humi = 0;
+			
+			/* Cloud cover */
+			boolean hasClouds = !csv.isEmpty( 10 );
+			if ( hasClouds ) {
+				clouds = csv.parseInt( 10 );
+				
+				store.addCloudCover( dayNumber, clouds );
+			} else
+				clouds = 0;
+			
+			if ( !csv.isEmpty( 3 ) ) {
+				int hour = csv.parseInt( 3 );
+				
+				byte timeOfDay;
+
+				// Check if we have a pre-sunrise observation
+				if (hour <= dayLen.sunriseH ) {
+					timeOfDay = WeatherStore.PRESUNRISE;
+				// Check if we have a post-sunset observation
+				} else if (hour > dayLen.sunsetH || (hour == dayLen.sunsetH && dayLen.sunsetMin == 0)) {
+					timeOfDay = WeatherStore.POSTSUNSET;
+				} else {
+					// We have a daytime observation
+					timeOfDay = WeatherStore.DAY;
+				}
+				
+				/* Day and night temperature */
+				boolean hasTemp = !csv.isEmpty( 4 );
+				if ( hasTemp ) {
+					temp = csv.parseDouble( 4 );
+					
+					// Check if we have a daytime observation (after or exactly at sunrise, before or exactly at sunset)
+					if (timeOfDay == WeatherStore.DAY) {
+						store.addDaytimeTemperature( dayNumber, temp );
+					}
+				} else
+					temp = Double.NaN;
+				
+				/* Day and night wind speeds */
+				boolean hasWind = !csv.isEmpty( 7 );
+				wind = hasWind ? csv.parseInt( 7 ) : 0;
+
+				/* Wind Directions */
+				if ( !csv.isEmpty( 6 ) ) {
+					// Convert wind angle to cardinal or half-cardinal direction
+					windDir = windDirection( csv.parseInt( 6 ));
+				} else
+					windDir = null;
+
+				// Winds of impossible speeds are taken as missing instead of failing the whole file
+				if (hasWind && (wind < 0 || wind > WindInstance.MAX_SPEED)) {
+					System.out.println( "- IGNORING WIND SPEED " + wind + " OF " + year + "-" + month + "-" + day + " " + hour + ":00 -" );
+					hasWind = false;
+				}
+
+				if (hasWind && windDir != null) {
+					thisWind = WeatherStore.windCode(wind, windDir);
+					winds.add(store.windInstance(thisWind));
+				} else
+					thisWind = WeatherStore.NO_WIND;
+
+				/* Memorize single observations, with the time of day for listing winds */
+				store.setObservation( dayNumber, hour / HOURS_PER_SLOT, timeOfDay, temp, pres,
+						hasClouds ? clouds : Double.NaN, hasHumi ? humi : Double.NaN, thisWind );
+			}
+		}
+		if ( skipped > 0 )
+			System.out.println( "- SKIPPED " + skipped + " WEATHER ROWS NOT AT 3-HOURLY OBSERVATION TIMES -" );
+	}
+
+	/**
+	 * Check if an hour is one of the observation times of the store slots, 00:00, 03:00, ..., 21:00.
+	 */
+	static boolean isObservationHour( int hour ) {
+		return hour >= 0 && hour < 24 && hour % HOURS_PER_SLOT == 0;
+	}
+
+	/**
+	 * Read rows of FMI's rainfall observation file after the header lines to a store.
+	 */
+	static void readRainRows( SemicolonTokenizer csv, WeatherStore store ) throws IOException {
+		while (csv.nextLine()) {
+			int dayNumber = EpochDay.of( csv.parseInt( 0 ), csv.parseInt( 1 ), csv.parseInt( 2 ) );
+
+			store.addDay( dayNumber );
+			
+			/* Rainfall */
+			if ( !csv.isEmpty( 3 ) ) {
+				store.setRainfall( dayNumber, csv.parseDouble( 3 ) );
+			}
+		}
+	}
+
+	/**
+	 * Location of the place of observation as a string, e.g. for fingerprinting data that depends on the location.
+	 */
+	public String location() {
+		return latitude + ";" + longitude;
+	}
+
+	/**
+	 * Fingerprint of the sources of a weather store: the weather files, the location, which the time of day of
+	 * observations depends on, and the code version.
+	 */
+	public String storeFingerprint( BuildManifest manifest, String weather_file_name, String rain_file_name ) {
+		return manifest.settingsFingerprint( location(), weather_file_name, rain_file_name );
+	}
+
+	/**
+	 * Read weather data from a weather store file, which is memory mapped instead of loaded to the heap.
+	 * The store file is first imported from the weather files if it does not exist or was imported from other sources.
+	 * 
+	 * @param	store_file_name		weather store file, see {@link WeatherStore#map(String)}
+	 * @param	weather_file_name	path to FMI's observation file
+	 * @param	rain_file_name		path to FMI's rainfall observation file
+	 * @param	manifest			build manifest for fingerprinting the sources of the store
+	 */
+	public void readWeatherStore( String store_file_name, String weather_file_name, String rain_file_name, BuildManifest manifest ) {
+		String source = storeFingerprint( manifest, weather_file_name, rain_file_name );
+		if ( !isStoreUpToDate( store_file_name, source ) ) {
+			importWeatherCSV( weather_file_name, rain_file_name, store_file_name, source );
+			return;
+		}
+
+		try {
+			mapWeatherStore( store_file_name );
+		} catch (IOException e) {
+			e.printStackTrace();
+			importWeatherCSV( weather_file_name, rain_file_name, store_file_name, source );
+		}
+	}
+
+	/**
+	 * Check if a weather store file exists and was imported from sources with the given fingerprint.
+	 */
+	static boolean isStoreUpToDate( String store_file_name, String source ) {
+		return source.equals( WeatherStore.readSource( store_file_name ) );
+	}
+
+	/**
+	 * Use weather data read elsewhere, e.g. by {@link WeatherCSVReader}.
+	 */
+	void setWeather( WeatherStore store, Set<WindInstance> winds ) {
+		this.store = store;
+		windInstances.clear();
+		windInstances.addAll( winds );
+	}
+
+	/**
+	 * Read weather data from weather files and save it as a weather store file for later runs.
+	 * The read data stays on the heap for this run.
+	 */
+	public void importWeatherCSV( String weather_file_name, String rain_file_name, String store_file_name, String source ) {
+		store = new WeatherStore();
+		windInstances.clear();
+		readWeatherCSV( weather_file_name, rain_file_name );
+		try {
+			store.save( store_file_name, source );
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Use a memory mapped weather store file as weather data.
+	 */
+	public void mapWeatherStore( String store_file_name ) throws IOException {
+		WeatherStore mapped = WeatherStore.map( store_file_name );
+
+		// Winds of the store, checking each wind code once
+		boolean[] seen = new boolean[ WindInstance.CODES ];
+		windInstances.clear();
+		for (int i = 0; i < mapped.wind.limit(); i++) {
+			int code = mapped.wind.get( i );
+			if ( code != WeatherStore.NO_WIND && !seen[ code ] ) {
+				seen[ code ] = true;
+				windInstances.add( WindInstance.of( code ) );
+			}
+		}
+		store = mapped;
+	}
+
+	/**
+	 * Build day index yyyy-MM-dd used as date of daily weathers, padding month and day with zeros.
+	 */
+	static String dayIndex(int year, int month, int day) {
+		char[] chars = new char[ 16 ];
+		int n = 0;
+
+		String yearString = Integer.toString( year );
+		for (int c = 0; c < yearString.length(); c++)
+			chars[ n++ ] = yearString.charAt( c );
+
+		chars[ n++ ] = '-';
+		chars[ n++ ] = (char) ('0' + month / 10);
+		chars[ n++ ] = (char) ('0' + month % 10);
+		chars[ n++ ] = '-';
+		chars[ n++ ] = (char) ('0' + day / 10);
+		chars[ n++ ] = (char) ('0' + day % 10);
+
+		return new String( chars, 0, n );
+	}
+
+	/**
+	 * Convert wind angle to cardinal or half-cardinal direction.
+	 *
+	 * @param	angle	wind angle in degrees, in steps of 10
+	 * @return	direction, or null for unknown angle
+	 */
+	static String windDirection(int angle) {
+		if (angle < 0 || angle > 360 || angle % 10 != 0)
+			return null;
+		return windDirectionsByTens[ angle / 10 ];
+	}
+
     /**
          *
          * @param date date for which to generate sunrise and sunset times
          * @return sunrise and sunset times in UTC (!!)
          */
 	public DayLength getDayLength(Calendar date){
-		Location hanko = new Location(59.81021528, 22.89485922);
-    	SunriseSunsetCalculator separi = new SunriseSunsetCalculator(hanko, "UTC");
-    	
-    	String sunRise = separi.getOfficialSunriseForDate( date );
-    	String sunSet = separi.getOfficialSunsetForDate( date );
-		
-		Integer sunriseH = Integer.parseInt( sunRise.split(":")[ 0 ] );
-		Integer sunriseMIN = Integer.parseInt( sunRise.split(":")[ 1 ] );
-		
-		Integer sunsetH = Integer.parseInt( sunSet.split(":")[ 0 ] );
-		Integer sunsetMIN = Integer.parseInt( sunSet.split(":")[ 1 ] );
+		return getDayLength(date.get(Calendar.YEAR), date.get(Calendar.MONTH) + 1, date.get(Calendar.DAY_OF_MONTH));
+	}
+
+	/**
+	 * Get sunrise and sunset times from memoized table, calculating them only once per date.
+	 * 
+	 * @param	year	year
+	 * @param	month	month (1-12)
+	 * @param	day		day of month
+	 * @return	sunrise and sunset times in UTC
+	 */
+	public DayLength getDayLength(int year, int month, int day) {
+		int packed = dayLengths.get( EpochDay.of(year, month, day) );
 		
-		//System.out.println( "------ " + sunriseH + ":" + sunriseMIN + " -------" + sunsetH + ":" + sunsetMIN );
+		int sunrise = DayLengthTable.sunriseMinutes( packed );
+		int sunset = DayLengthTable.sunsetMinutes( packed );
 		
-		return new DayLength(sunriseH, sunriseMIN, sunsetH, sunsetMIN);
+		return new DayLength(sunrise / 60, sunrise % 60, sunset / 60, sunset % 60);
+	}
+
+	/**
+	 * Read memoized sunrise and sunset times from file, if it exists and has been created for the same location.
+	 * 
+	 * @param	file_name	file written by {@link #writeDayLengthCache(String)}
+	 */
+	public void readDayLengthCache(String file_name) {
+		if (!new File(file_name).exists())
+			return;
 		
+		try {
+			DayLengthTable table = DayLengthTable.load(file_name);
+			if (table.isForLocation(latitude, longitude))
+				dayLengths = table;
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write memoized sunrise and sunset times to file.
+	 */
+	public void writeDayLengthCache(String file_name) {
+		try {
+			dayLengths.save(file_name);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 }
@@ -0,0 +1,160 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+
+package halias;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Weather station with its FMI weather files, the namespace of its weather cube and its weather data.
+ */
+public class WeatherStation {
+
+	public final String name;
+	public final String namespace;
+	public final String weatherFile, rainFile;
+	public final WeatherData weather;
+
+	/**
+	 * @param	name		name of the station, used in file names and as the prefix of the namespace
+	 * @param	namespace	namespace of the weather cube observations
+	 * @param	weatherFile	path to FMI's observation file
+	 * @param	rainFile	path to FMI's rainfall observation file
+	 * @param	weather		weather data of the station, for its location
+	 */
+	public WeatherStation(String name, String namespace, String weatherFile, String rainFile, WeatherData weather) {
+		this.name = name;
+		this.namespace = namespace;
+		this.weatherFile = weatherFile;
+		this.rainFile = rainFile;
+		this.weather = weather;
+	}
+
+	public WeatherStation(String name, double latitude, double longitude, String namespace, String weatherFile, String rainFile) {
+		this(name, namespace, weatherFile, rainFile, new WeatherData(latitude, longitude));
+	}
+
+	/**
+	 * Definition of the station as a string: its name, location and namespace, for fingerprinting its weather cube.
+	 */
+	public String definition() {
+		return name + ";" + weather.location() + ";" + namespace;
+	}
+
+	/**
+	 * Weather store file of the station, see {@link WeatherData#readWeatherStore(String, String, String, BuildManifest)}.
+	 */
+	public String storeFile(String directory) {
+		return directory + name + "_weather.store";
+	}
+
+	/**
+	 * Read stations from a semicolon separated file, one station per line:
+	 * name;latitude;longitude;namespace;observation file;rainfall file.
+	 * Empty lines and lines starting with # are skipped. File paths are relative to the directory of the stations file.
+	 * Station names must be distinct, see {@link #checkNames(List)}.
+	 */
+	public static List<WeatherStation> readStations(String file_name) throws IOException {
+		List<WeatherStation> stations = new ArrayList<WeatherStation>();
+		File directory = new File(file_name).getAbsoluteFile().getParentFile();
+
+		InputStream in = new FileInputStream(file_name);
+		try {
+			SemicolonTokenizer csv = new SemicolonTokenizer(new InputStreamReader(in, Charset.forName("UTF-8")));
+			while (csv.nextLine()) {
+				if (csv.isEmpty(0) || csv.getString(0).startsWith("#"))
+					continue;
+				if (csv.fieldCount() < 6)
+					throw new IOException("Expected 6 fields in station " + csv.getString(0) + " of " + file_name);
+				stations.add(new WeatherStation(csv.getString(0), csv.parseDouble(1), csv.parseDouble(2), csv.getString(3),
+						path(directory, csv.getString(4)), path(directory, csv.getString(5))));
+			}
+		} finally {
+			in.close();
+		}
+		checkNames(stations);
+		return stations;
+	}
+
+	/**
+	 * Check that stations have distinct names, as their weather store and weather cube files are named by them.
+	 */
+	public static void checkNames(List<WeatherStation> stations) throws IOException {
+		Set<String> names = new HashSet<String>();
+		for (WeatherStation station : stations) {
+			if (!names.add(station.name))
+				throw new IOException("Duplicate weather station " + station.name);
+		}
+	}
+
+	private static String path(File directory, String file_name) {
+		File file = new File(file_name);
+		return file.isAbsolute() ? file.getPath() : new File(directory, file_name).getPath();
+	}
+
+	/**
+	 * Read weather data of stations. Stations with an up to date weather store file in the store directory use the
+	 * memory mapped store file, and the weather files of the others are read in parallel and saved as store files.
+	 * A store file is up to date if it was imported from the current weather files and location of the station
+	 * with the current code, see {@link WeatherData#storeFingerprint(BuildManifest, String, String)}.
+	 */
+	public static void readWeather(List<WeatherStation> stations, String store_directory, BuildManifest manifest, ForkJoinPool pool) {
+		List<WeatherStation> stale = new ArrayList<WeatherStation>();
+		List<String> staleSources = new ArrayList<String>();
+		for (WeatherStation station : stations) {
+			String store = station.storeFile(store_directory);
+			String source = station.weather.storeFingerprint(manifest, station.weatherFile, station.rainFile);
+			if (WeatherData.isStoreUpToDate(store, source)) {
+				try {
+					station.weather.mapWeatherStore(store);
+					continue;
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			stale.add(station);
+			staleSources.add(source);
+		}
+
+		new WeatherCSVReader(pool).read(stale);
+
+		for (int i = 0; i < stale.size(); i++) {
+			WeatherStation station = stale.get(i);
+			try {
+				station.weather.getWeatherStore().save(station.storeFile(store_directory), staleSources.get(i));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,650 @@
+/*
+        Copyright (c) 2014 Mikko Koho
+
+        Licensed under the MIT License (MIT).
+
+        Permission is hereby granted, free of charge, to any person obtaining a copy
+        of this software and associated documentation files (the "Software"), to deal
+        in the Software without restriction, including without limitation the rights
+        to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+        copies of the Software, and to permit persons to whom the Software is
+        furnished to do so, subject to the following conditions:
+        The above copyright notice and this permission notice shall be included in all
+        copies or substantial portions of the Software.
+        THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+        IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+        FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+        AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+        LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+        OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+        SOFTWARE.
+*/
+
+package halias;
+
+import halias.DailyWeather.MorningWeather;
+import halias.DailyWeather.WindInstance;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Columnar storage of weather data of one place of observation.
+ *
+ * Days are identified by day number (days since 1970-01-01). Observations of the 8 daily observation times
+ * (00:00, 03:00, ..., 21:00) are kept in primitive columns indexed by (day * 8 + slot), with NaN for missing values.
+ * Winds are kept as wind codes of {@link WindInstance}, with {@link #NO_WIND} for missing winds.
+ *
+ * Columns are buffers, on the heap while the store is filled from weather files. A filled store can be saved to a
+ * file with {@link #save(String, String)} and opened again with {@link #map(String)}, which reads the columns straight from
+ * the memory mapped file without loading them to the heap. The file records a fingerprint of the sources the store
+ * was filled from, so that a store of changed sources is not taken as up to date.
+ */
+public class WeatherStore {
+
+	public static final int SLOTS = 8;
+	public static final int NO_WIND = -1;
+
+	public static final byte PRESUNRISE = 0;
+	public static final byte DAY = 1;
+	public static final byte POSTSUNSET = 2;
+	public static final byte NO_OBSERVATION = -1;
+
+	private static final int MAGIC = 0x48575354;		// "HWST"
+	private static final int VERSION = 2;
+	private static final int SOURCE_SIZE = 40;			// Hex SHA-1 fingerprint, see BuildManifest
+	private static final int HEADER_SIZE = 24 + SOURCE_SIZE;
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	private int firstDay;
+	private int capacity;
+	private int lastDay;
+	private boolean mapped;
+	private String source;
+
+	private ByteBuffer present;
+
+	// Observations by (day * 8 + slot)
+	DoubleBuffer temperature, pressure, humidity, cloudCover;
+	IntBuffer wind;
+	ByteBuffer timeOfDay;
+
+	// Aggregates by day
+	DoubleBuffer tempDaySum, pressureSum, rainfall;
+	IntBuffer tempDayN, pressureN, humiditySum, humidityN, cloudCoverDaySum, cloudCoverDayN;
+
+	public WeatherStore() {
+		firstDay = 0;
+		lastDay = -1;
+		capacity = 0;
+
+		present = ByteBuffer.allocate( 0 );
+		temperature = pressure = humidity = cloudCover = DoubleBuffer.allocate( 0 );
+		wind = IntBuffer.allocate( 0 );
+		timeOfDay = ByteBuffer.allocate( 0 );
+		tempDaySum = pressureSum = rainfall = DoubleBuffer.allocate( 0 );
+		tempDayN = pressureN = humiditySum = humidityN = cloudCoverDaySum = cloudCoverDayN = IntBuffer.allocate( 0 );
+	}
+
+	/**
+	 * Add a day to store, if it does not exist yet.
+	 *
+	 * @param	dayNumber	days since 1970-01-01
+	 */
+	public void addDay(int dayNumber) {
+		if (mapped)
+			throw new UnsupportedOperationException("Weather store mapped from file is read only");
+
+		if (capacity == 0) {
+			firstDay = dayNumber;
+			lastDay = dayNumber;
+			grow(dayNumber, 366);
+		} else if (dayNumber < firstDay || dayNumber >= firstDay + capacity) {
+			// Grow by at least a year to avoid copying on every new day
+			int newFirstDay = Math.min(dayNumber, firstDay);
+			int newLastDay = Math.max(dayNumber, firstDay + capacity - 1);
+			grow(newFirstDay, newLastDay - newFirstDay + 1 + 366);
+		}
+
+		present.put(dayNumber - firstDay, (byte) 1);
+		if (dayNumber > lastDay)
+			lastDay = dayNumber;
+	}
+
+	/**
+	 * Reallocate columns to cover days from newFirstDay onward, moving existing data.
+	 */
+	private void grow(int newFirstDay, int newCapacity) {
+		int shift = firstDay - newFirstDay;
+
+		present = moved(present, newCapacity, shift, (byte) 0);
+
+		temperature = moved(temperature, newCapacity * SLOTS, shift * SLOTS, Double.NaN);
+		pressure = moved(pressure, newCapacity * SLOTS, shift * SLOTS, Double.NaN);
+		humidity = moved(humidity, newCapacity * SLOTS, shift * SLOTS, Double.NaN);
+		cloudCover = moved(cloudCover, newCapacity * SLOTS, shift * SLOTS, Double.NaN);
+		wind = moved(wind, newCapacity * SLOTS, shift * SLOTS, NO_WIND);
+		timeOfDay = moved(timeOfDay, newCapacity * SLOTS, shift * SLOTS, NO_OBSERVATION);
+
+		tempDaySum = moved(tempDaySum, newCapacity, shift, 0.0);
+		pressureSum = moved(pressureSum, newCapacity, shift, 0.0);
+		rainfall = moved(rainfall, newCapacity, shift, Double.NaN);
+		tempDayN = moved(tempDayN, newCapacity, shift, 0);
+		pressureN = moved(pressureN, newCapacity, shift, 0);
+		humiditySum = moved(humiditySum, newCapacity, shift, 0);
+		humidityN = moved(humidityN, newCapacity, shift, 0);
+		cloudCoverDaySum = moved(cloudCoverDaySum, newCapacity, shift, 0);
+		cloudCoverDayN = moved(cloudCoverDayN, newCapacity, shift, 0);
+
+		firstDay = newFirstDay;
+		capacity = newCapacity;
+	}
+
+	private static DoubleBuffer moved(DoubleBuffer old, int length, int shift, double fill) {
+		double[] array = new double[ length ];
+		Arrays.fill(array, fill);
+		System.arraycopy(old.array(), 0, array, shift, old.capacity());
+		return DoubleBuffer.wrap(array);
+	}
+
+	private static IntBuffer moved(IntBuffer old, int length, int shift, int fill) {
+		int[] array = new int[ length ];
+		Arrays.fill(array, fill);
+		System.arraycopy(old.array(), 0, array, shift, old.capacity());
+		return IntBuffer.wrap(array);
+	}
+
+	private static ByteBuffer moved(ByteBuffer old, int length, int shift, byte fill) {
+		byte[] array = new byte[ length ];
+		Arrays.fill(array, fill);
+		System.arraycopy(old.array(), 0, array, shift, old.capacity());
+		return ByteBuffer.wrap(array);
+	}
+
+	public boolean hasDay(int dayNumber) {
+		return dayNumber >= firstDay && dayNumber <= lastDay && present.get(dayNumber - firstDay) != 0;
+	}
+
+	/**
+	 * First day in store. Days from {@link #firstDay()} to {@link #lastDay()} may have gaps, see {@link #hasDay(int)}.
+	 */
+	public int firstDay() {
+		return firstDay;
+	}
+
+	public int lastDay() {
+		return lastDay;
+	}
+
+	/**
+	 * Number of days in store.
+	 */
+	public int size() {
+		int n = 0;
+		for (int day = firstDay; day <= lastDay; day++) {
+			if (hasDay(day))
+				n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Check if the store is read from a memory mapped file.
+	 */
+	public boolean isMapped() {
+		return mapped;
+	}
+
+	/**
+	 * Index of a day's aggregates in the day columns. Only valid until the next {@link #addDay(int)}.
+	 */
+	public int dayIndex(int dayNumber) {
+		return dayNumber - firstDay;
+	}
+
+	/**
+	 * Index of a day's first observation in the observation columns. Only valid until the next {@link #addDay(int)}.
+	 */
+	public int slotIndex(int dayNumber) {
+		return (dayNumber - firstDay) * SLOTS;
+	}
+
+	/* Writing, used when reading weather files */
+
+	public void addPressure(int dayNumber, double value) {
+		int i = dayIndex(dayNumber);
+		pressureSum.put(i, pressureSum.get(i) + value);
+		pressureN.put(i, pressureN.get(i) + 1);
+	}
+
+	public void addHumidity(int dayNumber, int value) {
+		int i = dayIndex(dayNumber);
+		humiditySum.put(i, humiditySum.get(i) + value);
+		humidityN.put(i, humidityN.get(i) + 1);
+	}
+
+	public void addCloudCover(int dayNumber, int value) {
+		int i = dayIndex(dayNumber);
+		cloudCoverDaySum.put(i, cloudCoverDaySum.get(i) + value);
+		cloudCoverDayN.put(i, cloudCoverDayN.get(i) + 1);
+	}
+
+	public void addDaytimeTemperature(int dayNumber, double value) {
+		int i = dayIndex(dayNumber);
+		tempDaySum.put(i, tempDaySum.get(i) + value);
+		tempDayN.put(i, tempDayN.get(i) + 1);
+	}
+
+	public void setRainfall(int dayNumber, double value) {
+		rainfall.put(dayIndex(dayNumber), value);
+	}
+
+	/**
+	 * Set observations of one observation time. Missing values are given as NaN or {@link #NO_WIND}.
+	 */
+	public void setObservation(int dayNumber, int slot, byte time_of_day, double temp, double pres, double clouds, double humi, int windCode) {
+		int i = slotIndex(dayNumber) + slot;
+		timeOfDay.put(i, time_of_day);
+		temperature.put(i, temp);
+		pressure.put(i, pres);
+		cloudCover.put(i, clouds);
+		humidity.put(i, humi);
+		if (windCode != NO_WIND)
+			wind.put(i, windCode);
+	}
+
+	/**
+	 * Add days of another store, e.g. one filled from another part of the same weather file. Daily sums of days in
+	 * both stores are added up, and observations and rainfall found in the other store replace those of this store.
+	 */
+	public void merge(WeatherStore other) {
+		if (other.lastDay < other.firstDay)
+			return;
+
+		// Grow once to cover both ends of the other store
+		addDay(other.firstDay);
+		addDay(other.lastDay);
+
+		for (int day = other.firstDay; day <= other.lastDay; day++) {
+			if (!other.hasDay(day))
+				continue;
+			addDay(day);
+
+			int i = dayIndex(day), j = other.dayIndex(day);
+			tempDaySum.put(i, tempDaySum.get(i) + other.tempDaySum.get(j));
+			tempDayN.put(i, tempDayN.get(i) + other.tempDayN.get(j));
+			pressureSum.put(i, pressureSum.get(i) + other.pressureSum.get(j));
+			pressureN.put(i, pressureN.get(i) + other.pressureN.get(j));
+			humiditySum.put(i, humiditySum.get(i) + other.humiditySum.get(j));
+			humidityN.put(i, humidityN.get(i) + other.humidityN.get(j));
+			cloudCoverDaySum.put(i, cloudCoverDaySum.get(i) + other.cloudCoverDaySum.get(j));
+			cloudCoverDayN.put(i, cloudCoverDayN.get(i) + other.cloudCoverDayN.get(j));
+			if (!Double.isNaN(other.rainfall.get(j)))
+				rainfall.put(i, other.rainfall.get(j));
+
+			int s = slotIndex(day), t = other.slotIndex(day);
+			for (int slot = 0; slot < SLOTS; slot++) {
+				if (other.timeOfDay.get(t + slot) != NO_OBSERVATION) {
+					timeOfDay.put(s + slot, other.timeOfDay.get(t + slot));
+					temperature.put(s + slot, other.temperature.get(t + slot));
+					pressure.put(s + slot, other.pressure.get(t + slot));
+					cloudCover.put(s + slot, other.cloudCover.get(t + slot));
+					humidity.put(s + slot, other.humidity.get(t + slot));
+				}
+				if (other.wind.get(t + slot) != NO_WIND)
+					wind.put(s + slot, other.wind.get(t + slot));
+			}
+		}
+	}
+
+	/* Saving and mapping */
+
+	/**
+	 * Fingerprint of the sources of a mapped store, or null if none was recorded.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Save days of store to a file without a fingerprint of its sources, see {@link #save(String, String)}.
+	 */
+	public void save(String file_name) throws IOException {
+		save(file_name, null);
+	}
+
+	/**
+	 * Save days of store to a file that can be opened with {@link #map(String)}. The file is written to a temporary
+	 * file and renamed, so that an interrupted save does not leave a broken file.
+	 *
+	 * @param	source	fingerprint of the weather files and settings the store was filled from, a hex SHA-1 hash as
+	 * 					given by {@link BuildManifest}, or null
+	 */
+	public void save(String file_name, String source) throws IOException {
+		int days = lastDay - firstDay + 1;
+		int observations = days * SLOTS;
+		byte[] sourceBytes = new byte[ SOURCE_SIZE ];
+		if (source != null) {
+			byte[] bytes = source.getBytes(ASCII);
+			if (bytes.length > SOURCE_SIZE)
+				throw new IllegalArgumentException("Weather store source fingerprint too long: " + source);
+			System.arraycopy(bytes, 0, sourceBytes, 0, bytes.length);
+		}
+
+		File file = new File(file_name);
+		File temp = new File(file_name + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(SLOTS);
+			out.writeInt(firstDay);
+			out.writeInt(lastDay);
+			out.write(sourceBytes);
+			out.writeInt(0);		// Padding to align columns
+
+			// Columns of 8 byte values first, so that all columns are aligned to their value size
+			for (DoubleBuffer column : new DoubleBuffer[] { temperature, pressure, humidity, cloudCover })
+				writeColumn(out, column, observations);
+			for (DoubleBuffer column : new DoubleBuffer[] { tempDaySum, pressureSum, rainfall })
+				writeColumn(out, column, days);
+			writeColumn(out, wind, observations);
+			for (IntBuffer column : new IntBuffer[] { tempDayN, pressureN, humiditySum, humidityN, cloudCoverDaySum, cloudCoverDayN })
+				writeColumn(out, column, days);
+			for (int i = 0; i < observations; i++)
+				out.writeByte(timeOfDay.get(i));
+			for (int i = 0; i < days; i++)
+				out.writeByte(present.get(i));
+		} finally {
+			out.close();
+		}
+
+		if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+			temp.delete();
+			throw new IOException("Could not write weather store " + file_name);
+		}
+	}
+
+	private static void writeColumn(DataOutputStream out, DoubleBuffer column, int length) throws IOException {
+		for (int i = 0; i < length; i++)
+			out.writeDouble(column.get(i));
+	}
+
+	private static void writeColumn(DataOutputStream out, IntBuffer column, int length) throws IOException {
+		for (int i = 0; i < length; i++)
+			out.writeInt(column.get(i));
+	}
+
+	/**
+	 * Open a store saved with {@link #save(String)}. Columns are views of the memory mapped file, so the data
+	 * is paged in from the file as it is read. The returned store is read only.
+	 */
+	public static WeatherStore map(String file_name) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(file_name, "r");
+		ByteBuffer buffer;
+		try {
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+		} finally {
+			file.close();
+		}
+
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			throw new IOException("Not a weather store: " + file_name);
+		if (buffer.getInt() != SLOTS)
+			throw new IOException("Weather store has different observation times: " + file_name);
+
+		WeatherStore store = new WeatherStore();
+		store.mapped = true;
+		store.firstDay = buffer.getInt();
+		store.lastDay = buffer.getInt();
+		byte[] sourceBytes = new byte[ SOURCE_SIZE ];
+		buffer.get(sourceBytes);
+		store.source = source(sourceBytes);
+		buffer.getInt();
+
+		int days = store.lastDay - store.firstDay + 1;
+		int observations = days * SLOTS;
+		if (days < 0 || buffer.remaining() != (long) observations * 37 + (long) days * 49)
+			throw new IOException("Weather store has wrong size: " + file_name);
+
+		store.capacity = days;
+		store.temperature = doubleColumn(buffer, observations);
+		store.pressure = doubleColumn(buffer, observations);
+		store.humidity = doubleColumn(buffer, observations);
+		store.cloudCover = doubleColumn(buffer, observations);
+		store.tempDaySum = doubleColumn(buffer, days);
+		store.pressureSum = doubleColumn(buffer, days);
+		store.rainfall = doubleColumn(buffer, days);
+		store.wind = intColumn(buffer, observations);
+		store.tempDayN = intColumn(buffer, days);
+		store.pressureN = intColumn(buffer, days);
+		store.humiditySum = intColumn(buffer, days);
+		store.humidityN = intColumn(buffer, days);
+		store.cloudCoverDaySum = intColumn(buffer, days);
+		store.cloudCoverDayN = intColumn(buffer, days);
+		store.timeOfDay = byteColumn(buffer, observations);
+		store.present = byteColumn(buffer, days);
+		return store;
+	}
+
+	/**
+	 * Read the fingerprint of sources recorded in a store file, without mapping the file.
+	 *
+	 * @return	fingerprint of sources, or null if the file does not exist, is not a weather store or has no fingerprint
+	 */
+	public static String readSource(String file_name) {
+		File file = new File(file_name);
+		if (!file.isFile() || file.length() < HEADER_SIZE)
+			return null;
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), HEADER_SIZE));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != SLOTS)
+					return null;
+				in.readInt();
+				in.readInt();
+				byte[] sourceBytes = new byte[ SOURCE_SIZE ];
+				in.readFully(sourceBytes);
+				return source(sourceBytes);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static String source(byte[] bytes) {
+		int length = 0;
+		while (length < bytes.length && bytes[ length ] != 0)
+			length++;
+		return length == 0 ? null : new String(bytes, 0, length, ASCII);
+	}
+
+	private static ByteBuffer byteColumn(ByteBuffer buffer, int length) {
+		ByteBuffer column = buffer.slice();
+		column.limit(length);
+		buffer.position(buffer.position() + length);
+		return column;
+	}
+
+	private static DoubleBuffer doubleColumn(ByteBuffer buffer, int length) {
+		return byteColumn(buffer, length * 8).asDoubleBuffer();
+	}
+
+	private static IntBuffer intColumn(ByteBuffer buffer, int length) {
+		return byteColumn(buffer, length * 4).asIntBuffer();
+	}
+
+	/* Winds */
+
+	/**
+	 * Wind code of a wind speed and direction, see {@link WindInstance#code(int, String)}.
+	 *
+	 * @param	speed		wind speed
+	 * @param	direction	one of {@link WeatherData#possibleWindDirections}
+	 */
+	public static int windCode(int speed, String direction) {
+		return WindInstance.code(speed, direction);
+	}
+
+	/**
+	 * Wind instance of a wind code. The same instance is returned for the same code.
+	 *
+	 * @return	wind instance, or null for {@link #NO_WIND}
+	 */
+	public WindInstance windInstance(int windCode) {
+		if (windCode == NO_WIND)
+			return null;
+		return WindInstance.of(windCode);
+	}
+
+	/* Standardized observation time */
+
+	/**
+	 * Calculate average weather of morning standardized observation time of a day, straight from the columns.
+	 * See {@link DailyWeather#calculateMorningWeather(Integer, Integer, Integer)}.
+	 */
+	public MorningWeather calculateMorningWeather(int dayNumber, int startTimeHour, int startTimeMinute, int month) {
+		// Validate arguments
+		if ((startTimeHour < 0 || startTimeHour > 8) ||
+			(startTimeMinute < 0 || startTimeMinute > 59) ||
+			(startTimeHour == 8 && startTimeMinute != 0))
+			return null;
+
+		int length = morningLength(month);
+		int index0 = startTimeHour / 3;
+		int minutes0 = ( startTimeHour % 3 ) * 60 + startTimeMinute;
+		int base = slotIndex(dayNumber);
+
+		MorningWeather averagedValues = new MorningWeather();
+
+		averagedValues.temperature = nullIfNaN(morningAverage(temperature, base, index0, minutes0, length));
+		averagedValues.pressure = nullIfNaN(morningAverage(pressure, base, index0, minutes0, length));
+
+		if (minutes0 == 0 && wind.get(base + index0) != NO_WIND)
+			averagedValues.winds.add(windInstance(wind.get(base + index0)));
+		if ((minutes0 + length) >= 180 && wind.get(base + index0 + 1) != NO_WIND)
+			averagedValues.winds.add(windInstance(wind.get(base + index0 + 1)));
+		if ((minutes0 + length) >= 2 * 180 && wind.get(base + index0 + 2) != NO_WIND)
+			averagedValues.winds.add(windInstance(wind.get(base + index0 + 2)));
+
+		averagedValues.cloudCover = nullIfNaN(morningAverage(cloudCover, base, index0, minutes0, length));
+		averagedValues.humidity = nullIfNaN(morningAverage(humidity, base, index0, minutes0, length));
+
+		return averagedValues;
+	}
+
+	/**
+	 * Calculate average weather of morning standardized observation time of consecutive days at once.
+	 *
+	 * @param	firstDay		day number of first day
+	 * @param	startTimeHour	start hours of days
+	 * @param	startTimeMinute	start minutes of days
+	 * @param	month			months of days (1-12)
+	 */
+	public MorningWeatherTable calculateMorningWeather(int firstDay, int[] startTimeHour, int[] startTimeMinute, int[] month) {
+		return new MorningWeatherTable(this, firstDay, startTimeHour, startTimeMinute, month);
+	}
+
+	private static Double nullIfNaN(double value) {
+		return Double.isNaN(value) ? null : value;
+	}
+
+	/**
+	 * Length of standardized observation time in minutes: 2 hours in winter months, otherwise 4 hours.
+	 */
+	static int morningLength(int month) {
+		if (month == 11 || month == 12 || month == 1 || month == 2 || month == 3)
+			return 120;
+		return 240;
+	}
+
+	/**
+	 * Average of one variable over standardized observation time, if all needed observations exist.
+	 *
+	 * @param	column		observation column
+	 * @param	base		index of day's first observation in column
+	 * @param	index0		starting observation index of the day
+	 * @param	minutes0	minutes from index0 to observation start (0-179)
+	 * @param	length		length of time to integrate over (120 or 240)
+	 * @return	average, or NaN if an observation needed for the average is missing
+	 */
+	static double morningAverage(DoubleBuffer column, int base, int index0, int minutes0, int length) {
+		int hour = index0 * 3 + minutes0 / 60;
+
+		if (	(index0 > 0 || !Double.isNaN(column.get(base))) &&
+				(index0 > 1 || !Double.isNaN(column.get(base + 1))) &&
+				!Double.isNaN(column.get(base + 2)) &&
+				(hour < 2 || !Double.isNaN(column.get(base + 3))) &&
+				(hour < 5 || !Double.isNaN(column.get(base + 4))))
+		{
+			return measurementAverage(column, base + index0, minutes0, length);
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Calculate average of measurements by integrating over minutes of the 4 (or 2) hour period.
+	 * Values between measurement points are expected to follow linear interpolation of closest known measurements.
+	 *
+	 * @param	m			measurements
+	 * @param	offset		index of first eligible measurement
+	 * @param	minutes0	minutes offset from first measurement (0-179)
+	 * @param	length		length of time to integrate over (120 or 240)
+	 * @return	average of values according to minutes offset from first measurement
+	 */
+	static double measurementAverage(DoubleBuffer m, int offset, int minutes0, int length) {
+		double tempIntegral = 0.0;
+		double tempStart, tempEnd;
+
+		double m0 = m.get(offset);
+		double m1 = m.get(offset + 1);
+
+		tempStart = m0 + (m1 - m0) / 180.0 * minutes0;
+
+		if (minutes0 + length > 180) {
+			tempEnd = m1;
+			tempIntegral += ((tempStart + tempEnd) / 2) * (180 - minutes0);
+		} else {
+			tempEnd = m0 + (m1 - m0) / 180 * (minutes0 + length);
+			tempIntegral += ((tempStart + tempEnd) / 2) * length;
+		}
+
+		if ( minutes0 + length > 2 * 180 ) {
+			// 2 weather observations in standardized observation time. Expecting length == 240 here.
+			int minutes1 = minutes0 - 120;
+
+			tempIntegral += ( m1 + m.get(offset + 2) ) / 2 * 180;
+
+			tempStart = m.get(offset + 2);
+			tempEnd = tempStart + (m.get(offset + 3) - tempStart ) / 180.0 * minutes1;
+			tempIntegral += ((tempStart + tempEnd) / 2) * minutes1;
+		} else {
+			// 0-1 weather observations in standardized observation time
+			int minutes1 = minutes0 + length - 180;
+
+			if (minutes1 > 0) {
+				tempStart = m1;
+				tempEnd = tempStart + (m.get(offset + 2) - tempStart) / 180.0 * minutes1;
+				tempIntegral += ((tempStart + tempEnd) / 2) * minutes1;
+			}
+		}
+
+		return tempIntegral / length;
+	}
+}